@@ -0,0 +1,54 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client.benchmark;
+
+import java.util.Random;
+
+/**
+ * Synthetic images of the benchmarks. The content does not matter for the
+ * mock server, only the size does.
+ *
+ * @author laszlo.toth
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * <p>
+     * Creates a random JPEG-like image of the given size.
+     * </p>
+     *
+     * @param size the size in bytes
+     * @return the image
+     */
+    static byte[] create(int size) {
+        byte[] image = new byte[size];
+        new Random(size).nextBytes(image);
+        if (size >= 4) {
+            image[0] = (byte) 0xFF;
+            image[1] = (byte) 0xD8;
+            image[size - 2] = (byte) 0xFF;
+            image[size - 1] = (byte) 0xD9;
+        }
+        return image;
+    }
+}
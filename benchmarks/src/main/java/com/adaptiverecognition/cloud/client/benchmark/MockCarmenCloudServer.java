@@ -0,0 +1,146 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.reactivestreams.Publisher;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * Local stand-in of the Carmen Cloud API for benchmarks.
+ * <p>
+ * Every request is answered with a canned result after the configured latency:
+ * requests under /transport with a transport result, all other requests with a
+ * vehicle result. The canned results can be replaced with the files given in
+ * the vehicle.result and transport.result system properties. A share of the
+ * requests (the error rate) is answered with 503 instead.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class MockCarmenCloudServer implements AutoCloseable {
+
+    private final DisposableServer server;
+    private final Duration latency;
+    private final double errorRate;
+    private final byte[] vehicleResult;
+    private final byte[] transportResult;
+
+    private MockCarmenCloudServer(Duration latency, double errorRate) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.vehicleResult = load("vehicle.result", "/vehicle-result.json");
+        this.transportResult = load("transport.result", "/transport-result.json");
+        this.server = HttpServer.create().host("127.0.0.1").port(0).protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                .handle(this::handle).bindNow();
+    }
+
+    /**
+     * <p>
+     * Starts a mock server on a free local port.
+     * </p>
+     *
+     * @param latency   the latency of the responses
+     * @param errorRate the share of the requests answered with 503, between 0 and
+     *                  1
+     * @return the running server
+     */
+    public static MockCarmenCloudServer start(Duration latency, double errorRate) {
+        return new MockCarmenCloudServer(latency, errorRate);
+    }
+
+    /**
+     * <p>
+     * Returns the endpoint of the Vehicle API.
+     * </p>
+     *
+     * @return the endpoint
+     */
+    public String vehicleEndpoint() {
+        return "http://127.0.0.1:" + server.port() + "/vehicle";
+    }
+
+    /**
+     * <p>
+     * Returns the endpoint of the Transportation &amp; Cargo API.
+     * </p>
+     *
+     * @return the endpoint
+     */
+    public String transportEndpoint() {
+        return "http://127.0.0.1:" + server.port() + "/transport";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        // the request body is drained (and released) before responding, like a real server would
+        return request.receive().then(Mono.defer(() -> {
+            Mono<Void> delay = latency.isZero() ? Mono.empty() : Mono.delay(latency).then();
+            HttpServerResponse headers = response.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                    .header("x-amzn-requestid", UUID.randomUUID().toString());
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                return delay.then(headers.status(HttpResponseStatus.SERVICE_UNAVAILABLE)
+                        .sendString(Mono.just("{\"message\":\"Service Unavailable\"}")).then());
+            }
+            byte[] result = request.uri().startsWith("/transport") ? transportResult : vehicleResult;
+            return delay.then(headers.status(HttpResponseStatus.OK)
+                    .sendByteArray(Mono.just(result)).then());
+        }));
+    }
+
+    private static byte[] load(String property, String resource) {
+        String path = System.getProperty(property);
+        try {
+            if (path != null) {
+                return Files.readAllBytes(Path.of(path));
+            }
+            try (InputStream inputStream = MockCarmenCloudServer.class.getResourceAsStream(resource)) {
+                if (inputStream == null) {
+                    return "{}".getBytes(StandardCharsets.UTF_8);
+                }
+                return inputStream.readAllBytes();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
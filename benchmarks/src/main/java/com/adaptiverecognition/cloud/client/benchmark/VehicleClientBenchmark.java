@@ -0,0 +1,173 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.client.ImagePayload;
+import com.adaptiverecognition.cloud.client.RetryPolicy;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.client.VehicleClient.VehicleClientBuilder;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+import com.adaptiverecognition.cloud.vehicle.VehicleResult;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Benchmarks of {@link VehicleClient} against a {@link MockCarmenCloudServer}.
+ * <p>
+ * Run with the gc profiler to see the allocation per call:
+ * {@code java -jar target/benchmarks.jar VehicleClientBenchmark -prof gc}.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class VehicleClientBenchmark {
+
+    /**
+     * The client, the server and the image shared by the benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class ClientState {
+
+        /**
+         * The size of the image in bytes.
+         */
+        @Param({ "16384", "262144", "2097152" })
+        public int imageSize;
+
+        /**
+         * The latency of the mock server in milliseconds.
+         */
+        @Param({ "0", "20" })
+        public long latencyMillis;
+
+        /**
+         * The share of the requests failing with 503.
+         */
+        @Param({ "0" })
+        public double errorRate;
+
+        MockCarmenCloudServer server;
+        VehicleClient client;
+        VehicleRequest request;
+        byte[] image;
+
+        /**
+         * <p>
+         * Starts the server and builds the client.
+         * </p>
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            server = MockCarmenCloudServer.start(Duration.ofMillis(latencyMillis), errorRate);
+            client = VehicleClientBuilder.vehicleClientBuilder().endpoint(server.vehicleEndpoint())
+                    .apiKey("benchmark").retryPolicy(RetryPolicy.builder().baseDelay(Duration.ofMillis(1))
+                            .maxDelay(Duration.ofMillis(10)).build())
+                    .build();
+            image = BenchmarkImages.create(imageSize);
+            request = new VehicleRequest().services(VehicleRequest.Service.ANPR, VehicleRequest.Service.MMR)
+                    .region("eur");
+        }
+
+        /**
+         * <p>
+         * Stops the server.
+         * </p>
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            server.close();
+        }
+
+        Mono<VehicleResult> searchMono() {
+            return client.searchMono(request, ImagePayload.of(image, "image.jpg", "jpeg"))
+                    .onErrorResume(throwable -> Mono.empty());
+        }
+    }
+
+    /**
+     * The number of concurrent calls of the concurrent benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class ConcurrencyState {
+
+        /**
+         * The number of concurrent calls.
+         */
+        @Param({ "1", "16", "64" })
+        public int concurrency;
+    }
+
+    /**
+     * <p>
+     * A single blocking search. Failed searches are counted as operations, too.
+     * </p>
+     *
+     * @param state the client state
+     * @return the result, or null if the search failed after the retries
+     */
+    @Benchmark
+    public VehicleResult search(ClientState state) {
+        try {
+            return state.client.search(state.request, ImagePayload.of(state.image, "image.jpg", "jpeg"));
+        } catch (CarmenCloudException e) {
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * A batch of searches with the given number running concurrently. An
+     * operation is a whole batch of {@code concurrency} searches.
+     * </p>
+     *
+     * @param state       the client state
+     * @param concurrency the concurrency state
+     * @return the number of results
+     */
+    @Benchmark
+    public Long concurrentSearch(ClientState state, ConcurrencyState concurrency) {
+        return Flux.range(0, concurrency.concurrency).flatMap(i -> state.searchMono(), concurrency.concurrency)
+                .count().block();
+    }
+}
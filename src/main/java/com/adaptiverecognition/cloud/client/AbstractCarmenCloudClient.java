@@ -0,0 +1,687 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.Request;
+import com.adaptiverecognition.cloud.Result;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+import reactor.util.retry.RetryBackoffSpec;
+
+/**
+ * Base class of the API clients, implementing the parts of the request pipeline
+ * that do not depend on the API.
+ *
+ * @author laszlo.toth
+ * @param <R> the request type
+ * @param <A> the result type
+ */
+public abstract class AbstractCarmenCloudClient<R extends Request<?>, A extends Result>
+        implements CarmenCloudClient<R, A> {
+
+    /**
+     * The retry configuration.
+     */
+    protected final RetryBackoffSpec retry;
+
+    /**
+     * The statistics of the HTTP/2 streams.
+     */
+    protected final Http2StreamStatistics streamStatistics = new Http2StreamStatistics();
+
+    /**
+     * The retry policy, takes precedence over the retry configuration.
+     */
+    protected final RetryPolicy retryPolicy;
+
+    /**
+     * The rate limiter, or null if the requests are not limited.
+     */
+    protected final RateLimiter rateLimiter;
+
+    /**
+     * The circuit breaker, or null if there is no circuit breaker.
+     */
+    protected final CircuitBreaker circuitBreaker;
+
+    /**
+     * The hedging policy, or null if the calls are not hedged.
+     */
+    protected final HedgingPolicy hedgingPolicy;
+
+    /**
+     * The request scheduler, or null if the attempts are not scheduled by
+     * priority.
+     */
+    protected final RequestScheduler requestScheduler;
+
+    /**
+     * The metrics, or null if nothing is measured.
+     */
+    protected final ClientMetrics metrics;
+
+    /**
+     * The blocking mode.
+     */
+    protected final BlockingMode blockingMode;
+
+    /**
+     * The HTTP engine.
+     */
+    protected final HttpEngine engine;
+
+    /**
+     * The result cache, or null if the results are not cached.
+     */
+    protected final ResultCache resultCache;
+
+    /**
+     * The image preprocessor, or null if the images are uploaded as they are.
+     */
+    protected final ImagePreprocessor imagePreprocessor;
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).findAndAddModules().build();
+
+    /**
+     * The readers of the result types, created once as creating a reader looks up
+     * its root deserializer.
+     */
+    private static final ConcurrentMap<JavaType, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Duration requestTimeout;
+
+    /**
+     * The endpoints and the default headers (including the API key) of the
+     * client, part of the result cache keys, as they may change the results.
+     */
+    private final List<Object> cacheScope;
+
+    /**
+     * <p>
+     * Creates the client.
+     * </p>
+     *
+     * @param config         the configuration
+     * @param defaultHeaders the headers to send with every request
+     */
+    protected AbstractCarmenCloudClient(ClientConfig config, Map<String, String> defaultHeaders) {
+        this.retry = config.retry();
+        this.retryPolicy = config.retryPolicy();
+        Double rateLimit = config.rateLimit();
+        this.rateLimiter = rateLimit != null ? RateLimiter.shared(config.apiKey(), rateLimit) : null;
+        this.circuitBreaker = config.circuitBreaker();
+        this.hedgingPolicy = config.hedgingPolicy();
+        this.requestScheduler = config.requestScheduler();
+        this.metrics = config.metrics();
+        this.blockingMode = config.blockingMode() != null ? config.blockingMode() : BlockingMode.DIRECT;
+        HttpEngine.Factory engineFactory = config.httpEngine() != null ? config.httpEngine() : HttpEngine.reactor();
+        List<String> endpoints = config.endpoints();
+        if (endpoints != null && endpoints.size() > 1) {
+            this.engine = new EndpointRouter(endpoints, endpoint -> engineFactory
+                    .create(config.toBuilder().endpoint(endpoint).build(), defaultHeaders, streamStatistics));
+        } else if (endpoints != null && endpoints.size() == 1) {
+            this.engine = engineFactory.create(config.toBuilder().endpoint(endpoints.get(0)).build(), defaultHeaders,
+                    streamStatistics);
+        } else {
+            this.engine = engineFactory.create(config, defaultHeaders, streamStatistics);
+        }
+        this.resultCache = config.resultCache();
+        this.cacheScope = List.of(endpoints != null ? endpoints : String.valueOf(config.endpoint()),
+                new TreeMap<>(defaultHeaders));
+        this.imagePreprocessor = config.imagePreprocessor();
+        Long timeout = config.requestTimeout();
+        this.requestTimeout = timeout != null ? Duration.ofMillis(timeout) : null;
+    }
+
+    /**
+     * <p>
+     * Returns the statistics of the HTTP/2 streams of this client. Empty unless
+     * the client uses HTTP/2.
+     * </p>
+     *
+     * @return the stream statistics
+     */
+    public Http2StreamStatistics streamStatistics() {
+        return streamStatistics;
+    }
+
+    /**
+     * <p>
+     * Returns the rate limiter of this client.
+     * </p>
+     *
+     * @return the rate limiter, or null if the requests are not limited
+     */
+    public RateLimiter rateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * <p>
+     * Returns the circuit breaker of this client.
+     * </p>
+     *
+     * @return the circuit breaker, or null if there is no circuit breaker
+     */
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * <p>
+     * Returns the name of the API, used e.g. as a metrics tag.
+     * </p>
+     *
+     * @return the name of the API
+     */
+    protected abstract String api();
+
+    /**
+     * <p>
+     * Creates the lazy pipeline of a single request. Nothing is sent until the
+     * returned mono is subscribed to.
+     * </p>
+     *
+     * @param request the request
+     * @param context the retry context
+     * @return the result
+     */
+    protected abstract Mono<A> execute(R request, Map<?, ?> context);
+
+    /**
+     * <p>
+     * Serves a search from the result cache if the cache is enabled and the
+     * images are repeatable, otherwise calls the API. Besides the parameters and
+     * the images, the key covers the endpoints and the default headers of the
+     * client (including the API key) and the headers of the
+     * {@link RequestOptions}, so clients with different settings can share a
+     * cache. The deadline of the search is applied to the result.
+     * </p>
+     *
+     * @param <T>        the type of the result
+     * @param type       the type of the result
+     * @param parameters the parameters of the request the result depends on
+     * @param images     the images of the request
+     * @param call       the call
+     * @return the result
+     */
+    protected <T> Mono<T> cached(Class<T> type, List<?> parameters, List<ImagePayload> images, Mono<T> call) {
+        if (resultCache == null) {
+            return withDeadline(call);
+        }
+        return withDeadline(Mono.deferContextual(contextView -> {
+            RequestOptions options = contextView.getOrDefault(RequestOptions.class, null);
+            List<Object> keyParameters = new ArrayList<>(parameters);
+            keyParameters.add(cacheScope);
+            if (options != null) {
+                // the options may change the result
+                keyParameters.add(options.headers());
+            }
+            return ResultCache.key(api(), keyParameters, images).map(Optional::of).defaultIfEmpty(Optional.empty())
+                    .flatMap(key -> key.isPresent() ? resultCache.get(key.get(), type, call) : call);
+        }));
+    }
+
+    /**
+     * <p>
+     * Applies the deadline of a search to a call: the earliest of the
+     * {@link Deadline} in the Reactor context and the timeout of the
+     * {@link RequestOptions} or of the client. The call is cancelled when the
+     * deadline expires, and the deadline is put into the context of the call,
+     * so the retries are not started after it.
+     * </p>
+     *
+     * @param <T>  the type of the result
+     * @param call the call
+     * @return the call with the deadline applied
+     */
+    protected <T> Mono<T> withDeadline(Mono<T> call) {
+        return Mono.deferContextual(contextView -> {
+            Deadline deadline = contextView.getOrDefault(Deadline.class, null);
+            RequestOptions options = contextView.getOrDefault(RequestOptions.class, null);
+            Duration timeout = options != null && options.timeout() != null ? options.timeout() : requestTimeout;
+            if (timeout != null) {
+                deadline = Deadline.after(timeout).earliest(deadline);
+            }
+            if (deadline == null) {
+                return call;
+            }
+            if (deadline.isExpired()) {
+                return Mono.error(Deadline.exceeded());
+            }
+            Deadline effective = deadline;
+            return call.timeout(deadline.remaining(), Mono.error(Deadline::exceeded))
+                    .contextWrite(context -> context.put(Deadline.class, effective));
+        });
+    }
+
+    /**
+     * <p>
+     * Waits for the result of a call according to the blocking mode. If the
+     * waiting thread is interrupted, the call is cancelled and the interrupted
+     * status of the thread is restored.
+     * </p>
+     *
+     * @param <T>  the type of the result
+     * @param call the call
+     * @return the result
+     * @throws CarmenCloudException if the call fails, other errors are wrapped
+     *                              with status code 500
+     */
+    protected <T> T block(Mono<T> call) throws CarmenCloudException {
+        try {
+            if (blockingMode == BlockingMode.FUTURE) {
+                CompletableFuture<T> future = call.toFuture();
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    // cancels the subscription, an abandoned future would keep the request running
+                    future.cancel(true);
+                    throw e;
+                }
+            }
+            return call.block();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CarmenCloudException(500, e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw exception(e.getCause());
+        } catch (RuntimeException e) {
+            Throwable cause = Exceptions.unwrap(e);
+            if (cause instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw exception(cause);
+        }
+    }
+
+    private static CarmenCloudException exception(Throwable throwable) {
+        if (throwable instanceof CarmenCloudException) {
+            return (CarmenCloudException) throwable;
+        }
+        return new CarmenCloudException(500, throwable.getMessage(), throwable);
+    }
+
+    /**
+     * <p>
+     * Applies the policies of a single attempt (e.g. rate limiting) to a call.
+     * </p>
+     *
+     * @param <T>  the type of the result
+     * @param call the call
+     * @return the call with the policies applied
+     */
+    protected <T> Mono<T> attempt(Mono<T> call) {
+        return attempt(null, null, call);
+    }
+
+    /**
+     * <p>
+     * Applies the policies of a single attempt (e.g. rate limiting, scheduling,
+     * circuit breaking, hedging, measuring) to a call sent to a region. An open
+     * circuit rejects the call before it waits for the scheduler or the rate
+     * limiter. The attempt waits for the scheduler, with the priority of the
+     * {@link RequestOptions} in the Reactor context, and acquires the permit of
+     * the rate limiter in the scheduled slot, so the throttled calls are still
+     * sent in the order of their priority. The call is hedged once it holds its
+     * permit; its duplicate is sent in the same slot, only if another permit is
+     * available right away, and goes through the circuit breaker, too.
+     * </p>
+     *
+     * @param <T>     the type of the result
+     * @param region  the region (path segment) of the call, or null if it is not
+     *                protected by the circuit breaker
+     * @param service the requested services, used as a metrics tag
+     * @param call    the call
+     * @return the call with the policies applied
+     */
+    protected <T> Mono<T> attempt(String region, String service, Mono<T> call) {
+        return attempt(region, service, true, call);
+    }
+
+    /**
+     * <p>
+     * Applies the policies of a single attempt to a call sent to a region, like
+     * {@link #attempt(String, String, Mono)}. A call that is not repeatable (e.g.
+     * it uploads an input stream) is never hedged, as its duplicate could not
+     * read the image again.
+     * </p>
+     *
+     * @param <T>        the type of the result
+     * @param region     the region (path segment) of the call, or null if it is
+     *                   not protected by the circuit breaker
+     * @param service    the requested services, used as a metrics tag
+     * @param repeatable if the call can be subscribed to more than once
+     * @param call       the call
+     * @return the call with the policies applied
+     */
+    protected <T> Mono<T> attempt(String region, String service, boolean repeatable, Mono<T> call) {
+        Mono<T> result = measure(region, service, call);
+        boolean protect = circuitBreaker != null && region != null;
+        if (protect) {
+            result = circuitBreaker.protect(region, result);
+        }
+        if (hedgingPolicy != null && region != null && repeatable) {
+            // hedges the call holding its permit, the duplicate is only sent if another one is free
+            result = hedgingPolicy.hedge(region, rateLimiter != null ? rateLimiter::tryAcquire : () -> true, result);
+        }
+        if (rateLimiter != null) {
+            result = rateLimiter.acquire().then(result).doOnSuccess(value -> rateLimiter.onSuccess());
+        }
+        if (requestScheduler != null) {
+            // the permit is acquired in the scheduled slot, so the priorities apply to the throttled calls too
+            Mono<T> unscheduled = result;
+            result = Mono.deferContextual(contextView -> {
+                RequestOptions options = contextView.getOrDefault(RequestOptions.class, null);
+                return requestScheduler.schedule(options != null ? options.priority() : null, unscheduled);
+            });
+        }
+        if (protect && (rateLimiter != null || requestScheduler != null)) {
+            // fails fast without waiting for the scheduler or using up a permit of the rate limiter
+            Mono<T> admitted = result;
+            result = Mono.defer(
+                    () -> circuitBreaker.isCallPermitted(region) ? admitted : circuitBreaker.reject(region));
+        }
+        return result;
+    }
+
+    private <T> Mono<T> measure(String region, String service, Mono<T> call) {
+        if (metrics == null) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            AttemptMetrics attempt = new AttemptMetrics(api(), region, service);
+            metrics.attemptStarted(attempt);
+            return call.doOnError(attempt::failed).doFinally(signal -> {
+                attempt.finished(signal == SignalType.CANCEL);
+                metrics.attemptFinished(attempt);
+            }).contextWrite(context -> context.put(AttemptMetrics.class, attempt));
+        });
+    }
+
+    /**
+     * <p>
+     * Sends a request with the HTTP engine. The headers of the
+     * {@link RequestOptions} in the Reactor context are set on the request. Error
+     * responses are converted to {@link CarmenCloudException}s.
+     * </p>
+     *
+     * @param request the request
+     * @return the successful response
+     */
+    protected Mono<HttpEngine.Response> exchange(HttpEngine.Request request) {
+        return Mono.deferContextual(contextView -> {
+            RequestOptions options = contextView.getOrDefault(RequestOptions.class, null);
+            return engine.exchange(options != null ? options.applyTo(request) : request);
+        }).flatMap(response -> response.isError() ? error(response) : Mono.just(response))
+                .doOnDiscard(HttpEngine.Response.class, HttpEngine.Response::release);
+    }
+
+    /**
+     * <p>
+     * Deserializes the JSON body of a response. The body is parsed directly from
+     * the buffer of the engine, and the buffer is released.
+     * </p>
+     *
+     * @param <T>      the type of the body
+     * @param response the response
+     * @param type     the type of the body
+     * @return the body, or empty if the response has no body
+     */
+    protected <T> Mono<T> decode(HttpEngine.Response response, Class<T> type) {
+        return decode(response, OBJECT_MAPPER.constructType(type));
+    }
+
+    /**
+     * <p>
+     * Deserializes the JSON body of a response.
+     * </p>
+     *
+     * @param <T>      the type of the body
+     * @param response the response
+     * @param type     the type of the body
+     * @return the body, or empty if the response has no body
+     */
+    protected <T> Mono<T> decode(HttpEngine.Response response, TypeReference<T> type) {
+        return decode(response, OBJECT_MAPPER.constructType(type));
+    }
+
+    private static <T> Mono<T> decode(HttpEngine.Response response, JavaType type) {
+        if (response.bodyLength() == 0) {
+            response.release();
+            return Mono.empty();
+        }
+        ObjectReader reader = READERS.computeIfAbsent(type, OBJECT_MAPPER::readerFor);
+        return Mono.fromCallable(() -> {
+            try (InputStream body = response.bodyStream()) {
+                return reader.<T>readValue(body);
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Converts an error response of the API to a {@link CarmenCloudException}.
+     * </p>
+     *
+     * @param <T>      the type of the result
+     * @param response the error response
+     * @return the failed mono
+     */
+    protected <T> Mono<T> error(HttpEngine.Response response) {
+        int statusCode = response.statusCode();
+        Duration retryAfter = retryAfter(response.header("Retry-After"));
+        if (statusCode == 429 && rateLimiter != null) {
+            rateLimiter.onThrottled(retryAfter);
+        }
+        String error = new String(response.body(), StandardCharsets.UTF_8);
+        return Mono.deferContextual(contextView -> {
+            CallState call = contextView.getOrDefault(CallState.class, null);
+            if (call != null) {
+                call.retryAfter(retryAfter);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("{}xx error occured: {} ({})", statusCode / 100, error, statusCode);
+            }
+            return Mono.error(new CarmenCloudException(statusCode, error));
+        });
+    }
+
+    /**
+     * <p>
+     * Parses the value of the Retry-After header, given either in seconds or as
+     * an HTTP date.
+     * </p>
+     *
+     * @param value the value of the Retry-After header
+     * @return the duration, or null if the value is null or invalid
+     */
+    protected static Duration retryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                Duration duration = Duration.between(ZonedDateTime.now(),
+                        ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return duration.isNegative() ? Duration.ZERO : duration;
+            } catch (DateTimeParseException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Applies the retry policy or the retry configuration to a call.
+     * </p>
+     *
+     * @param <T>     the type of the result
+     * @param call    the call
+     * @param context the retry context
+     * @return the call with retries
+     */
+    protected <T> Mono<T> withRetry(Mono<T> call, Map<?, ?> context) {
+        return withRetry(call, context, true);
+    }
+
+    /**
+     * <p>
+     * Applies the retry policy or the retry configuration to a call, like
+     * {@link #withRetry(Mono, Map)}. A call that is not repeatable (e.g. it
+     * uploads an input stream) is not retried, so its error is returned as it
+     * is.
+     * </p>
+     *
+     * @param <T>        the type of the result
+     * @param call       the call
+     * @param context    the retry context
+     * @param repeatable if the call can be subscribed to more than once
+     * @return the call with retries
+     */
+    protected <T> Mono<T> withRetry(Mono<T> call, Map<?, ?> context, boolean repeatable) {
+        Mono<T> counted = metrics == null ? call : Mono.deferContextual(contextView -> {
+            CallState state = contextView.getOrDefault(CallState.class, null);
+            if (state != null && state.nextAttempt() > 0) {
+                metrics.retried(api());
+            }
+            return call;
+        });
+        Mono<T> result;
+        if (!repeatable) {
+            result = counted;
+        } else if (retryPolicy != null) {
+            result = counted.retryWhen(retryPolicy);
+        } else if (retry != null) {
+            result = counted.retryWhen(context != null ? retry.withRetryContext(Context.of(context)) : retry);
+        } else {
+            result = counted;
+        }
+        return result.contextWrite(current -> current.hasKey(CallState.class) ? current
+                : current.put(CallState.class, new CallState()));
+    }
+
+    /**
+     * <p>
+     * Returns a view of this client sending its searches with the given options.
+     * The view shares the connections and the policies of this client, so it is
+     * cheap to create one for every camera or configuration.
+     * </p>
+     *
+     * @param options the request options
+     * @return the client view
+     */
+    public CarmenCloudClient<R, A> withOptions(RequestOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("Options must not be null");
+        }
+        return new OptionsClient(options);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Mono<A> searchMono(R request, Map<?, ?> context) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request must not be null");
+        }
+        return Mono.defer(() -> execute(request, context));
+    }
+
+    /**
+     * A view of the client putting request options into the Reactor context of
+     * the searches.
+     */
+    private final class OptionsClient implements CarmenCloudClient<R, A> {
+
+        private final RequestOptions options;
+
+        OptionsClient(RequestOptions options) {
+            this.options = options;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public A search(R request) throws CarmenCloudException {
+            return search(request, null);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public A search(R request, Map<?, ?> context) throws CarmenCloudException {
+            return block(searchMono(request, context));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public CompletableFuture<A> searchAsync(R request) {
+            return searchAsync(request, null);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public CompletableFuture<A> searchAsync(R request, Map<?, ?> context) {
+            return searchMono(request, context).toFuture();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Mono<A> searchMono(R request, Map<?, ?> context) {
+            return AbstractCarmenCloudClient.this.searchMono(request, context).contextWrite(this::putOptions);
+        }
+
+        private Context putOptions(Context context) {
+            return context.put(RequestOptions.class, options);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The measurements of a single HTTP exchange of an API client.
+ * <p>
+ * The duration of the exchange is split into phases: acquiring a connection
+ * (including connecting and the TLS handshake if a new connection is opened),
+ * uploading the request, waiting for the response of the server (including
+ * downloading the response body) and deserializing the result. A phase is null
+ * if the exchange terminated before it completed.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public final class AttemptMetrics {
+
+    /**
+     * The outcome of an exchange.
+     */
+    public enum Outcome {
+        /**
+         * 2xx response.
+         */
+        SUCCESS,
+        /**
+         * 4xx response.
+         */
+        CLIENT_ERROR,
+        /**
+         * 5xx response.
+         */
+        SERVER_ERROR,
+        /**
+         * No response (e.g. connection error, timeout, rejected by the circuit
+         * breaker).
+         */
+        UNKNOWN,
+        /**
+         * Cancelled (e.g. the loser of a hedged call).
+         */
+        CANCELLED
+    }
+
+    private final String api;
+    private final String region;
+    private final String service;
+    private final long start = System.nanoTime();
+
+    private volatile long acquired;
+    private volatile long uploaded;
+    private volatile long responded;
+    private volatile long bodyRead;
+    private volatile long end;
+    private volatile int statusCode;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    AttemptMetrics(String api, String region, String service) {
+        this.api = api;
+        this.region = region != null ? region : "";
+        this.service = service != null ? service : "";
+    }
+
+    /**
+     * <p>
+     * Returns the API.
+     * </p>
+     *
+     * @return "vehicle" or "transport"
+     */
+    public String api() {
+        return api;
+    }
+
+    /**
+     * <p>
+     * Returns the region (path segment) of the request.
+     * </p>
+     *
+     * @return the region, empty for the default region
+     */
+    public String region() {
+        return region;
+    }
+
+    /**
+     * <p>
+     * Returns the requested services (e.g. "anpr,mmr") or the transport type.
+     * </p>
+     *
+     * @return the service
+     */
+    public String service() {
+        return service;
+    }
+
+    /**
+     * <p>
+     * Returns the HTTP status code of the response.
+     * </p>
+     *
+     * @return the status code, or 0 if there was no response
+     */
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * <p>
+     * Returns the outcome of the exchange.
+     * </p>
+     *
+     * @return the outcome
+     */
+    public Outcome outcome() {
+        if (cancelled) {
+            return Outcome.CANCELLED;
+        }
+        if (statusCode >= 200 && statusCode < 300 && error == null) {
+            return Outcome.SUCCESS;
+        }
+        if (statusCode >= 400 && statusCode < 500) {
+            return Outcome.CLIENT_ERROR;
+        }
+        if (statusCode >= 500) {
+            return Outcome.SERVER_ERROR;
+        }
+        return Outcome.UNKNOWN;
+    }
+
+    /**
+     * <p>
+     * Returns the error the exchange failed with.
+     * </p>
+     *
+     * @return the error, or null
+     */
+    public Throwable error() {
+        return error;
+    }
+
+    /**
+     * <p>
+     * Returns the total duration of the exchange.
+     * </p>
+     *
+     * @return the duration
+     */
+    public Duration duration() {
+        return between(start, end);
+    }
+
+    /**
+     * <p>
+     * Returns the time spent acquiring a connection.
+     * </p>
+     *
+     * @return the connection acquire time, or null
+     */
+    public Duration acquireTime() {
+        return between(start, acquired);
+    }
+
+    /**
+     * <p>
+     * Returns the time spent uploading the request.
+     * </p>
+     *
+     * @return the upload time, or null
+     */
+    public Duration uploadTime() {
+        return between(acquired, uploaded);
+    }
+
+    /**
+     * <p>
+     * Returns the time from the end of the upload until the response body has
+     * been received.
+     * </p>
+     *
+     * @return the server time, or null
+     */
+    public Duration serverTime() {
+        return between(uploaded, bodyRead != 0 ? bodyRead : responded);
+    }
+
+    /**
+     * <p>
+     * Returns the time spent deserializing the response body.
+     * </p>
+     *
+     * @return the deserialization time, or null
+     */
+    public Duration deserializeTime() {
+        return bodyRead != 0 && end != 0 ? between(bodyRead, end) : null;
+    }
+
+    /**
+     * <p>
+     * Returns the number of request body bytes sent.
+     * </p>
+     *
+     * @return the number of bytes sent
+     */
+    public long bytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * <p>
+     * Returns the number of response body bytes received.
+     * </p>
+     *
+     * @return the number of bytes received
+     */
+    public long bytesReceived() {
+        return bytesReceived.get();
+    }
+
+    void acquired() {
+        if (acquired == 0) {
+            acquired = System.nanoTime();
+        }
+    }
+
+    void sent(long bytes) {
+        bytesSent.addAndGet(bytes);
+    }
+
+    void uploaded() {
+        uploaded = System.nanoTime();
+    }
+
+    void responded(int statusCode) {
+        this.statusCode = statusCode;
+        responded = System.nanoTime();
+    }
+
+    void received(long bytes) {
+        bytesReceived.addAndGet(bytes);
+    }
+
+    void bodyRead() {
+        bodyRead = System.nanoTime();
+    }
+
+    void failed(Throwable error) {
+        this.error = error;
+    }
+
+    void finished(boolean cancelled) {
+        this.cancelled = cancelled;
+        end = System.nanoTime();
+    }
+
+    private static Duration between(long from, long to) {
+        return from != 0 && to != 0 ? Duration.ofNanos(Math.max(0, to - from)) : null;
+    }
+}
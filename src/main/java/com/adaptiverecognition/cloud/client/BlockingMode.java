@@ -0,0 +1,42 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+/**
+ * How the blocking search methods wait for the result.
+ *
+ * @author laszlo.toth
+ */
+public enum BlockingMode {
+
+    /**
+     * The calling thread subscribes to the request pipeline and waits for its
+     * result directly, without a {@link java.util.concurrent.CompletableFuture}
+     * in between. The thread is parked with a lock-free latch, so a virtual
+     * thread does not pin its carrier thread while waiting. This is the default.
+     */
+    DIRECT,
+
+    /**
+     * The blocking methods wait for the future returned by the asynchronous
+     * methods, as earlier versions did.
+     */
+    FUTURE
+}
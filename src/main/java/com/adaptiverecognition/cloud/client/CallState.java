@@ -0,0 +1,81 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The state of a single search call shared by its attempts. It is stored in
+ * the Reactor context of the call under its class as key.
+ *
+ * @author laszlo.toth
+ */
+final class CallState {
+
+    private final long startNanos = System.nanoTime();
+    private volatile Duration retryAfter;
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    /**
+     * <p>
+     * Returns the time elapsed since the call started.
+     * </p>
+     *
+     * @return the elapsed time
+     */
+    Duration elapsed() {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * <p>
+     * Returns the Retry-After value of the last failed attempt.
+     * </p>
+     *
+     * @return the Retry-After value, or null if the last failed attempt did not
+     *         have one
+     */
+    Duration retryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * <p>
+     * Sets the Retry-After value of the last failed attempt.
+     * </p>
+     *
+     * @param retryAfter the Retry-After value, or null
+     */
+    void retryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * <p>
+     * Counts a new attempt of the call.
+     * </p>
+     *
+     * @return the number of the previous attempts
+     */
+    int nextAttempt() {
+        return attempts.getAndIncrement();
+    }
+}
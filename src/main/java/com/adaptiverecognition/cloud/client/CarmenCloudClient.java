@@ -21,11 +21,18 @@ package com.adaptiverecognition.cloud.client;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
 
 import com.adaptiverecognition.cloud.CarmenCloudException;
 import com.adaptiverecognition.cloud.Request;
 import com.adaptiverecognition.cloud.Result;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
 /**
  *
  * Base interface for all API clients.
@@ -36,6 +43,16 @@ import com.adaptiverecognition.cloud.Result;
  */
 public interface CarmenCloudClient<R extends Request<?>, A extends Result> {
 
+    /**
+     * The default number of concurrent requests of a batch search.
+     */
+    public static final int DEFAULT_BATCH_CONCURRENCY = 16;
+
+    /**
+     * The default maximum size of a response body held in memory, in bytes.
+     */
+    public static final int DEFAULT_MAX_IN_MEMORY_SIZE = 256 * 1024;
+
     /**
      * <p>
      * The default search function
@@ -83,4 +100,159 @@ public interface CarmenCloudClient<R extends Request<?>, A extends Result> {
      * @throws CarmenCloudException if the request fails
      */
     public CompletableFuture<A> searchAsync(R request, Map<?, ?> context) throws CarmenCloudException;
+
+    /**
+     * <p>
+     * Reactive search function. Nothing is sent until the returned mono is
+     * subscribed to, and cancelling the subscription aborts the request.
+     * </p>
+     *
+     * @param request the request
+     * @return the result
+     */
+    public default Mono<A> searchMono(R request) {
+        return searchMono(request, null);
+    }
+
+    /**
+     * <p>
+     * Reactive search function with retry context.
+     * </p>
+     *
+     * <p>
+     * The default implementation calls {@link #searchAsync(Request, Map)} when the
+     * mono is subscribed to, and cancels the returned future when the
+     * subscription is cancelled.
+     * </p>
+     *
+     * @param request the request
+     * @param context the retry context. See {@link reactor.util.context.Context}
+     *                for more details.
+     * @return the result
+     * @see #searchMono(Request)
+     */
+    public default Mono<A> searchMono(R request, Map<?, ?> context) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request must not be null");
+        }
+        return Mono.defer(() -> {
+            try {
+                return Mono.fromFuture(searchAsync(request, context));
+            } catch (CarmenCloudException e) {
+                return Mono.error(e);
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Searches for all requests of a publisher, sending at most
+     * {@code concurrency} requests at the same time and emitting the results in
+     * the order of the requests. Requests are pulled from the publisher only when
+     * there is room for them and the subscriber has requested their results.
+     * </p>
+     * <p>
+     * Unlike {@link #searchAll(Publisher, int, boolean)}, the first failed request
+     * terminates the flux with its error and cancels the other requests in
+     * flight. The requests are sent with {@link #searchMono(Request)}.
+     * </p>
+     *
+     * @param requests    the requests
+     * @param concurrency the maximum number of concurrent requests
+     * @return the results
+     */
+    public default Flux<A> searchFlux(Publisher<R> requests, int concurrency) {
+        if (requests == null) {
+            throw new IllegalArgumentException("Requests must not be null");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        return Flux.from(requests).flatMapSequential(request -> Mono.defer(() -> searchMono(request)), concurrency);
+    }
+
+    /**
+     * <p>
+     * Searches for all requests of a publisher with the default concurrency.
+     * </p>
+     *
+     * @param requests the requests
+     * @return the results
+     * @see #searchFlux(Publisher, int)
+     */
+    public default Flux<A> searchFlux(Publisher<R> requests) {
+        return searchFlux(requests, DEFAULT_BATCH_CONCURRENCY);
+    }
+
+    /**
+     * <p>
+     * Searches for all requests of a publisher, sending at most
+     * {@code concurrency} requests at the same time. Requests are pulled from the
+     * publisher only when there is room for them, so arbitrarily large backlogs
+     * can be processed with bounded memory. Nothing is sent until the returned
+     * flux is subscribed to.
+     * </p>
+     * <p>
+     * A failed request does not stop the batch, its error is reported in its
+     * outcome. The requests are sent with {@link #searchMono(Request)}.
+     * </p>
+     *
+     * @param requests    the requests
+     * @param concurrency the maximum number of concurrent requests
+     * @param ordered     if the outcomes should be emitted in the order of the
+     *                    requests, otherwise they are emitted as soon as they
+     *                    are available
+     * @return the outcomes of the requests
+     */
+    public default Flux<SearchOutcome<R, A>> searchAll(Publisher<R> requests, int concurrency, boolean ordered) {
+        if (requests == null) {
+            throw new IllegalArgumentException("Requests must not be null");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        Function<Tuple2<Long, R>, Mono<SearchOutcome<R, A>>> search = indexed -> {
+            long index = indexed.getT1();
+            R request = indexed.getT2();
+            return Mono.defer(() -> searchMono(request))
+                    .map(result -> SearchOutcome.<R, A>success(index, request, result))
+                    .switchIfEmpty(Mono.fromSupplier(() -> SearchOutcome.<R, A>success(index, request, null)))
+                    .onErrorResume(
+                            throwable -> Mono.just(SearchOutcome.<R, A>failure(index, request, throwable)));
+        };
+        Flux<Tuple2<Long, R>> indexed = Flux.from(requests).index();
+        return ordered ? indexed.flatMapSequential(search, concurrency) : indexed.flatMap(search, concurrency);
+    }
+
+    /**
+     * <p>
+     * Searches for all requests of a publisher with the default concurrency,
+     * emitting the outcomes as soon as they are available.
+     * </p>
+     *
+     * @param requests the requests
+     * @return the outcomes of the requests
+     * @see #searchAll(Publisher, int, boolean)
+     */
+    public default Flux<SearchOutcome<R, A>> searchAll(Publisher<R> requests) {
+        return searchAll(requests, DEFAULT_BATCH_CONCURRENCY, false);
+    }
+
+    /**
+     * <p>
+     * Searches for all requests of a batch, emitting the outcomes in the order of
+     * the requests.
+     * </p>
+     *
+     * @param requests    the requests
+     * @param concurrency the maximum number of concurrent requests
+     * @return the outcomes of the requests
+     * @see #searchAll(Publisher, int, boolean)
+     */
+    public default Flux<SearchOutcome<R, A>> searchBatch(Iterable<R> requests, int concurrency) {
+        if (requests == null) {
+            throw new IllegalArgumentException("Requests must not be null");
+        }
+        return searchAll(Flux.fromIterable(requests), concurrency, true);
+    }
 }
@@ -20,6 +20,7 @@
 package com.adaptiverecognition.cloud.client;
 
 import java.time.Duration;
+import java.util.List;
 
 import org.springframework.web.reactive.function.client.WebClientRequestException;
 
@@ -27,11 +28,19 @@ import com.adaptiverecognition.cloud.CarmenCloudException;
 import com.adaptiverecognition.cloud.Request;
 import com.adaptiverecognition.cloud.Result;
 
+import reactor.netty.http.HttpProtocol;
 import reactor.util.retry.Retry;
 import reactor.util.retry.RetryBackoffSpec;
 
 /**
  * Base builder class for all API clients.
+ * <p>
+ * The settings are kept in a {@link ClientConfig.ClientConfigBuilder}, so a
+ * builder can be configured on one thread and built on another (the builder
+ * itself is not thread-safe, it must be handed over safely). {@link #config()}
+ * returns the settings as an immutable {@link ClientConfig}, and
+ * {@link #config(ClientConfig)} initializes a builder from one.
+ * </p>
  *
  * @author laszlo.toth
  * @param <R> the request type
@@ -41,31 +50,10 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
 
     /**
      * <p>
-     * The endpoint URL.
+     * The settings of the client.
      * </p>
      */
-    protected final ThreadLocal<String> endpoint = new ThreadLocal<>();
-
-    /**
-     * <p>
-     * The API key.
-     * </p>
-     */
-    protected final ThreadLocal<String> apiKey = new ThreadLocal<>();
-
-    /**
-     * <p>
-     * The response timeout.
-     * </p>
-     */
-    protected final ThreadLocal<Long> responseTimeout = new ThreadLocal<>();
-
-    /**
-     * <p>
-     * The retry configuration.
-     * </p>
-     */
-    protected final ThreadLocal<RetryBackoffSpec> retry = new ThreadLocal<>();
+    protected ClientConfig.ClientConfigBuilder config = ClientConfig.builder();
 
     /**
      * <p>
@@ -98,7 +86,7 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
      * @return itself
      */
     public CarmenCloudClientBuilder<R, A> endpoint(String endpoint) {
-        this.endpoint.set(endpoint);
+        this.config.endpoint(endpoint);
         return this;
     }
 
@@ -110,7 +98,7 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
      * @return the endpoint URL
      */
     public String endpoint() {
-        return this.endpoint.get();
+        return this.config.endpoint;
     }
 
     /**
@@ -122,7 +110,7 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
      * @return itself
      */
     public CarmenCloudClientBuilder<R, A> apiKey(String apiKey) {
-        this.apiKey.set(apiKey);
+        this.config.apiKey(apiKey);
         return this;
     }
 
@@ -134,7 +122,7 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
      * @return the API key
      */
     public String apiKey() {
-        return this.apiKey.get();
+        return this.config.apiKey;
     }
 
     /**
@@ -146,7 +134,7 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
      * @return itself
      */
     public CarmenCloudClientBuilder<R, A> responseTimeout(Long responseTimeout) {
-        this.responseTimeout.set(responseTimeout);
+        this.config.responseTimeout(responseTimeout);
         return this;
     }
 
@@ -158,7 +146,7 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
      * @return the response timeout in milliseconds
      */
     public Long responseTimeout() {
-        return this.responseTimeout.get();
+        return this.config.responseTimeout;
     }
 
     /**
@@ -170,7 +158,7 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
      * @return itself
      */
     public CarmenCloudClientBuilder<R, A> retry(RetryBackoffSpec retry) {
-        this.retry.set(retry);
+        this.config.retry(retry);
         return this;
     }
 
@@ -182,7 +170,592 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
      * @return the retry configuration
      */
     public RetryBackoffSpec retry() {
-        return this.retry.get();
+        return this.config.retry;
+    }
+
+    /**
+     * <p>
+     * Sets the connection pool. Clients built with the same pool share its
+     * connections and event loop threads. If not set, the global pool of Reactor
+     * Netty is used. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param connectionPool the connection pool
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> connectionPool(ConnectionPool connectionPool) {
+        this.config.connectionPool(connectionPool);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the connection pool.
+     * </p>
+     *
+     * @return the connection pool
+     */
+    public ConnectionPool connectionPool() {
+        return this.config.connectionPool;
+    }
+
+    /**
+     * <p>
+     * Sets the HTTP protocol. {@link HttpProtocol#H2} multiplexes the requests over
+     * TLS connections (falling back to HTTP/1.1 if the server does not support
+     * it), {@link HttpProtocol#H2C} uses HTTP/2 with prior knowledge over clear
+     * text connections. Default is {@link HttpProtocol#HTTP11}. Returns itself to
+     * allow chaining.
+     * </p>
+     *
+     * @param protocol the HTTP protocol
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> protocol(HttpProtocol protocol) {
+        this.config.protocol(protocol);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the HTTP protocol.
+     * </p>
+     *
+     * @return the HTTP protocol
+     */
+    public HttpProtocol protocol() {
+        return this.config.protocol;
+    }
+
+    /**
+     * <p>
+     * Sets the maximum number of concurrent HTTP/2 streams per connection. If not
+     * set, the limit advertised by the server is used. The streams are limited by
+     * the connection pool, so the client gets a dedicated pool for the limit. A
+     * shared {@link #connectionPool(ConnectionPool)} must be limited with
+     * {@link ConnectionPool.ConnectionPoolBuilder#http2MaxConcurrentStreams(long)}
+     * instead. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param http2MaxConcurrentStreams the maximum number of concurrent streams
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> http2MaxConcurrentStreams(Long http2MaxConcurrentStreams) {
+        this.config.http2MaxConcurrentStreams(http2MaxConcurrentStreams);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the maximum number of concurrent HTTP/2 streams per connection.
+     * </p>
+     *
+     * @return the maximum number of concurrent streams
+     */
+    public Long http2MaxConcurrentStreams() {
+        return this.config.http2MaxConcurrentStreams;
+    }
+
+    /**
+     * <p>
+     * Sets the size of the TLS session cache used to resume sessions instead of
+     * full handshakes when new HTTP/2 connections are opened. If not set, the
+     * default of the TLS provider is used. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param sslSessionCacheSize the TLS session cache size
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> sslSessionCacheSize(Long sslSessionCacheSize) {
+        this.config.sslSessionCacheSize(sslSessionCacheSize);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the size of the TLS session cache.
+     * </p>
+     *
+     * @return the TLS session cache size
+     */
+    public Long sslSessionCacheSize() {
+        return this.config.sslSessionCacheSize;
+    }
+
+    /**
+     * <p>
+     * Sets the timeout of the cached TLS sessions in seconds. If not set, the
+     * default of the TLS provider is used. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param sslSessionTimeout the TLS session timeout in seconds
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> sslSessionTimeout(Long sslSessionTimeout) {
+        this.config.sslSessionTimeout(sslSessionTimeout);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the timeout of the cached TLS sessions.
+     * </p>
+     *
+     * @return the TLS session timeout in seconds
+     */
+    public Long sslSessionTimeout() {
+        return this.config.sslSessionTimeout;
+    }
+
+    /**
+     * <p>
+     * Sets the client-side rate limit in requests per second. Clients using the same
+     * API key share one {@link RateLimiter}, which queues the requests exceeding the
+     * rate and adapts it to the throttling responses of the API, so they must use
+     * the same rate limit (building a client with a different one fails with
+     * {@link IllegalArgumentException}). If not set, the requests are not
+     * limited. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param rateLimit the rate limit in requests per second
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> rateLimit(Double rateLimit) {
+        this.config.rateLimit(rateLimit);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the client-side rate limit.
+     * </p>
+     *
+     * @return the rate limit in requests per second
+     */
+    public Double rateLimit() {
+        return this.config.rateLimit;
+    }
+
+    /**
+     * <p>
+     * Sets the retry policy with exponential backoff, jitter and a retry budget.
+     * Takes precedence over {@link #retry(RetryBackoffSpec)}. Returns itself to
+     * allow chaining.
+     * </p>
+     *
+     * @param retryPolicy the retry policy
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> retryPolicy(RetryPolicy retryPolicy) {
+        this.config.retryPolicy(retryPolicy);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the retry policy.
+     * </p>
+     *
+     * @return the retry policy
+     */
+    public RetryPolicy retryPolicy() {
+        return this.config.retryPolicy;
+    }
+
+    /**
+     * <p>
+     * Sets the circuit breaker. The calls of every region (or transport type) have
+     * their own circuit, and the calls of an open circuit fail immediately instead of
+     * waiting for the response timeout. The same instance can be shared between
+     * clients. If not set, there is no circuit breaker. Returns itself to allow
+     * chaining.
+     * </p>
+     *
+     * @param circuitBreaker the circuit breaker
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> circuitBreaker(CircuitBreaker circuitBreaker) {
+        this.config.circuitBreaker(circuitBreaker);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the circuit breaker.
+     * </p>
+     *
+     * @return the circuit breaker
+     */
+    public CircuitBreaker circuitBreaker() {
+        return this.config.circuitBreaker;
+    }
+
+    /**
+     * <p>
+     * Sets the hedging policy. A duplicate of a slow call is sent after the
+     * hedging delay and the first successful response is used, within the limits of
+     * the hedging budget. If not set, the calls are not hedged. Returns itself to
+     * allow chaining.
+     * </p>
+     *
+     * @param hedgingPolicy the hedging policy
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> hedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.config.hedgingPolicy(hedgingPolicy);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the hedging policy.
+     * </p>
+     *
+     * @return the hedging policy
+     */
+    public HedgingPolicy hedgingPolicy() {
+        return this.config.hedgingPolicy;
+    }
+
+    /**
+     * <p>
+     * Sets the metrics the timing, the status codes, the retries and the body sizes
+     * of the HTTP exchanges are reported to, e.g. a {@link MicrometerClientMetrics}.
+     * If not set, nothing is measured. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param metrics the metrics
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> metrics(ClientMetrics metrics) {
+        this.config.metrics(metrics);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the metrics.
+     * </p>
+     *
+     * @return the metrics
+     */
+    public ClientMetrics metrics() {
+        return this.config.metrics;
+    }
+
+    /**
+     * <p>
+     * Sets how the blocking search methods wait for the result. Default is
+     * {@link BlockingMode#DIRECT}, which suits thread-per-request code running on
+     * virtual threads. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param blockingMode the blocking mode
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> blockingMode(BlockingMode blockingMode) {
+        this.config.blockingMode(blockingMode);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the blocking mode.
+     * </p>
+     *
+     * @return the blocking mode
+     */
+    public BlockingMode blockingMode() {
+        return this.config.blockingMode;
+    }
+
+    /**
+     * <p>
+     * Sets the HTTP engine of the client. Default is {@link HttpEngine#reactor()},
+     * {@link HttpEngine#jdk()} starts faster and has a smaller footprint. Returns
+     * itself to allow chaining.
+     * </p>
+     *
+     * @param httpEngine the HTTP engine factory
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> httpEngine(HttpEngine.Factory httpEngine) {
+        this.config.httpEngine(httpEngine);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the factory of the HTTP engine.
+     * </p>
+     *
+     * @return the HTTP engine factory
+     */
+    public HttpEngine.Factory httpEngine() {
+        return this.config.httpEngine;
+    }
+
+    /**
+     * <p>
+     * Sets the cache of the search results. Default is none, every search calls
+     * the API. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param resultCache the result cache
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> resultCache(ResultCache resultCache) {
+        this.config.resultCache(resultCache);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the cache of the search results.
+     * </p>
+     *
+     * @return the result cache
+     */
+    public ResultCache resultCache() {
+        return this.config.resultCache;
+    }
+
+    /**
+     * <p>
+     * Sets the preprocessor downscaling, cropping and re-encoding the images
+     * before they are uploaded. Default is none, the images are uploaded as they
+     * are. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param imagePreprocessor the image preprocessor
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> imagePreprocessor(ImagePreprocessor imagePreprocessor) {
+        this.config.imagePreprocessor(imagePreprocessor);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the preprocessor of the images.
+     * </p>
+     *
+     * @return the image preprocessor
+     */
+    public ImagePreprocessor imagePreprocessor() {
+        return this.config.imagePreprocessor;
+    }
+
+    /**
+     * <p>
+     * Sets if compressed responses should be accepted. The responses are
+     * decompressed by the HTTP engine. Default is true, gzip is negotiated.
+     * Returns itself to allow chaining.
+     * </p>
+     *
+     * @param compression if compressed responses should be accepted
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> compression(Boolean compression) {
+        this.config.compression(compression);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the response compression setting.
+     * </p>
+     *
+     * @return if compressed responses should be accepted
+     */
+    public Boolean compression() {
+        return this.config.compression;
+    }
+
+    /**
+     * <p>
+     * Sets the maximum size of a response body held in memory, in bytes.
+     * Larger responses fail with a
+     * {@link org.springframework.core.io.buffer.DataBufferLimitException}.
+     * Default is {@link CarmenCloudClient#DEFAULT_MAX_IN_MEMORY_SIZE} (256 KB).
+     * Returns itself to allow chaining.
+     * </p>
+     *
+     * @param maxInMemorySize the maximum size of a response body in bytes
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> maxInMemorySize(Integer maxInMemorySize) {
+        this.config.maxInMemorySize(maxInMemorySize);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the maximum response size setting.
+     * </p>
+     *
+     * @return the maximum size of a response body in bytes
+     */
+    public Integer maxInMemorySize() {
+        return this.config.maxInMemorySize;
+    }
+
+    /**
+     * <p>
+     * Sets several endpoint URLs (e.g. of different cloud regions) to balance the
+     * calls between. Every call is sent to the better of two randomly chosen
+     * endpoints, based on their recent latency, error rate and number of calls in
+     * progress. Endpoints failing repeatedly are ejected for a while, and calls
+     * failing to connect are failed over to another endpoint. If set, the
+     * endpoint URL is ignored. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param endpoints the endpoint URLs
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> endpoints(List<String> endpoints) {
+        this.config.endpoints(endpoints);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the endpoint URLs the calls are balanced between.
+     * </p>
+     *
+     * @return the endpoint URLs
+     */
+    public List<String> endpoints() {
+        return this.config.endpoints;
+    }
+
+    /**
+     * <p>
+     * Sets the end-to-end timeout of a search, including the queueing, the
+     * retries and the hedged attempts, unlike the response timeout which applies
+     * to every attempt. The search is cancelled when it expires. Returns itself to
+     * allow chaining.
+     * </p>
+     *
+     * @param requestTimeout the end-to-end timeout in milliseconds
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> requestTimeout(Long requestTimeout) {
+        this.config.requestTimeout(requestTimeout);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the end-to-end timeout of a search.
+     * </p>
+     *
+     * @return the end-to-end timeout in milliseconds
+     */
+    public Long requestTimeout() {
+        return this.config.requestTimeout;
+    }
+
+    /**
+     * <p>
+     * Sets the timeout of opening a connection. With HTTP/2 it also bounds the
+     * TLS handshake. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param connectTimeout the connect timeout in milliseconds
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> connectTimeout(Long connectTimeout) {
+        this.config.connectTimeout(connectTimeout);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the connect timeout.
+     * </p>
+     *
+     * @return the connect timeout in milliseconds
+     */
+    public Long connectTimeout() {
+        return this.config.connectTimeout;
+    }
+
+    /**
+     * <p>
+     * Sets the maximum time a write of the request may take. Not used by the
+     * {@link HttpEngine#jdk()} engine. Returns itself to allow chaining.
+     * </p>
+     *
+     * @param writeTimeout the write timeout in milliseconds
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> writeTimeout(Long writeTimeout) {
+        this.config.writeTimeout(writeTimeout);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the write timeout.
+     * </p>
+     *
+     * @return the write timeout in milliseconds
+     */
+    public Long writeTimeout() {
+        return this.config.writeTimeout;
+    }
+
+    /**
+     * <p>
+     * Sets the maximum time without reading data once the request has been sent.
+     * Not used by the {@link HttpEngine#jdk()} engine. Returns itself to allow
+     * chaining.
+     * </p>
+     *
+     * @param readTimeout the read timeout in milliseconds
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> readTimeout(Long readTimeout) {
+        this.config.readTimeout(readTimeout);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the read timeout.
+     * </p>
+     *
+     * @return the read timeout in milliseconds
+     */
+    public Long readTimeout() {
+        return this.config.readTimeout;
+    }
+
+    /**
+     * <p>
+     * Sets the request scheduler, which limits the attempts in flight and
+     * schedules them by the priority of their {@link RequestOptions}. Returns
+     * itself to allow chaining.
+     * </p>
+     *
+     * @param requestScheduler the request scheduler
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> requestScheduler(RequestScheduler requestScheduler) {
+        this.config.requestScheduler(requestScheduler);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the request scheduler.
+     * </p>
+     *
+     * @return the request scheduler
+     */
+    public RequestScheduler requestScheduler() {
+        return this.config.requestScheduler;
     }
 
     /**
@@ -196,6 +769,7 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
      * </ul>
      * 
      * @return the default retry configuration
+     * @see #defaultRetryPolicy()
      */
     public RetryBackoffSpec defaultRetry() {
         return Retry.fixedDelay(3, Duration.ofSeconds(1)).filter(throwable -> {
@@ -210,6 +784,49 @@ public abstract class CarmenCloudClientBuilder<R extends Request<?>, A extends R
         });
     }
 
+    /**
+     * <p>
+     * Returns the default retry policy. Retries 3 times with exponential backoff
+     * (200 milliseconds base delay, full jitter), honouring the Retry-After
+     * header, for the transient errors (see
+     * {@link RetryPolicy#isTransient(Throwable)}). Retries are limited to 20% of
+     * the requests of the last 10 seconds plus 10 retries per second.
+     * </p>
+     *
+     * @return the default retry policy
+     */
+    public RetryPolicy defaultRetryPolicy() {
+        return RetryPolicy.builder().build();
+    }
+
+    /**
+     * <p>
+     * Initializes the builder with a configuration. Returns itself to allow
+     * chaining.
+     * </p>
+     *
+     * @param config the configuration
+     * @return itself
+     */
+    public CarmenCloudClientBuilder<R, A> config(ClientConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Config must not be null");
+        }
+        this.config = config.toBuilder();
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the configuration of the builder.
+     * </p>
+     *
+     * @return the configuration
+     */
+    public ClientConfig config() {
+        return this.config.build();
+    }
+
     /**
      * <p>
      * Builds the API client.
@@ -0,0 +1,567 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Circuit breaker keeping a separate circuit for every region (the path segment
+ * the requests are sent to).
+ * <p>
+ * Every circuit records the outcome of the last calls in a sliding window. If
+ * the failure rate or the slow call rate of the window reaches its threshold,
+ * the circuit opens and the calls of the region fail immediately with a
+ * {@link CarmenCloudException} with status code 503, caused by a
+ * {@link CircuitBreakerOpenException}. These calls are not retried. After the
+ * open duration the circuit becomes half-open and lets a few probe calls
+ * through: if they succeed, the circuit closes, otherwise it opens again.
+ * </p>
+ * <p>
+ * The state transitions are reported to the registered listeners, which can be
+ * used e.g. to route the requests to another region.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class CircuitBreaker {
+
+    /**
+     * The state of a circuit.
+     */
+    public enum State {
+        /**
+         * The calls are permitted and their outcome is recorded.
+         */
+        CLOSED,
+        /**
+         * The calls are rejected.
+         */
+        OPEN,
+        /**
+         * A limited number of probe calls are permitted to decide whether the
+         * circuit can be closed.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Listener of the state transitions of the circuits.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * <p>
+         * Called when the state of the circuit of a region changes. Must not
+         * block. Exceptions thrown by the listener are logged and ignored.
+         * </p>
+         *
+         * @param region the region
+         * @param from   the previous state
+         * @param to     the new state
+         */
+        void onStateTransition(String region, State from, State to);
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallDuration;
+    private final long openDuration;
+    private final int halfOpenCalls;
+    private final Predicate<Throwable> failurePredicate;
+
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private CircuitBreaker(CircuitBreakerBuilder builder) {
+        this.windowSize = builder.windowSize;
+        this.minimumCalls = builder.minimumCalls;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallDuration = builder.slowCallDuration.toNanos();
+        this.openDuration = builder.openDuration.toNanos();
+        this.halfOpenCalls = builder.halfOpenCalls;
+        this.failurePredicate = builder.failurePredicate;
+    }
+
+    /**
+     * <p>
+     * Creates a circuit breaker builder.
+     * </p>
+     *
+     * @return the builder
+     */
+    public static CircuitBreakerBuilder builder() {
+        return new CircuitBreakerBuilder();
+    }
+
+    /**
+     * <p>
+     * Registers a listener of the state transitions.
+     * </p>
+     *
+     * @param listener the listener
+     */
+    public void addListener(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * <p>
+     * Removes a listener of the state transitions.
+     * </p>
+     *
+     * @param listener the listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * <p>
+     * Returns the state of the circuit of a region.
+     * </p>
+     *
+     * @param region the region
+     * @return the state
+     */
+    public State state(String region) {
+        Circuit circuit = circuits.get(region(region));
+        return circuit != null ? circuit.state() : State.CLOSED;
+    }
+
+    /**
+     * <p>
+     * Returns the state of the circuits of all regions that have been called.
+     * </p>
+     *
+     * @return the states by region
+     */
+    public Map<String, State> states() {
+        Map<String, State> states = new TreeMap<>();
+        circuits.forEach((region, circuit) -> states.put(region, circuit.state()));
+        return states;
+    }
+
+    /**
+     * <p>
+     * Returns if a call to a region would be permitted right now. Does not use
+     * up the probe calls of a half-open circuit.
+     * </p>
+     *
+     * @param region the region
+     * @return if a call would be permitted
+     */
+    public boolean isCallPermitted(String region) {
+        Circuit circuit = circuits.get(region(region));
+        return circuit == null || circuit.isCallPermitted(System.nanoTime());
+    }
+
+    /**
+     * <p>
+     * Protects a call to a region with its circuit. The call is rejected if the
+     * circuit does not permit it, otherwise its outcome and duration are recorded
+     * when it terminates. Cancelled calls are not recorded.
+     * </p>
+     *
+     * @param <T>    the type of the result
+     * @param region the region
+     * @param call   the call
+     * @return the protected call
+     */
+    public <T> Mono<T> protect(String region, Mono<T> call) {
+        String name = region(region);
+        return Mono.defer(() -> {
+            Circuit circuit = circuits.computeIfAbsent(name, key -> new Circuit());
+            Transition transition = circuit.tryAcquire(System.nanoTime());
+            notify(name, transition);
+            if (transition != null && transition.rejected) {
+                return Mono.error(rejection(name, transition.to));
+            }
+            long start = System.nanoTime();
+            return call.doOnSuccess(result -> notify(name, circuit.record(false, System.nanoTime() - start)))
+                    .doOnError(throwable -> notify(name,
+                            circuit.record(failurePredicate.test(throwable), System.nanoTime() - start)))
+                    .doOnCancel(circuit::release);
+        });
+    }
+
+    /**
+     * <p>
+     * Rejects a call to a region in the current state of its circuit.
+     * </p>
+     *
+     * @param <T>    the type of the result
+     * @param region the region
+     * @return the failed call
+     */
+    <T> Mono<T> reject(String region) {
+        String name = region(region);
+        return Mono.error(rejection(name, state(name)));
+    }
+
+    /**
+     * <p>
+     * Returns if an error counts as a failure by default: the transient errors
+     * (see {@link RetryPolicy#isTransient(Throwable)}) except 429 responses. The
+     * throttling of the account is handled by the rate limiter, it does not mean
+     * that the region is unavailable.
+     * </p>
+     *
+     * @param throwable the error
+     * @return if the error is a failure
+     */
+    public static boolean isFailure(Throwable throwable) {
+        return RetryPolicy.isTransient(throwable) && !(throwable instanceof CarmenCloudException
+                && ((CarmenCloudException) throwable).getStatusCode() == 429);
+    }
+
+    /**
+     * <p>
+     * Returns if an error is a rejection of an open circuit.
+     * </p>
+     *
+     * @param throwable the error
+     * @return if the error is a rejection
+     */
+    public static boolean isRejection(Throwable throwable) {
+        return throwable instanceof CircuitBreakerOpenException
+                || (throwable instanceof CarmenCloudException
+                        && throwable.getCause() instanceof CircuitBreakerOpenException);
+    }
+
+    private static CarmenCloudException rejection(String region, State state) {
+        CircuitBreakerOpenException cause = new CircuitBreakerOpenException(region, state);
+        return new CarmenCloudException(503,
+                "{\"message\":\"" + cause.getMessage().replace("\\", "\\\\").replace("\"", "\\\"") + "\"}", cause);
+    }
+
+    private static String region(String region) {
+        return region != null ? region : "";
+    }
+
+    private void notify(String region, Transition transition) {
+        if (transition == null || transition.from == transition.to) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onStateTransition(region, transition.from, transition.to);
+            } catch (RuntimeException e) {
+                // must not fail the call that caused the transition, nor keep the other listeners from being notified
+                LOGGER.warn("Circuit breaker listener failed for region '{}'", region, e);
+            }
+        }
+    }
+
+    /**
+     * A state change, or a rejection in the given state.
+     */
+    private static final class Transition {
+
+        private final State from;
+        private final State to;
+        private final boolean rejected;
+
+        private Transition(State from, State to, boolean rejected) {
+            this.from = from;
+            this.to = to;
+            this.rejected = rejected;
+        }
+    }
+
+    /**
+     * The circuit of a single region.
+     */
+    private final class Circuit {
+
+        private final boolean[] failures = new boolean[windowSize];
+        private final boolean[] slowCalls = new boolean[windowSize];
+        private int size;
+        private int next;
+        private int failureCount;
+        private int slowCallCount;
+
+        private State state = State.CLOSED;
+        private long openedAt;
+        private int probes;
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized boolean isCallPermitted(long now) {
+            switch (state) {
+            case OPEN:
+                return now - openedAt >= openDuration;
+            case HALF_OPEN:
+                return probes > 0;
+            default:
+                return true;
+            }
+        }
+
+        synchronized Transition tryAcquire(long now) {
+            State from = state;
+            if (state == State.OPEN) {
+                if (now - openedAt < openDuration) {
+                    return new Transition(from, from, true);
+                }
+                transitionTo(State.HALF_OPEN, now);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probes == 0) {
+                    return new Transition(from, state, true);
+                }
+                probes--;
+            }
+            return from != state ? new Transition(from, state, false) : null;
+        }
+
+        synchronized void release() {
+            if (state == State.HALF_OPEN && probes + size < halfOpenCalls) {
+                probes++;
+            }
+        }
+
+        synchronized Transition record(boolean failure, long duration) {
+            if (state == State.OPEN) {
+                return null;
+            }
+            boolean slow = duration >= slowCallDuration;
+            if (size == windowSize) {
+                failureCount -= failures[next] ? 1 : 0;
+                slowCallCount -= slowCalls[next] ? 1 : 0;
+            } else {
+                size++;
+            }
+            failures[next] = failure;
+            slowCalls[next] = slow;
+            failureCount += failure ? 1 : 0;
+            slowCallCount += slow ? 1 : 0;
+            next = (next + 1) % windowSize;
+
+            State from = state;
+            int required = state == State.HALF_OPEN ? halfOpenCalls : minimumCalls;
+            if (size < required) {
+                return null;
+            }
+            if (failureCount >= failureRateThreshold * size || slowCallCount >= slowCallRateThreshold * size) {
+                transitionTo(State.OPEN, System.nanoTime());
+            } else if (state == State.HALF_OPEN) {
+                transitionTo(State.CLOSED, System.nanoTime());
+            }
+            return new Transition(from, state, false);
+        }
+
+        private void transitionTo(State to, long now) {
+            state = to;
+            size = 0;
+            next = 0;
+            failureCount = 0;
+            slowCallCount = 0;
+            probes = to == State.HALF_OPEN ? halfOpenCalls : 0;
+            if (to == State.OPEN) {
+                openedAt = now;
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link CircuitBreaker}.
+     */
+    public static class CircuitBreakerBuilder {
+
+        private int windowSize = 50;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        private double slowCallRateThreshold = 0.8;
+        private Duration slowCallDuration = Duration.ofSeconds(10);
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 5;
+        private Predicate<Throwable> failurePredicate = CircuitBreaker::isFailure;
+
+        /**
+         * Default constructor.
+         */
+        public CircuitBreakerBuilder() {
+        }
+
+        /**
+         * <p>
+         * Sets the number of the last calls the rates are calculated from.
+         * Default is 50.
+         * </p>
+         *
+         * @param windowSize the size of the sliding window
+         * @return the builder
+         */
+        public CircuitBreakerBuilder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the number of calls that must be recorded before the circuit can
+         * open. Default is 20.
+         * </p>
+         *
+         * @param minimumCalls the minimum number of calls
+         * @return the builder
+         */
+        public CircuitBreakerBuilder minimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the failure rate opening the circuit, between 0 and 1. Default is
+         * 0.5.
+         * </p>
+         *
+         * @param failureRateThreshold the failure rate threshold
+         * @return the builder
+         */
+        public CircuitBreakerBuilder failureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the slow call rate opening the circuit, between 0 and 1. Default is
+         * 0.8.
+         * </p>
+         *
+         * @param slowCallRateThreshold the slow call rate threshold
+         * @return the builder
+         */
+        public CircuitBreakerBuilder slowCallRateThreshold(double slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the duration above which a call is slow. Default is 10 seconds.
+         * </p>
+         *
+         * @param slowCallDuration the slow call duration
+         * @return the builder
+         */
+        public CircuitBreakerBuilder slowCallDuration(Duration slowCallDuration) {
+            this.slowCallDuration = slowCallDuration;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets how long an open circuit rejects the calls before it becomes
+         * half-open. Default is 30 seconds.
+         * </p>
+         *
+         * @param openDuration the open duration
+         * @return the builder
+         */
+        public CircuitBreakerBuilder openDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the number of probe calls permitted in half-open state. Default is
+         * 5.
+         * </p>
+         *
+         * @param halfOpenCalls the number of probe calls
+         * @return the builder
+         */
+        public CircuitBreakerBuilder halfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets which errors count as failures. Default is
+         * {@link CircuitBreaker#isFailure(Throwable)}, so client errors (4xx,
+         * including 429) do not open the circuit.
+         * </p>
+         *
+         * @param failurePredicate the failure predicate
+         * @return the builder
+         */
+        public CircuitBreakerBuilder failurePredicate(Predicate<Throwable> failurePredicate) {
+            this.failurePredicate = failurePredicate;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Builds the circuit breaker.
+         * </p>
+         *
+         * @return the circuit breaker
+         */
+        public CircuitBreaker build() {
+            if (windowSize < 1 || minimumCalls < 1 || halfOpenCalls < 1) {
+                throw new IllegalArgumentException("Window size, minimum and half-open calls must be positive");
+            }
+            if (minimumCalls > windowSize || halfOpenCalls > windowSize) {
+                throw new IllegalArgumentException("Minimum and half-open calls must not exceed the window size");
+            }
+            if (failureRateThreshold <= 0 || failureRateThreshold > 1 || slowCallRateThreshold <= 0
+                    || slowCallRateThreshold > 1) {
+                throw new IllegalArgumentException("Rate thresholds must be between 0 and 1");
+            }
+            if (slowCallDuration == null || openDuration == null) {
+                throw new IllegalArgumentException("Durations must not be null");
+            }
+            if (failurePredicate == null) {
+                throw new IllegalArgumentException("Failure predicate must not be null");
+            }
+            return new CircuitBreaker(this);
+        }
+    }
+}
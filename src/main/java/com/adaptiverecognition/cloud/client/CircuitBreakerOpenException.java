@@ -0,0 +1,73 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+/**
+ * Signals that a call was rejected by an open (or saturated half-open) circuit
+ * of a {@link CircuitBreaker}. It is the cause of the
+ * {@link com.adaptiverecognition.cloud.CarmenCloudException} the call fails
+ * with.
+ *
+ * @author laszlo.toth
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String region;
+    private final CircuitBreaker.State state;
+
+    /**
+     * <p>
+     * Creates the exception.
+     * </p>
+     *
+     * @param region the region of the circuit
+     * @param state  the state of the circuit
+     */
+    public CircuitBreakerOpenException(String region, CircuitBreaker.State state) {
+        super("Circuit breaker is " + state.name().toLowerCase().replace('_', '-') + " for region '" + region
+                + "'", null, false, false);
+        this.region = region;
+        this.state = state;
+    }
+
+    /**
+     * <p>
+     * Returns the region of the circuit.
+     * </p>
+     *
+     * @return the region
+     */
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * <p>
+     * Returns the state of the circuit.
+     * </p>
+     *
+     * @return the state
+     */
+    public CircuitBreaker.State getState() {
+        return state;
+    }
+}
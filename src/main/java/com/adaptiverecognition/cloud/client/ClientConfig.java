@@ -0,0 +1,1292 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import reactor.netty.http.HttpProtocol;
+import reactor.util.retry.RetryBackoffSpec;
+
+/**
+ * Immutable configuration of an API client.
+ * <p>
+ * A configuration holds every setting of a client, it can be shared between
+ * threads and used to create any number of identical clients, e.g. with
+ * {@code CarmenCloudClientBuilder.vehicleClientBuilder().config(config).build()}.
+ * Clients are independent of the configuration they were created from, so a
+ * client can be replaced by a new one created from an updated configuration.
+ * </p>
+ * <p>
+ * The simple settings can be loaded from properties or from a YAML document.
+ * The names of the settings are the names of the builder methods, and are
+ * matched case-insensitively, ignoring dashes and underscores (so
+ * {@code apiKey}, {@code api-key} and {@code API_KEY} are the same). The
+ * settings taking an object (retry configurations, policies, connection pools,
+ * caches, metrics and the image preprocessor) are set with
+ * {@link #toBuilder()}. The {@code httpEngine} setting can be {@code reactor}
+ * or {@code jdk}. The {@code endpoints} are given as a comma separated list or
+ * as a YAML sequence.
+ * </p>
+ *
+ * <pre>
+ * carmen:
+ *   endpoint: https://api.carmencloud.com
+ *   api-key: *****
+ *   response-timeout: 10000
+ *   protocol: H2
+ *   rate-limit: 20
+ * </pre>
+ *
+ * @author laszlo.toth
+ */
+public final class ClientConfig {
+
+    private final String endpoint;
+    private final String apiKey;
+    private final List<String> endpoints;
+    private final Long responseTimeout;
+    private final Long requestTimeout;
+    private final Long connectTimeout;
+    private final Long writeTimeout;
+    private final Long readTimeout;
+    private final RetryBackoffSpec retry;
+    private final ConnectionPool connectionPool;
+    private final HttpProtocol protocol;
+    private final Long http2MaxConcurrentStreams;
+    private final Long sslSessionCacheSize;
+    private final Long sslSessionTimeout;
+    private final Double rateLimit;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final HedgingPolicy hedgingPolicy;
+    private final RequestScheduler requestScheduler;
+    private final ClientMetrics metrics;
+    private final BlockingMode blockingMode;
+    private final HttpEngine.Factory httpEngine;
+    private final ResultCache resultCache;
+    private final ImagePreprocessor imagePreprocessor;
+    private final Boolean compression;
+    private final Integer maxInMemorySize;
+    private final boolean disableCallStatistics;
+    private final boolean disableImageResizing;
+    private final boolean enableWideRangeAnalysis;
+    private final boolean disableChecksumCheck;
+    private final boolean enableFullUsAccrCode;
+    private final boolean disableIsoCode;
+    private final Integer imagesPerCall;
+    private final Long locationsCacheTtl;
+    private final boolean validateLocations;
+
+    private ClientConfig(ClientConfigBuilder builder) {
+        this.endpoint = builder.endpoint;
+        this.apiKey = builder.apiKey;
+        this.endpoints = builder.endpoints != null ? List.copyOf(builder.endpoints) : null;
+        this.responseTimeout = builder.responseTimeout;
+        this.requestTimeout = builder.requestTimeout;
+        this.connectTimeout = builder.connectTimeout;
+        this.writeTimeout = builder.writeTimeout;
+        this.readTimeout = builder.readTimeout;
+        this.retry = builder.retry;
+        this.connectionPool = builder.connectionPool;
+        this.protocol = builder.protocol;
+        this.http2MaxConcurrentStreams = builder.http2MaxConcurrentStreams;
+        this.sslSessionCacheSize = builder.sslSessionCacheSize;
+        this.sslSessionTimeout = builder.sslSessionTimeout;
+        this.rateLimit = builder.rateLimit;
+        this.retryPolicy = builder.retryPolicy;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.hedgingPolicy = builder.hedgingPolicy;
+        this.requestScheduler = builder.requestScheduler;
+        this.metrics = builder.metrics;
+        this.blockingMode = builder.blockingMode;
+        this.httpEngine = builder.httpEngine;
+        this.resultCache = builder.resultCache;
+        this.imagePreprocessor = builder.imagePreprocessor;
+        this.compression = builder.compression;
+        this.maxInMemorySize = builder.maxInMemorySize;
+        this.disableCallStatistics = builder.disableCallStatistics;
+        this.disableImageResizing = builder.disableImageResizing;
+        this.enableWideRangeAnalysis = builder.enableWideRangeAnalysis;
+        this.disableChecksumCheck = builder.disableChecksumCheck;
+        this.enableFullUsAccrCode = builder.enableFullUsAccrCode;
+        this.disableIsoCode = builder.disableIsoCode;
+        this.imagesPerCall = builder.imagesPerCall;
+        this.locationsCacheTtl = builder.locationsCacheTtl;
+        this.validateLocations = builder.validateLocations;
+    }
+
+    /**
+     * <p>
+     * Creates a configuration builder.
+     * </p>
+     *
+     * @return the builder
+     */
+    public static ClientConfigBuilder builder() {
+        return new ClientConfigBuilder();
+    }
+
+    /**
+     * <p>
+     * Loads a configuration from properties.
+     * </p>
+     *
+     * @param properties the properties
+     * @param prefix     the prefix of the names of the settings without the
+     *                   trailing dot (e.g. {@code carmen}), or null
+     * @return the configuration
+     * @throws IllegalArgumentException if a setting is unknown or its value is
+     *                                  invalid
+     */
+    public static ClientConfig fromProperties(Properties properties, String prefix) {
+        if (properties == null) {
+            throw new IllegalArgumentException("Properties must not be null");
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            values.put(name, properties.getProperty(name));
+        }
+        return load(values, prefix);
+    }
+
+    /**
+     * <p>
+     * Loads a configuration from a YAML document. Nested mappings are joined
+     * with dots, like the names of properties.
+     * </p>
+     *
+     * @param yaml   the YAML document
+     * @param prefix the path of the settings in the document without the
+     *               trailing dot (e.g. {@code carmen}), or null
+     * @return the configuration
+     * @throws IllegalArgumentException if a setting is unknown or its value is
+     *                                  invalid
+     */
+    public static ClientConfig fromYaml(InputStream yaml, String prefix) {
+        if (yaml == null) {
+            throw new IllegalArgumentException("YAML must not be null");
+        }
+        Object document = new Yaml(new SafeConstructor(new LoaderOptions())).load(yaml);
+        Map<String, Object> values = new LinkedHashMap<>();
+        if (document instanceof Map) {
+            flatten("", (Map<?, ?>) document, values);
+        } else if (document != null) {
+            throw new IllegalArgumentException("YAML document must be a mapping");
+        }
+        return load(values, prefix);
+    }
+
+    private static void flatten(String path, Map<?, ?> map, Map<String, Object> values) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String name = path + entry.getKey();
+            if (entry.getValue() instanceof Map) {
+                flatten(name + ".", (Map<?, ?>) entry.getValue(), values);
+            } else {
+                values.put(name, entry.getValue());
+            }
+        }
+    }
+
+    private static ClientConfig load(Map<String, Object> values, String prefix) {
+        String start = prefix == null || prefix.isEmpty() ? "" : prefix + ".";
+        ClientConfigBuilder builder = builder();
+        values.forEach((name, value) -> {
+            if (name.startsWith(start) && value instanceof Collection) {
+                builder.set(name.substring(start.length()), ((Collection<?>) value).stream().map(String::valueOf)
+                        .collect(Collectors.joining(",")));
+            } else if (name.startsWith(start) && value != null) {
+                builder.set(name.substring(start.length()), String.valueOf(value).trim());
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * <p>
+     * Creates a builder initialized with this configuration.
+     * </p>
+     *
+     * @return the builder
+     */
+    public ClientConfigBuilder toBuilder() {
+        ClientConfigBuilder builder = new ClientConfigBuilder();
+        builder.endpoint = endpoint;
+        builder.apiKey = apiKey;
+        builder.endpoints = endpoints;
+        builder.responseTimeout = responseTimeout;
+        builder.requestTimeout = requestTimeout;
+        builder.connectTimeout = connectTimeout;
+        builder.writeTimeout = writeTimeout;
+        builder.readTimeout = readTimeout;
+        builder.retry = retry;
+        builder.connectionPool = connectionPool;
+        builder.protocol = protocol;
+        builder.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+        builder.sslSessionCacheSize = sslSessionCacheSize;
+        builder.sslSessionTimeout = sslSessionTimeout;
+        builder.rateLimit = rateLimit;
+        builder.retryPolicy = retryPolicy;
+        builder.circuitBreaker = circuitBreaker;
+        builder.hedgingPolicy = hedgingPolicy;
+        builder.requestScheduler = requestScheduler;
+        builder.metrics = metrics;
+        builder.blockingMode = blockingMode;
+        builder.httpEngine = httpEngine;
+        builder.resultCache = resultCache;
+        builder.imagePreprocessor = imagePreprocessor;
+        builder.compression = compression;
+        builder.maxInMemorySize = maxInMemorySize;
+        builder.disableCallStatistics = disableCallStatistics;
+        builder.disableImageResizing = disableImageResizing;
+        builder.enableWideRangeAnalysis = enableWideRangeAnalysis;
+        builder.disableChecksumCheck = disableChecksumCheck;
+        builder.enableFullUsAccrCode = enableFullUsAccrCode;
+        builder.disableIsoCode = disableIsoCode;
+        builder.imagesPerCall = imagesPerCall;
+        builder.locationsCacheTtl = locationsCacheTtl;
+        builder.validateLocations = validateLocations;
+        return builder;
+    }
+
+    /**
+     * <p>
+     * Returns the endpoint URL.
+     * </p>
+     *
+     * @return the endpoint URL
+     */
+    public String endpoint() {
+        return endpoint;
+    }
+
+    /**
+     * <p>
+     * Returns the API key.
+     * </p>
+     *
+     * @return the API key
+     */
+    public String apiKey() {
+        return apiKey;
+    }
+
+    /**
+     * <p>
+     * Returns the endpoint URLs the calls are balanced between.
+     * </p>
+     *
+     * @return the endpoint URLs the calls are balanced between
+     */
+    public List<String> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * <p>
+     * Returns the response timeout in milliseconds.
+     * </p>
+     *
+     * @return the response timeout in milliseconds
+     */
+    public Long responseTimeout() {
+        return responseTimeout;
+    }
+
+    /**
+     * <p>
+     * Returns the end-to-end timeout of a search in milliseconds.
+     * </p>
+     *
+     * @return the end-to-end timeout of a search in milliseconds
+     */
+    public Long requestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * <p>
+     * Returns the connect timeout in milliseconds.
+     * </p>
+     *
+     * @return the connect timeout in milliseconds
+     */
+    public Long connectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * <p>
+     * Returns the write timeout in milliseconds.
+     * </p>
+     *
+     * @return the write timeout in milliseconds
+     */
+    public Long writeTimeout() {
+        return writeTimeout;
+    }
+
+    /**
+     * <p>
+     * Returns the read timeout in milliseconds.
+     * </p>
+     *
+     * @return the read timeout in milliseconds
+     */
+    public Long readTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * <p>
+     * Returns the retry configuration.
+     * </p>
+     *
+     * @return the retry configuration
+     */
+    public RetryBackoffSpec retry() {
+        return retry;
+    }
+
+    /**
+     * <p>
+     * Returns the connection pool.
+     * </p>
+     *
+     * @return the connection pool
+     */
+    public ConnectionPool connectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * <p>
+     * Returns the HTTP protocol.
+     * </p>
+     *
+     * @return the HTTP protocol
+     */
+    public HttpProtocol protocol() {
+        return protocol;
+    }
+
+    /**
+     * <p>
+     * Returns the maximum number of concurrent HTTP/2 streams per connection.
+     * </p>
+     *
+     * @return the maximum number of concurrent HTTP/2 streams per connection
+     */
+    public Long http2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    /**
+     * <p>
+     * Returns the size of the TLS session cache.
+     * </p>
+     *
+     * @return the size of the TLS session cache
+     */
+    public Long sslSessionCacheSize() {
+        return sslSessionCacheSize;
+    }
+
+    /**
+     * <p>
+     * Returns the timeout of the cached TLS sessions in seconds.
+     * </p>
+     *
+     * @return the timeout of the cached TLS sessions in seconds
+     */
+    public Long sslSessionTimeout() {
+        return sslSessionTimeout;
+    }
+
+    /**
+     * <p>
+     * Returns the client-side rate limit in requests per second.
+     * </p>
+     *
+     * @return the client-side rate limit in requests per second
+     */
+    public Double rateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * <p>
+     * Returns the retry policy.
+     * </p>
+     *
+     * @return the retry policy
+     */
+    public RetryPolicy retryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * <p>
+     * Returns the circuit breaker.
+     * </p>
+     *
+     * @return the circuit breaker
+     */
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * <p>
+     * Returns the hedging policy.
+     * </p>
+     *
+     * @return the hedging policy
+     */
+    public HedgingPolicy hedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * <p>
+     * Returns the request scheduler.
+     * </p>
+     *
+     * @return the request scheduler
+     */
+    public RequestScheduler requestScheduler() {
+        return requestScheduler;
+    }
+
+    /**
+     * <p>
+     * Returns the metrics.
+     * </p>
+     *
+     * @return the metrics
+     */
+    public ClientMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * <p>
+     * Returns the blocking mode.
+     * </p>
+     *
+     * @return the blocking mode
+     */
+    public BlockingMode blockingMode() {
+        return blockingMode;
+    }
+
+    /**
+     * <p>
+     * Returns the HTTP engine factory.
+     * </p>
+     *
+     * @return the HTTP engine factory
+     */
+    public HttpEngine.Factory httpEngine() {
+        return httpEngine;
+    }
+
+    /**
+     * <p>
+     * Returns the result cache.
+     * </p>
+     *
+     * @return the result cache
+     */
+    public ResultCache resultCache() {
+        return resultCache;
+    }
+
+    /**
+     * <p>
+     * Returns the image preprocessor.
+     * </p>
+     *
+     * @return the image preprocessor
+     */
+    public ImagePreprocessor imagePreprocessor() {
+        return imagePreprocessor;
+    }
+
+    /**
+     * <p>
+     * Returns if compressed responses are accepted.
+     * </p>
+     *
+     * @return if compressed responses are accepted
+     */
+    public Boolean compression() {
+        return compression;
+    }
+
+    /**
+     * <p>
+     * Returns the maximum size of a response body in bytes.
+     * </p>
+     *
+     * @return the maximum size of a response body in bytes
+     */
+    public Integer maxInMemorySize() {
+        return maxInMemorySize;
+    }
+
+    /**
+     * <p>
+     * Returns if call statistics are disabled (Vehicle API).
+     * </p>
+     *
+     * @return if call statistics are disabled
+     */
+    public boolean disableCallStatistics() {
+        return disableCallStatistics;
+    }
+
+    /**
+     * <p>
+     * Returns if image resizing is disabled.
+     * </p>
+     *
+     * @return if image resizing is disabled
+     */
+    public boolean disableImageResizing() {
+        return disableImageResizing;
+    }
+
+    /**
+     * <p>
+     * Returns if wide range analysis is enabled.
+     * </p>
+     *
+     * @return if wide range analysis is enabled
+     */
+    public boolean enableWideRangeAnalysis() {
+        return enableWideRangeAnalysis;
+    }
+
+    /**
+     * <p>
+     * Returns if checksum check is disabled (Transportation &amp; Cargo API).
+     * </p>
+     *
+     * @return if checksum check is disabled
+     */
+    public boolean disableChecksumCheck() {
+        return disableChecksumCheck;
+    }
+
+    /**
+     * <p>
+     * Returns if the full US ACCR code is enabled (Transportation &amp; Cargo API).
+     * </p>
+     *
+     * @return if the full US ACCR code is enabled
+     */
+    public boolean enableFullUsAccrCode() {
+        return enableFullUsAccrCode;
+    }
+
+    /**
+     * <p>
+     * Returns if the ISO code is disabled (Transportation &amp; Cargo API).
+     * </p>
+     *
+     * @return if the ISO code is disabled
+     */
+    public boolean disableIsoCode() {
+        return disableIsoCode;
+    }
+
+    /**
+     * <p>
+     * Returns the maximum number of images sent in one call (Transportation &amp; Cargo API).
+     * </p>
+     *
+     * @return the maximum number of images sent in one call
+     */
+    public Integer imagesPerCall() {
+        return imagesPerCall;
+    }
+
+    /**
+     * <p>
+     * Returns the time to live of the cached locations in milliseconds (Vehicle API).
+     * </p>
+     *
+     * @return the time to live of the cached locations in milliseconds
+     */
+    public Long locationsCacheTtl() {
+        return locationsCacheTtl;
+    }
+
+    /**
+     * <p>
+     * Returns if the locations are validated (Vehicle API).
+     * </p>
+     *
+     * @return if the locations are validated
+     */
+    public boolean validateLocations() {
+        return validateLocations;
+    }
+
+    /**
+     * Builder for {@link ClientConfig}.
+     */
+    public static class ClientConfigBuilder {
+
+        String endpoint;
+        String apiKey;
+        List<String> endpoints;
+        Long responseTimeout;
+        Long requestTimeout;
+        Long connectTimeout;
+        Long writeTimeout;
+        Long readTimeout;
+        RetryBackoffSpec retry;
+        ConnectionPool connectionPool;
+        HttpProtocol protocol;
+        Long http2MaxConcurrentStreams;
+        Long sslSessionCacheSize;
+        Long sslSessionTimeout;
+        Double rateLimit;
+        RetryPolicy retryPolicy;
+        CircuitBreaker circuitBreaker;
+        HedgingPolicy hedgingPolicy;
+        RequestScheduler requestScheduler;
+        ClientMetrics metrics;
+        BlockingMode blockingMode;
+        HttpEngine.Factory httpEngine;
+        ResultCache resultCache;
+        ImagePreprocessor imagePreprocessor;
+        Boolean compression;
+        Integer maxInMemorySize;
+        boolean disableCallStatistics;
+        boolean disableImageResizing;
+        boolean enableWideRangeAnalysis;
+        boolean disableChecksumCheck;
+        boolean enableFullUsAccrCode;
+        boolean disableIsoCode;
+        Integer imagesPerCall;
+        Long locationsCacheTtl;
+        boolean validateLocations;
+
+        /**
+         * Default constructor.
+         */
+        public ClientConfigBuilder() {
+        }
+
+        /**
+         * <p>
+         * Sets the endpoint URL.
+         * </p>
+         *
+         * @param endpoint the endpoint URL
+         * @return the builder
+         */
+        public ClientConfigBuilder endpoint(String endpoint) {
+            this.endpoint = endpoint;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the API key.
+         * </p>
+         *
+         * @param apiKey the API key
+         * @return the builder
+         */
+        public ClientConfigBuilder apiKey(String apiKey) {
+            this.apiKey = apiKey;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the endpoint URLs the calls are balanced between.
+         * </p>
+         *
+         * @param endpoints the endpoint URLs the calls are balanced between
+         * @return the builder
+         */
+        public ClientConfigBuilder endpoints(List<String> endpoints) {
+            this.endpoints = endpoints;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the response timeout in milliseconds.
+         * </p>
+         *
+         * @param responseTimeout the response timeout in milliseconds
+         * @return the builder
+         */
+        public ClientConfigBuilder responseTimeout(Long responseTimeout) {
+            this.responseTimeout = responseTimeout;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the end-to-end timeout of a search in milliseconds.
+         * </p>
+         *
+         * @param requestTimeout the end-to-end timeout of a search in milliseconds
+         * @return the builder
+         */
+        public ClientConfigBuilder requestTimeout(Long requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the connect timeout in milliseconds.
+         * </p>
+         *
+         * @param connectTimeout the connect timeout in milliseconds
+         * @return the builder
+         */
+        public ClientConfigBuilder connectTimeout(Long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the write timeout in milliseconds.
+         * </p>
+         *
+         * @param writeTimeout the write timeout in milliseconds
+         * @return the builder
+         */
+        public ClientConfigBuilder writeTimeout(Long writeTimeout) {
+            this.writeTimeout = writeTimeout;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the read timeout in milliseconds.
+         * </p>
+         *
+         * @param readTimeout the read timeout in milliseconds
+         * @return the builder
+         */
+        public ClientConfigBuilder readTimeout(Long readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the retry configuration.
+         * </p>
+         *
+         * @param retry the retry configuration
+         * @return the builder
+         */
+        public ClientConfigBuilder retry(RetryBackoffSpec retry) {
+            this.retry = retry;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the connection pool.
+         * </p>
+         *
+         * @param connectionPool the connection pool
+         * @return the builder
+         */
+        public ClientConfigBuilder connectionPool(ConnectionPool connectionPool) {
+            this.connectionPool = connectionPool;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the HTTP protocol.
+         * </p>
+         *
+         * @param protocol the HTTP protocol
+         * @return the builder
+         */
+        public ClientConfigBuilder protocol(HttpProtocol protocol) {
+            this.protocol = protocol;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of concurrent HTTP/2 streams per connection,
+         * see {@link CarmenCloudClientBuilder#http2MaxConcurrentStreams(Long)}.
+         * </p>
+         *
+         * @param http2MaxConcurrentStreams the maximum number of concurrent HTTP/2 streams per connection
+         * @return the builder
+         */
+        public ClientConfigBuilder http2MaxConcurrentStreams(Long http2MaxConcurrentStreams) {
+            this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the size of the TLS session cache.
+         * </p>
+         *
+         * @param sslSessionCacheSize the size of the TLS session cache
+         * @return the builder
+         */
+        public ClientConfigBuilder sslSessionCacheSize(Long sslSessionCacheSize) {
+            this.sslSessionCacheSize = sslSessionCacheSize;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the timeout of the cached TLS sessions in seconds.
+         * </p>
+         *
+         * @param sslSessionTimeout the timeout of the cached TLS sessions in seconds
+         * @return the builder
+         */
+        public ClientConfigBuilder sslSessionTimeout(Long sslSessionTimeout) {
+            this.sslSessionTimeout = sslSessionTimeout;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the client-side rate limit in requests per second.
+         * </p>
+         *
+         * @param rateLimit the client-side rate limit in requests per second
+         * @return the builder
+         */
+        public ClientConfigBuilder rateLimit(Double rateLimit) {
+            this.rateLimit = rateLimit;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the retry policy.
+         * </p>
+         *
+         * @param retryPolicy the retry policy
+         * @return the builder
+         */
+        public ClientConfigBuilder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the circuit breaker.
+         * </p>
+         *
+         * @param circuitBreaker the circuit breaker
+         * @return the builder
+         */
+        public ClientConfigBuilder circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the hedging policy.
+         * </p>
+         *
+         * @param hedgingPolicy the hedging policy
+         * @return the builder
+         */
+        public ClientConfigBuilder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the request scheduler.
+         * </p>
+         *
+         * @param requestScheduler the request scheduler
+         * @return the builder
+         */
+        public ClientConfigBuilder requestScheduler(RequestScheduler requestScheduler) {
+            this.requestScheduler = requestScheduler;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the metrics.
+         * </p>
+         *
+         * @param metrics the metrics
+         * @return the builder
+         */
+        public ClientConfigBuilder metrics(ClientMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the blocking mode.
+         * </p>
+         *
+         * @param blockingMode the blocking mode
+         * @return the builder
+         */
+        public ClientConfigBuilder blockingMode(BlockingMode blockingMode) {
+            this.blockingMode = blockingMode;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the HTTP engine factory.
+         * </p>
+         *
+         * @param httpEngine the HTTP engine factory
+         * @return the builder
+         */
+        public ClientConfigBuilder httpEngine(HttpEngine.Factory httpEngine) {
+            this.httpEngine = httpEngine;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the result cache.
+         * </p>
+         *
+         * @param resultCache the result cache
+         * @return the builder
+         */
+        public ClientConfigBuilder resultCache(ResultCache resultCache) {
+            this.resultCache = resultCache;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the image preprocessor.
+         * </p>
+         *
+         * @param imagePreprocessor the image preprocessor
+         * @return the builder
+         */
+        public ClientConfigBuilder imagePreprocessor(ImagePreprocessor imagePreprocessor) {
+            this.imagePreprocessor = imagePreprocessor;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if compressed responses are accepted.
+         * </p>
+         *
+         * @param compression if compressed responses are accepted
+         * @return the builder
+         */
+        public ClientConfigBuilder compression(Boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum size of a response body in bytes.
+         * </p>
+         *
+         * @param maxInMemorySize the maximum size of a response body in bytes
+         * @return the builder
+         */
+        public ClientConfigBuilder maxInMemorySize(Integer maxInMemorySize) {
+            this.maxInMemorySize = maxInMemorySize;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if call statistics are disabled (Vehicle API).
+         * </p>
+         *
+         * @param disableCallStatistics if call statistics are disabled
+         * @return the builder
+         */
+        public ClientConfigBuilder disableCallStatistics(boolean disableCallStatistics) {
+            this.disableCallStatistics = disableCallStatistics;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if image resizing is disabled.
+         * </p>
+         *
+         * @param disableImageResizing if image resizing is disabled
+         * @return the builder
+         */
+        public ClientConfigBuilder disableImageResizing(boolean disableImageResizing) {
+            this.disableImageResizing = disableImageResizing;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if wide range analysis is enabled.
+         * </p>
+         *
+         * @param enableWideRangeAnalysis if wide range analysis is enabled
+         * @return the builder
+         */
+        public ClientConfigBuilder enableWideRangeAnalysis(boolean enableWideRangeAnalysis) {
+            this.enableWideRangeAnalysis = enableWideRangeAnalysis;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if checksum check is disabled (Transportation &amp; Cargo API).
+         * </p>
+         *
+         * @param disableChecksumCheck if checksum check is disabled
+         * @return the builder
+         */
+        public ClientConfigBuilder disableChecksumCheck(boolean disableChecksumCheck) {
+            this.disableChecksumCheck = disableChecksumCheck;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if the full US ACCR code is enabled (Transportation &amp; Cargo API).
+         * </p>
+         *
+         * @param enableFullUsAccrCode if the full US ACCR code is enabled
+         * @return the builder
+         */
+        public ClientConfigBuilder enableFullUsAccrCode(boolean enableFullUsAccrCode) {
+            this.enableFullUsAccrCode = enableFullUsAccrCode;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if the ISO code is disabled (Transportation &amp; Cargo API).
+         * </p>
+         *
+         * @param disableIsoCode if the ISO code is disabled
+         * @return the builder
+         */
+        public ClientConfigBuilder disableIsoCode(boolean disableIsoCode) {
+            this.disableIsoCode = disableIsoCode;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of images sent in one call (Transportation &amp; Cargo API).
+         * </p>
+         *
+         * @param imagesPerCall the maximum number of images sent in one call
+         * @return the builder
+         */
+        public ClientConfigBuilder imagesPerCall(Integer imagesPerCall) {
+            this.imagesPerCall = imagesPerCall;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the time to live of the cached locations in milliseconds (Vehicle API).
+         * </p>
+         *
+         * @param locationsCacheTtl the time to live of the cached locations in milliseconds
+         * @return the builder
+         */
+        public ClientConfigBuilder locationsCacheTtl(Long locationsCacheTtl) {
+            this.locationsCacheTtl = locationsCacheTtl;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if the locations are validated (Vehicle API).
+         * </p>
+         *
+         * @param validateLocations if the locations are validated
+         * @return the builder
+         */
+        public ClientConfigBuilder validateLocations(boolean validateLocations) {
+            this.validateLocations = validateLocations;
+            return this;
+        }
+
+        /**
+         * Sets a simple setting by its name, parsing its value.
+         */
+        void set(String name, String value) {
+            boolean known = true;
+            try {
+                switch (name.replace("-", "").replace("_", "").toLowerCase(Locale.ROOT)) {
+                case "endpoint":
+                    this.endpoint = value;
+                    break;
+                case "apikey":
+                    this.apiKey = value;
+                    break;
+                case "endpoints":
+                    this.endpoints = List.of(value.split("\\s*,\\s*"));
+                    break;
+                case "responsetimeout":
+                    this.responseTimeout = Long.valueOf(value);
+                    break;
+                case "requesttimeout":
+                    this.requestTimeout = Long.valueOf(value);
+                    break;
+                case "connecttimeout":
+                    this.connectTimeout = Long.valueOf(value);
+                    break;
+                case "writetimeout":
+                    this.writeTimeout = Long.valueOf(value);
+                    break;
+                case "readtimeout":
+                    this.readTimeout = Long.valueOf(value);
+                    break;
+                case "protocol":
+                    this.protocol = HttpProtocol.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "http2maxconcurrentstreams":
+                    this.http2MaxConcurrentStreams = Long.valueOf(value);
+                    break;
+                case "sslsessioncachesize":
+                    this.sslSessionCacheSize = Long.valueOf(value);
+                    break;
+                case "sslsessiontimeout":
+                    this.sslSessionTimeout = Long.valueOf(value);
+                    break;
+                case "ratelimit":
+                    this.rateLimit = Double.valueOf(value);
+                    break;
+                case "blockingmode":
+                    this.blockingMode = BlockingMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "httpengine":
+                    this.httpEngine = httpEngine(value);
+                    break;
+                case "compression":
+                    this.compression = parseBoolean(value);
+                    break;
+                case "maxinmemorysize":
+                    this.maxInMemorySize = Integer.valueOf(value);
+                    break;
+                case "disablecallstatistics":
+                    this.disableCallStatistics = parseBoolean(value);
+                    break;
+                case "disableimageresizing":
+                    this.disableImageResizing = parseBoolean(value);
+                    break;
+                case "enablewiderangeanalysis":
+                    this.enableWideRangeAnalysis = parseBoolean(value);
+                    break;
+                case "disablechecksumcheck":
+                    this.disableChecksumCheck = parseBoolean(value);
+                    break;
+                case "enablefullusaccrcode":
+                    this.enableFullUsAccrCode = parseBoolean(value);
+                    break;
+                case "disableisocode":
+                    this.disableIsoCode = parseBoolean(value);
+                    break;
+                case "imagespercall":
+                    this.imagesPerCall = Integer.valueOf(value);
+                    break;
+                case "locationscachettl":
+                    this.locationsCacheTtl = Long.valueOf(value);
+                    break;
+                case "validatelocations":
+                    this.validateLocations = parseBoolean(value);
+                    break;
+                default:
+                    known = false;
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid value of setting " + name + ": " + value, e);
+            }
+            if (!known) {
+                throw new IllegalArgumentException("Unknown setting: " + name);
+            }
+        }
+
+        private static boolean parseBoolean(String value) {
+            if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+                throw new IllegalArgumentException("Not a boolean: " + value);
+            }
+            return Boolean.parseBoolean(value);
+        }
+
+        private static HttpEngine.Factory httpEngine(String value) {
+            switch (value.toLowerCase(Locale.ROOT)) {
+            case "reactor":
+                return HttpEngine.reactor();
+            case "jdk":
+                return HttpEngine.jdk();
+            default:
+                throw new IllegalArgumentException("Unknown HTTP engine: " + value);
+            }
+        }
+
+        /**
+         * <p>
+         * Builds the configuration.
+         * </p>
+         *
+         * @return the configuration
+         */
+        public ClientConfig build() {
+            return new ClientConfig(this);
+        }
+    }
+}
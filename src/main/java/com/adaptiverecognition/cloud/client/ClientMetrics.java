@@ -0,0 +1,81 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.net.SocketAddress;
+
+import reactor.netty.resources.ConnectionPoolMetrics;
+
+/**
+ * Receives the measurements of the API clients. See
+ * {@link MicrometerClientMetrics} for an implementation publishing them to a
+ * Micrometer registry.
+ * <p>
+ * The methods are called on the I/O threads of the client, they must not
+ * block.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public interface ClientMetrics {
+
+    /**
+     * <p>
+     * Called when an HTTP exchange (an attempt of a call, or a hedged duplicate
+     * of it) starts.
+     * </p>
+     *
+     * @param attempt the attempt
+     */
+    void attemptStarted(AttemptMetrics attempt);
+
+    /**
+     * <p>
+     * Called when an HTTP exchange terminates, either with a result, an error or
+     * a cancellation.
+     * </p>
+     *
+     * @param attempt the attempt
+     */
+    void attemptFinished(AttemptMetrics attempt);
+
+    /**
+     * <p>
+     * Called when a call is retried.
+     * </p>
+     *
+     * @param api the API ("vehicle" or "transport")
+     */
+    void retried(String api);
+
+    /**
+     * <p>
+     * Called when a connection pool built with this instance (see
+     * {@link ConnectionPool.ConnectionPoolBuilder#metrics(ClientMetrics)}) creates
+     * a pool for a remote address.
+     * </p>
+     *
+     * @param poolName      the name of the connection pool
+     * @param remoteAddress the remote address
+     * @param metrics       the live metrics of the pool
+     */
+    default void connectionPoolCreated(String poolName, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+
+import reactor.netty.http.client.Http2AllocationStrategy;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * A connection pool and event loop group that can be shared between API
+ * clients.
+ * <p>
+ * Every client built with the same instance (see
+ * {@link CarmenCloudClientBuilder#connectionPool(ConnectionPool)}) reuses the
+ * same sockets and I/O threads, so the number of open connections stays bounded
+ * no matter how many clients are created. The pool is not closed together with
+ * the clients, it must be closed by its owner.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final ConnectionProvider connectionProvider;
+    private final LoopResources loopResources;
+
+    private ConnectionPool(ConnectionProvider connectionProvider, LoopResources loopResources) {
+        this.connectionProvider = connectionProvider;
+        this.loopResources = loopResources;
+    }
+
+    /**
+     * <p>
+     * Creates a connection pool builder.
+     * </p>
+     *
+     * @return the builder
+     */
+    public static ConnectionPoolBuilder builder() {
+        return new ConnectionPoolBuilder();
+    }
+
+    /**
+     * <p>
+     * Wraps an already configured connection provider and loop resources.
+     * </p>
+     *
+     * @param connectionProvider the connection provider
+     * @param loopResources      the loop resources, or null to use the global
+     *                           event loop group
+     * @return the connection pool
+     */
+    public static ConnectionPool of(ConnectionProvider connectionProvider, LoopResources loopResources) {
+        if (connectionProvider == null) {
+            throw new IllegalArgumentException("Connection provider must not be null");
+        }
+        return new ConnectionPool(connectionProvider, loopResources);
+    }
+
+    /**
+     * <p>
+     * Returns the connection provider.
+     * </p>
+     *
+     * @return the connection provider
+     */
+    public ConnectionProvider connectionProvider() {
+        return connectionProvider;
+    }
+
+    /**
+     * <p>
+     * Returns the loop resources.
+     * </p>
+     *
+     * @return the loop resources, or null if the global event loop group is used
+     */
+    public LoopResources loopResources() {
+        return loopResources;
+    }
+
+    /**
+     * <p>
+     * Closes all pooled connections and shuts down the event loop group.
+     * </p>
+     */
+    @Override
+    public void close() {
+        connectionProvider.disposeLater().block();
+        if (loopResources != null) {
+            loopResources.disposeLater().block();
+        }
+    }
+
+    /**
+     * Builder for {@link ConnectionPool}.
+     */
+    public static class ConnectionPoolBuilder {
+
+        private String name = "carmen-cloud";
+        private int maxConnections = ConnectionProvider.DEFAULT_POOL_MAX_CONNECTIONS;
+        private Integer pendingAcquireMaxCount;
+        private Long http2MaxConcurrentStreams;
+        private Duration pendingAcquireTimeout = Duration
+                .ofMillis(ConnectionProvider.DEFAULT_POOL_ACQUIRE_TIMEOUT);
+        private Duration maxIdleTime;
+        private Duration maxLifeTime;
+        private Duration evictionInterval;
+        private boolean lifo;
+        private int eventLoopThreads;
+        private ClientMetrics metrics;
+
+        /**
+         * Default constructor.
+         */
+        public ConnectionPoolBuilder() {
+        }
+
+        /**
+         * <p>
+         * Sets the name of the pool, also used as the thread name prefix of the
+         * event loop group. Default is "carmen-cloud".
+         * </p>
+         *
+         * @param name the name
+         * @return the builder
+         */
+        public ConnectionPoolBuilder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of connections per remote host.
+         * </p>
+         *
+         * @param maxConnections the maximum number of connections
+         * @return the builder
+         */
+        public ConnectionPoolBuilder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of requests waiting for a connection, -1 means no
+         * limit. Default is twice the maximum number of connections.
+         * </p>
+         *
+         * @param pendingAcquireMaxCount the maximum number of pending acquires
+         * @return the builder
+         */
+        public ConnectionPoolBuilder pendingAcquireMaxCount(int pendingAcquireMaxCount) {
+            this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of concurrent HTTP/2 streams per connection.
+         * Default is the limit advertised by the server.
+         * </p>
+         *
+         * @param http2MaxConcurrentStreams the maximum number of concurrent streams
+         * @return the builder
+         */
+        public ConnectionPoolBuilder http2MaxConcurrentStreams(long http2MaxConcurrentStreams) {
+            this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets how long a request may wait for a connection.
+         * </p>
+         *
+         * @param pendingAcquireTimeout the pending acquire timeout
+         * @return the builder
+         */
+        public ConnectionPoolBuilder pendingAcquireTimeout(Duration pendingAcquireTimeout) {
+            this.pendingAcquireTimeout = pendingAcquireTimeout;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets how long a connection may stay idle in the pool. Default is no
+         * limit.
+         * </p>
+         *
+         * @param maxIdleTime the maximum idle time
+         * @return the builder
+         */
+        public ConnectionPoolBuilder maxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum life time of a connection. Default is no limit.
+         * </p>
+         *
+         * @param maxLifeTime the maximum life time
+         * @return the builder
+         */
+        public ConnectionPoolBuilder maxLifeTime(Duration maxLifeTime) {
+            this.maxLifeTime = maxLifeTime;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the interval of the background eviction of idle and expired
+         * connections. Default is no background eviction.
+         * </p>
+         *
+         * @param evictionInterval the eviction interval
+         * @return the builder
+         */
+        public ConnectionPoolBuilder evictionInterval(Duration evictionInterval) {
+            this.evictionInterval = evictionInterval;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if the most recently used connection should be acquired first
+         * (LIFO) instead of the least recently used one (FIFO). Default is false.
+         * </p>
+         *
+         * @param lifo if the pool should be LIFO
+         * @return the builder
+         */
+        public ConnectionPoolBuilder lifo(boolean lifo) {
+            this.lifo = lifo;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the number of event loop threads. Default is 0, which uses the
+         * global event loop group of Reactor Netty.
+         * </p>
+         *
+         * @param eventLoopThreads the number of event loop threads
+         * @return the builder
+         */
+        public ConnectionPoolBuilder eventLoopThreads(int eventLoopThreads) {
+            this.eventLoopThreads = eventLoopThreads;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the metrics the utilization of the pool is reported to. Default is
+         * null (no metrics).
+         * </p>
+         *
+         * @param metrics the metrics
+         * @return the builder
+         */
+        public ConnectionPoolBuilder metrics(ClientMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Builds the connection pool.
+         * </p>
+         *
+         * @return the connection pool
+         */
+        public ConnectionPool build() {
+            ConnectionProvider.Builder builder = ConnectionProvider.builder(name).maxConnections(maxConnections)
+                    .pendingAcquireTimeout(pendingAcquireTimeout);
+            if (pendingAcquireMaxCount != null) {
+                builder = builder.pendingAcquireMaxCount(pendingAcquireMaxCount);
+            }
+            if (http2MaxConcurrentStreams != null) {
+                // the HTTP/2 settings of the client only limit the streams opened by the server
+                builder = builder.allocationStrategy(Http2AllocationStrategy.builder().maxConnections(maxConnections)
+                        .maxConcurrentStreams(http2MaxConcurrentStreams).build());
+            }
+            if (maxIdleTime != null) {
+                builder = builder.maxIdleTime(maxIdleTime);
+            }
+            if (maxLifeTime != null) {
+                builder = builder.maxLifeTime(maxLifeTime);
+            }
+            if (evictionInterval != null) {
+                builder = builder.evictInBackground(evictionInterval);
+            }
+            builder = lifo ? builder.lifo() : builder.fifo();
+            if (metrics != null) {
+                ClientMetrics poolMetrics = metrics;
+                builder = builder.metrics(true,
+                        () -> (poolName, id, remoteAddress, connectionPoolMetrics) -> poolMetrics
+                                .connectionPoolCreated(poolName, remoteAddress, connectionPoolMetrics));
+            }
+
+            LoopResources loopResources = eventLoopThreads > 0 ? LoopResources.create(name, eventLoopThreads, true)
+                    : null;
+            return new ConnectionPool(builder.build(), loopResources);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+
+/**
+ * The point in time a search must be completed by.
+ * <p>
+ * A deadline is carried in the Reactor context of a search under the
+ * {@code Deadline.class} key, through the queueing of the rate limiter, the
+ * retries and the hedged attempts. When it expires, the search is cancelled,
+ * which aborts the HTTP exchange in progress, and fails with a
+ * {@link CarmenCloudException} with status code 504 caused by a
+ * {@link DeadlineExceededException}. No retry is started that could not be
+ * completed before the deadline.
+ * </p>
+ * <p>
+ * A deadline is set by the end-to-end timeout of the client, by the timeout of
+ * the {@link RequestOptions}, or by putting it into the context of the search,
+ * e.g. to propagate the deadline of an incoming request. If several are set,
+ * the earliest one applies.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public final class Deadline implements Comparable<Deadline> {
+
+    private final long nanos;
+
+    private Deadline(long nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * <p>
+     * Creates a deadline expiring after a timeout from now.
+     * </p>
+     *
+     * @param timeout the timeout
+     * @return the deadline
+     */
+    public static Deadline after(Duration timeout) {
+        if (timeout == null) {
+            throw new IllegalArgumentException("Timeout must not be null");
+        }
+        long timeoutNanos;
+        try {
+            timeoutNanos = timeout.toNanos();
+        } catch (ArithmeticException e) {
+            timeoutNanos = Long.MAX_VALUE;
+        }
+        // about 146 years, far enough not to overflow the difference of two deadlines
+        return new Deadline(System.nanoTime() + Math.min(timeoutNanos, Long.MAX_VALUE >> 2));
+    }
+
+    /**
+     * <p>
+     * Returns the time left until the deadline.
+     * </p>
+     *
+     * @return the remaining time, zero if the deadline has expired
+     */
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, nanos - System.nanoTime()));
+    }
+
+    /**
+     * <p>
+     * Returns if the deadline has expired.
+     * </p>
+     *
+     * @return if the deadline has expired
+     */
+    public boolean isExpired() {
+        return nanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * <p>
+     * Returns the earlier of this and another deadline.
+     * </p>
+     *
+     * @param other the other deadline, or null
+     * @return the earlier deadline
+     */
+    public Deadline earliest(Deadline other) {
+        return other == null || compareTo(other) <= 0 ? this : other;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int compareTo(Deadline other) {
+        return Long.compare(nanos - other.nanos, 0);
+    }
+
+    /**
+     * <p>
+     * Returns if an error is caused by an expired deadline.
+     * </p>
+     *
+     * @param throwable the error
+     * @return if the deadline has expired
+     */
+    public static boolean isExceeded(Throwable throwable) {
+        return throwable instanceof DeadlineExceededException
+                || (throwable instanceof CarmenCloudException
+                        && throwable.getCause() instanceof DeadlineExceededException);
+    }
+
+    static CarmenCloudException exceeded() {
+        DeadlineExceededException cause = new DeadlineExceededException();
+        return new CarmenCloudException(504, "{\"message\":\"" + cause.getMessage() + "\"}", cause);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "Deadline[remaining=" + remaining() + "]";
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+/**
+ * Signals that a search was cancelled because its {@link Deadline} expired. It
+ * is the cause of the {@link com.adaptiverecognition.cloud.CarmenCloudException}
+ * the search fails with.
+ *
+ * @author laszlo.toth
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * <p>
+     * Creates the exception.
+     * </p>
+     */
+    public DeadlineExceededException() {
+        super("Deadline exceeded", null, false, false);
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link HttpEngine} balancing the calls between the engines of several
+ * endpoints.
+ * <p>
+ * Every endpoint tracks the exponentially weighted moving average of its
+ * latency (peak-sensitive: a slower call raises it at once, faster calls lower
+ * it gradually) and of its error rate, where connection errors and 5xx
+ * responses count as errors. A call is sent to the cheaper of two randomly
+ * chosen endpoints (power of two choices), the cost being the latency
+ * multiplied by the number of calls in progress and penalized by the error
+ * rate. An endpoint failing {@value #EJECTION_FAILURES} times in a row is
+ * ejected for {@value #EJECTION_MILLIS} milliseconds, unless every endpoint is
+ * ejected. After the ejection the endpoint is on probation: its first failure
+ * ejects it again, its first success restores it. A call failing with a
+ * transient error before a response is received is failed over to another
+ * endpoint, unless it has a single-use image, which can not be sent again.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+final class EndpointRouter implements HttpEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EndpointRouter.class);
+
+    static final int EJECTION_FAILURES = 5;
+    static final long EJECTION_MILLIS = 10_000;
+    private static final double DECAY_NANOS = 10_000_000_000.0;
+    private static final double ERROR_ALPHA = 0.1;
+    private static final double ERROR_PENALTY = 10;
+
+    private final List<Endpoint> endpoints;
+
+    /**
+     * <p>
+     * Creates the router.
+     * </p>
+     *
+     * @param urls    the endpoint URLs
+     * @param engines the factory of the engine of an endpoint URL
+     */
+    EndpointRouter(List<String> urls, Function<String, HttpEngine> engines) {
+        this(urls, engines, EJECTION_MILLIS);
+    }
+
+    /**
+     * <p>
+     * Creates the router with the given ejection time.
+     * </p>
+     *
+     * @param urls           the endpoint URLs
+     * @param engines        the factory of the engine of an endpoint URL
+     * @param ejectionMillis the time an endpoint is ejected for, in milliseconds
+     */
+    EndpointRouter(List<String> urls, Function<String, HttpEngine> engines, long ejectionMillis) {
+        List<Endpoint> list = new ArrayList<>();
+        for (String url : urls) {
+            list.add(new Endpoint(url, engines.apply(url), ejectionMillis));
+        }
+        this.endpoints = List.copyOf(list);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Mono<Response> exchange(Request request) {
+        return Mono.defer(() -> exchange(request, new ArrayList<>(endpoints.size())));
+    }
+
+    private Mono<Response> exchange(Request request, List<Endpoint> tried) {
+        return Mono.defer(() -> {
+            Endpoint endpoint = choose(tried);
+            tried.add(endpoint);
+            endpoint.inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            return endpoint.engine.exchange(request)
+                    .doOnNext(response -> endpoint.record(System.nanoTime() - start, response.statusCode() >= 500))
+                    .onErrorResume(throwable -> {
+                        endpoint.record(System.nanoTime() - start, true);
+                        if (tried.size() < endpoints.size() && RetryPolicy.isTransient(throwable)
+                                && request.isRepeatable()) {
+                            if (LOGGER.isDebugEnabled()) {
+                                LOGGER.debug("Call to {} failed, failing over", endpoint.url, throwable);
+                            }
+                            return exchange(request, tried);
+                        }
+                        return Mono.error(throwable);
+                    }).doFinally(signal -> endpoint.inFlight.decrementAndGet());
+        });
+    }
+
+    private Endpoint choose(List<Endpoint> tried) {
+        long now = System.currentTimeMillis();
+        List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (!tried.contains(endpoint) && !endpoint.isEjected(now)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (Endpoint endpoint : endpoints) {
+                if (!tried.contains(endpoint)) {
+                    candidates.add(endpoint);
+                }
+            }
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint a = candidates.get(first);
+        Endpoint b = candidates.get(second);
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    /**
+     * An endpoint and its statistics.
+     */
+    private static final class Endpoint {
+
+        private final String url;
+        private final HttpEngine engine;
+        private final long ejectionMillis;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private double latency;
+        private double errorRate;
+        private long updated = System.nanoTime();
+        private int failures;
+        private long ejectedUntil;
+        private boolean probing;
+
+        Endpoint(String url, HttpEngine engine, long ejectionMillis) {
+            this.url = url;
+            this.engine = engine;
+            this.ejectionMillis = ejectionMillis;
+        }
+
+        synchronized double cost() {
+            return (latency + 1) * (inFlight.get() + 1) * (1 + ERROR_PENALTY * errorRate);
+        }
+
+        synchronized boolean isEjected(long now) {
+            return now < ejectedUntil;
+        }
+
+        synchronized void record(long nanos, boolean failed) {
+            long now = System.nanoTime();
+            errorRate += ERROR_ALPHA * ((failed ? 1 : 0) - errorRate);
+            if (failed) {
+                // an endpoint back from an ejection is ejected again at its first failure
+                if (++failures >= EJECTION_FAILURES || probing) {
+                    ejectedUntil = System.currentTimeMillis() + ejectionMillis;
+                    probing = true;
+                    failures = 0;
+                    LOGGER.warn("Endpoint {} failed, ejected for {} ms", url, ejectionMillis);
+                }
+                return;
+            }
+            failures = 0;
+            probing = false;
+            double weight = Math.exp(-(now - updated) / DECAY_NANOS);
+            latency = nanos > latency ? nanos : latency * weight + nanos * (1 - weight);
+            updated = now;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Hedging policy sending a duplicate of a slow call and taking the first
+ * successful response.
+ * <p>
+ * The duplicate is sent when the call has not completed within the hedging
+ * delay. The delay is either fixed, or learned as a percentile of the latency
+ * of the recent successful calls of the same region. When the learned delay is
+ * used, the fixed delay applies until enough calls have been observed. As soon
+ * as one of the calls succeeds, the other one is cancelled. If the original
+ * call fails before the duplicate is sent, it fails immediately (and may be
+ * retried), otherwise the error of the last call is returned if both fail. If
+ * the original call completes before the duplicate is sent, the duplicate is
+ * not sent.
+ * </p>
+ * <p>
+ * The duplicates are limited by a {@link RetryBudget}, so only a small share of
+ * the calls is billed twice. The clients do not hedge the calls with a
+ * single-use image payload (e.g. an input stream), as they can not be
+ * duplicated. They hedge a call once it has got its slot from the request
+ * scheduler and its permit from the rate limiter, and send the duplicate only
+ * if another permit is available right away, so the time spent waiting in
+ * their queues neither triggers duplicates nor adds to the learned delay.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class HedgingPolicy {
+
+    private static final int MIN_SAMPLES = 20;
+
+    private final Duration delay;
+    private final Double percentile;
+    private final Duration minDelay;
+    private final RetryBudget budget;
+
+    private final ConcurrentMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private HedgingPolicy(HedgingPolicyBuilder builder) {
+        this.delay = builder.delay;
+        this.percentile = builder.percentile;
+        this.minDelay = builder.minDelay;
+        this.budget = builder.budget;
+    }
+
+    /**
+     * <p>
+     * Creates a hedging policy builder.
+     * </p>
+     *
+     * @return the builder
+     */
+    public static HedgingPolicyBuilder builder() {
+        return new HedgingPolicyBuilder();
+    }
+
+    /**
+     * <p>
+     * Returns the hedging budget.
+     * </p>
+     *
+     * @return the hedging budget, or null if the duplicates are not budgeted
+     */
+    public RetryBudget budget() {
+        return budget;
+    }
+
+    /**
+     * <p>
+     * Returns the current hedging delay of a region.
+     * </p>
+     *
+     * @param region the region
+     * @return the hedging delay, or null if the calls of the region are not
+     *         hedged yet
+     */
+    public Duration delay(String region) {
+        if (percentile != null) {
+            LatencyWindow window = latencies.get(region != null ? region : "");
+            long learned = window != null ? window.percentile(percentile) : -1;
+            if (learned >= 0) {
+                Duration duration = Duration.ofNanos(learned);
+                return minDelay != null && duration.compareTo(minDelay) < 0 ? minDelay : duration;
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * <p>
+     * Applies the hedging policy to a call sent to a region. The call is
+     * subscribed to again for the duplicate, so it must be repeatable.
+     * </p>
+     *
+     * @param <T>    the type of the result
+     * @param region the region
+     * @param call   the call
+     * @return the hedged call
+     */
+    public <T> Mono<T> hedge(String region, Mono<T> call) {
+        return hedge(region, () -> true, call);
+    }
+
+    /**
+     * <p>
+     * Applies the hedging policy to a call sent to a region, like
+     * {@link #hedge(String, Mono)}. The duplicate is only sent if the permit
+     * (e.g. of a rate limiter) is granted right away when the hedging delay has
+     * passed, so the calls are not duplicated while the client is throttled. The
+     * hedging delay and the latency of the call are measured from the
+     * subscription, so the call should already hold its own permit.
+     * </p>
+     *
+     * @param <T>    the type of the result
+     * @param region the region
+     * @param permit tries to acquire the permit of the duplicate without waiting
+     * @param call   the call
+     * @return the hedged call
+     */
+    public <T> Mono<T> hedge(String region, BooleanSupplier permit, Mono<T> call) {
+        String name = region != null ? region : "";
+        Mono<T> measured = percentile == null ? call : Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.doOnSuccess(result -> latencies.computeIfAbsent(name, key -> new LatencyWindow())
+                    .record(System.nanoTime() - start));
+        });
+        return Mono.defer(() -> {
+            if (budget != null) {
+                budget.onRequest();
+            }
+            Duration hedgingDelay = delay(name);
+            if (hedgingDelay == null) {
+                return measured;
+            }
+            AtomicBoolean hedging = new AtomicBoolean();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Sinks.Empty<Void> primaryDone = Sinks.empty();
+            Mono<T> primary = measured.onErrorResume(throwable -> {
+                if (!hedging.get()) {
+                    return Mono.error(throwable);
+                }
+                failure.set(throwable);
+                return Mono.empty();
+            }).doFinally(signal -> primaryDone.tryEmitEmpty());
+            // the pending duplicate is dropped once the original call has completed
+            Mono<T> duplicate = Mono.delay(hedgingDelay).takeUntilOther(primaryDone.asMono())
+                    .filter(tick -> (budget == null || budget.tryRetry()) && permit.getAsBoolean())
+                    .flatMap(tick -> {
+                        hedging.set(true);
+                        return measured.onErrorResume(throwable -> {
+                            failure.set(throwable);
+                            return Mono.empty();
+                        });
+                    });
+            return Flux.merge(primary, duplicate).next().switchIfEmpty(Mono.defer(() -> {
+                Throwable throwable = failure.get();
+                return throwable != null ? Mono.error(throwable) : Mono.empty();
+            }));
+        });
+    }
+
+    /**
+     * The latencies of the last successful calls of a region.
+     */
+    private static final class LatencyWindow {
+
+        private static final int SIZE = 512;
+        private static final int RECALCULATION_INTERVAL = 32;
+
+        private final long[] samples = new long[SIZE];
+        private int count;
+        private int next;
+        private long[] sorted;
+        private int recordedSinceSort;
+
+        synchronized void record(long latency) {
+            samples[next] = latency;
+            next = (next + 1) % SIZE;
+            count = Math.min(SIZE, count + 1);
+            recordedSinceSort++;
+        }
+
+        synchronized long percentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            if (sorted == null || recordedSinceSort >= RECALCULATION_INTERVAL) {
+                sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                recordedSinceSort = 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+
+    /**
+     * Builder for {@link HedgingPolicy}.
+     */
+    public static class HedgingPolicyBuilder {
+
+        private Duration delay;
+        private Double percentile;
+        private Duration minDelay;
+        private RetryBudget budget = new RetryBudget(0.05, 1, Duration.ofSeconds(10));
+
+        /**
+         * Default constructor.
+         */
+        public HedgingPolicyBuilder() {
+        }
+
+        /**
+         * <p>
+         * Sets the fixed hedging delay. If a percentile is also set, this delay
+         * applies until enough calls have been observed.
+         * </p>
+         *
+         * @param delay the hedging delay
+         * @return the builder
+         */
+        public HedgingPolicyBuilder delay(Duration delay) {
+            this.delay = delay;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the latency percentile of the recent successful calls used as the
+         * hedging delay, between 0 and 1 (e.g. 0.95).
+         * </p>
+         *
+         * @param percentile the percentile
+         * @return the builder
+         */
+        public HedgingPolicyBuilder percentile(Double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the minimum of the learned hedging delay.
+         * </p>
+         *
+         * @param minDelay the minimum delay
+         * @return the builder
+         */
+        public HedgingPolicyBuilder minDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the hedging budget. Default allows duplicates for 5% of the
+         * requests of the last 10 seconds plus 1 duplicate per second. Null
+         * disables the budget.
+         * </p>
+         *
+         * @param budget the hedging budget
+         * @return the builder
+         */
+        public HedgingPolicyBuilder budget(RetryBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Builds the hedging policy.
+         * </p>
+         *
+         * @return the hedging policy
+         */
+        public HedgingPolicy build() {
+            if (delay == null && percentile == null) {
+                throw new IllegalArgumentException("Delay or percentile must be set");
+            }
+            if (delay != null && delay.isNegative()) {
+                throw new IllegalArgumentException("Delay must not be negative");
+            }
+            if (percentile != null && (percentile <= 0 || percentile >= 1)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 1");
+            }
+            return new HedgingPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.channel.Channel;
+
+/**
+ * Tracks the number of active HTTP/2 streams per connection of a client.
+ * <p>
+ * Only requests sent over HTTP/2 (see
+ * {@link CarmenCloudClientBuilder#protocol(reactor.netty.http.HttpProtocol)})
+ * are counted, HTTP/1.1 connections carry a single request at a time and are
+ * not reported.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class Http2StreamStatistics {
+
+    private final ConcurrentMap<Channel, AtomicInteger> activeStreams = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor.
+     */
+    public Http2StreamStatistics() {
+    }
+
+    /**
+     * <p>
+     * Registers a new stream. The stream is removed from the statistics when its
+     * channel is closed.
+     * </p>
+     *
+     * @param stream the stream channel
+     */
+    void streamOpened(Channel stream) {
+        Channel connection = stream.parent();
+        if (connection == null) {
+            return;
+        }
+        AtomicInteger counter = activeStreams.get(connection);
+        if (counter == null) {
+            AtomicInteger created = new AtomicInteger();
+            counter = activeStreams.putIfAbsent(connection, created);
+            if (counter == null) {
+                counter = created;
+                connection.closeFuture().addListener(future -> activeStreams.remove(connection));
+            }
+        }
+        counter.incrementAndGet();
+        AtomicInteger streams = counter;
+        stream.closeFuture().addListener(future -> streams.decrementAndGet());
+    }
+
+    /**
+     * <p>
+     * Returns the number of open HTTP/2 connections.
+     * </p>
+     *
+     * @return the number of connections
+     */
+    public int connections() {
+        return activeStreams.size();
+    }
+
+    /**
+     * <p>
+     * Returns the number of active streams over all connections.
+     * </p>
+     *
+     * @return the number of active streams
+     */
+    public int activeStreams() {
+        return activeStreams.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    /**
+     * <p>
+     * Returns the number of active streams per connection. The key is the remote
+     * address and the id of the connection.
+     * </p>
+     *
+     * @return the number of active streams per connection
+     */
+    public Map<String, Integer> activeStreamsPerConnection() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        activeStreams.forEach((connection, counter) -> result
+                .put(connection.remoteAddress() + "#" + connection.id().asShortText(), counter.get()));
+        return result;
+    }
+}
@@ -0,0 +1,480 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The HTTP transport of the API clients.
+ * <p>
+ * Two engines are provided: {@link #reactor()} (the default) based on Spring
+ * WebClient and Reactor Netty, suited for high-concurrency services, and
+ * {@link #jdk()} based on {@link java.net.http.HttpClient}, which starts faster
+ * and has a smaller footprint as it does not create Netty event loops and
+ * connection pools. Other engines can be plugged in with
+ * {@link CarmenCloudClientBuilder#httpEngine(Factory)}.
+ * </p>
+ * <p>
+ * An engine only transfers the requests and the responses: status codes are
+ * not interpreted, retries, rate limiting and the other policies are applied by
+ * the clients. If the Reactor context of an exchange contains an
+ * {@link AttemptMetrics}, the engine should report the phases of the exchange
+ * to it.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public interface HttpEngine {
+
+    /**
+     * <p>
+     * Creates the lazy exchange of a request. Nothing is sent until the returned
+     * mono is subscribed to, and cancelling the subscription aborts the
+     * exchange.
+     * </p>
+     *
+     * @param request the request
+     * @return the response, whatever its status code is
+     */
+    Mono<Response> exchange(Request request);
+
+    /**
+     * <p>
+     * Returns the factory of the Reactor Netty based engine.
+     * </p>
+     *
+     * @return the engine factory
+     */
+    static Factory reactor() {
+        return ReactorHttpEngine::new;
+    }
+
+    /**
+     * <p>
+     * Returns the factory of the {@link java.net.http.HttpClient} based engine.
+     * The connection pool, the event loop and the HTTP/2 settings of the builder
+     * are not used by this engine.
+     * </p>
+     *
+     * @return the engine factory
+     */
+    static Factory jdk() {
+        return JdkHttpEngine::new;
+    }
+
+    /**
+     * Creates the engine of a client.
+     */
+    @FunctionalInterface
+    interface Factory {
+
+        /**
+         * <p>
+         * Creates the engine of a client.
+         * </p>
+         *
+         * @param config           the configuration of the client
+         * @param defaultHeaders   the headers to send with every request
+         * @param streamStatistics the statistics of the HTTP/2 streams to update
+         * @return the engine
+         */
+        HttpEngine create(ClientConfig config, Map<String, String> defaultHeaders,
+                Http2StreamStatistics streamStatistics);
+    }
+
+    /**
+     * An HTTP request.
+     */
+    final class Request {
+
+        private final String method;
+        private final String path;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private List<Part> parts;
+
+        private Request(String method, String path) {
+            this.method = method;
+            this.path = path != null ? path : "";
+        }
+
+        /**
+         * <p>
+         * Creates a GET request.
+         * </p>
+         *
+         * @param path the path relative to the endpoint, empty for the endpoint
+         *             itself
+         * @return the request
+         */
+        public static Request get(String path) {
+            return new Request("GET", path);
+        }
+
+        /**
+         * <p>
+         * Creates a POST request.
+         * </p>
+         *
+         * @param path the path relative to the endpoint, empty for the endpoint
+         *             itself
+         * @return the request
+         */
+        public static Request post(String path) {
+            return new Request("POST", path);
+        }
+
+        /**
+         * <p>
+         * Sets a header, overriding the default header with the same name.
+         * </p>
+         *
+         * @param name  the name
+         * @param value the value, null to leave the header unchanged
+         * @return the request
+         */
+        public Request header(String name, String value) {
+            if (value != null) {
+                headers.put(name, value);
+            }
+            return this;
+        }
+
+        /**
+         * <p>
+         * Adds a text part to the multipart body.
+         * </p>
+         *
+         * @param name  the name of the part
+         * @param value the value, null to skip the part
+         * @return the request
+         */
+        public Request part(String name, Object value) {
+            if (value != null) {
+                parts().add(new Part(name, String.valueOf(value), null));
+            }
+            return this;
+        }
+
+        /**
+         * <p>
+         * Adds an image part to the multipart body.
+         * </p>
+         *
+         * @param name  the name of the part
+         * @param image the image, null to skip the part
+         * @return the request
+         */
+        public Request part(String name, ImagePayload image) {
+            if (image != null) {
+                parts().add(new Part(name, null, image));
+            }
+            return this;
+        }
+
+        /**
+         * <p>
+         * Returns the method.
+         * </p>
+         *
+         * @return the method
+         */
+        public String method() {
+            return method;
+        }
+
+        /**
+         * <p>
+         * Returns the path relative to the endpoint.
+         * </p>
+         *
+         * @return the path
+         */
+        public String path() {
+            return path;
+        }
+
+        /**
+         * <p>
+         * Returns the headers of the request (without the default headers).
+         * </p>
+         *
+         * @return the headers
+         */
+        public Map<String, String> headers() {
+            return Collections.unmodifiableMap(headers);
+        }
+
+        /**
+         * <p>
+         * Returns the parts of the multipart body.
+         * </p>
+         *
+         * @return the parts, or null if the request has no body
+         */
+        public List<Part> multipart() {
+            return parts != null ? Collections.unmodifiableList(parts) : null;
+        }
+
+        /**
+         * Returns if the request can be sent more than once, that is if none of
+         * its images is single-use.
+         */
+        boolean isRepeatable() {
+            if (parts != null) {
+                for (Part part : parts) {
+                    if (part.image != null && !part.image.isRepeatable()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns a copy of the request sharing its parts.
+         */
+        Request copy() {
+            Request copy = new Request(method, path);
+            copy.headers.putAll(headers);
+            copy.parts = parts;
+            return copy;
+        }
+
+        private List<Part> parts() {
+            if (parts == null) {
+                parts = new ArrayList<>();
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * A part of a multipart request body, either a text or an image.
+     */
+    final class Part {
+
+        private final String name;
+        private final String value;
+        private final ImagePayload image;
+
+        private Part(String name, String value, ImagePayload image) {
+            this.name = name;
+            this.value = value;
+            this.image = image;
+        }
+
+        /**
+         * <p>
+         * Returns the name of the part.
+         * </p>
+         *
+         * @return the name
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * <p>
+         * Returns the text value of the part.
+         * </p>
+         *
+         * @return the value, or null if the part is an image
+         */
+        public String value() {
+            return value;
+        }
+
+        /**
+         * <p>
+         * Returns the image of the part.
+         * </p>
+         *
+         * @return the image, or null if the part is a text
+         */
+        public ImagePayload image() {
+            return image;
+        }
+    }
+
+    /**
+     * An HTTP response with its body read into memory.
+     * <p>
+     * The body is either a byte array or a data buffer of the engine (e.g. a
+     * pooled Netty buffer). A data buffer is released when the body is read with
+     * {@link #body()}, when the stream returned by {@link #bodyStream()} is
+     * closed, or by {@link #release()}.
+     * </p>
+     */
+    final class Response {
+
+        private static final byte[] EMPTY = new byte[0];
+
+        private final int statusCode;
+        private final Function<String, String> headers;
+        private byte[] body;
+        private DataBuffer buffer;
+
+        /**
+         * <p>
+         * Creates a response.
+         * </p>
+         *
+         * @param statusCode the status code
+         * @param headers    the lookup of the first value of a header by its
+         *                   case-insensitive name
+         * @param body       the body, or null if it is empty
+         */
+        public Response(int statusCode, Function<String, String> headers, byte[] body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body != null ? body : EMPTY;
+        }
+
+        /**
+         * <p>
+         * Creates a response with its body in a data buffer, which is owned by the
+         * response from now on.
+         * </p>
+         *
+         * @param statusCode the status code
+         * @param headers    the lookup of the first value of a header by its
+         *                   case-insensitive name
+         * @param body       the body
+         */
+        public Response(int statusCode, Function<String, String> headers, DataBuffer body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.buffer = body;
+        }
+
+        /**
+         * <p>
+         * Returns the status code.
+         * </p>
+         *
+         * @return the status code
+         */
+        public int statusCode() {
+            return statusCode;
+        }
+
+        /**
+         * <p>
+         * Returns if the status code is 4xx or 5xx.
+         * </p>
+         *
+         * @return if the response is an error
+         */
+        public boolean isError() {
+            return statusCode >= 400;
+        }
+
+        /**
+         * <p>
+         * Returns the first value of a header.
+         * </p>
+         *
+         * @param name the case-insensitive name of the header
+         * @return the value, or null if the header is not present
+         */
+        public String header(String name) {
+            return headers.apply(name);
+        }
+
+        /**
+         * <p>
+         * Returns the body, copying it from the data buffer if needed.
+         * </p>
+         *
+         * @return the body, empty if there is none
+         */
+        public synchronized byte[] body() {
+            if (buffer != null) {
+                try {
+                    body = new byte[buffer.readableByteCount()];
+                    buffer.read(body);
+                } finally {
+                    release();
+                }
+            }
+            return body != null ? body : EMPTY;
+        }
+
+        /**
+         * <p>
+         * Returns the length of the body.
+         * </p>
+         *
+         * @return the length in bytes
+         */
+        public synchronized int bodyLength() {
+            if (buffer != null) {
+                return buffer.readableByteCount();
+            }
+            return body != null ? body.length : 0;
+        }
+
+        /**
+         * <p>
+         * Returns a stream reading the body without copying it. The stream must be
+         * closed.
+         * </p>
+         *
+         * @return the stream of the body
+         */
+        public synchronized InputStream bodyStream() {
+            if (buffer != null) {
+                InputStream stream = buffer.asInputStream(true);
+                buffer = null;
+                body = EMPTY;
+                return stream;
+            }
+            return new ByteArrayInputStream(body != null ? body : EMPTY);
+        }
+
+        /**
+         * <p>
+         * Releases the data buffer of the body if it has not been read.
+         * </p>
+         */
+        public synchronized void release() {
+            if (buffer != null) {
+                DataBufferUtils.release(buffer);
+                buffer = null;
+                if (body == null) {
+                    body = EMPTY;
+                }
+            }
+        }
+    }
+}
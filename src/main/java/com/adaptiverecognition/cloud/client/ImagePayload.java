@@ -0,0 +1,281 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import io.netty.buffer.ByteBuf;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * An image to be uploaded, streamed into the multipart request body without
+ * copying it into a heap byte array first.
+ * <p>
+ * Files are read in chunks into pooled buffers, {@link ByteBuffer}s and
+ * {@link ByteBuf}s are wrapped as they are. Except for input streams, a payload
+ * can be sent any number of times, so it works together with retries.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public final class ImagePayload {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    private final String mimeType;
+    private final Function<DataBufferFactory, Flux<DataBuffer>> content;
+    private final boolean repeatable;
+
+    private ImagePayload(String name, String mimeType, Function<DataBufferFactory, Flux<DataBuffer>> content) {
+        this(name, mimeType, content, true);
+    }
+
+    private ImagePayload(String name, String mimeType, Function<DataBufferFactory, Flux<DataBuffer>> content,
+            boolean repeatable) {
+        this.name = name;
+        this.mimeType = mimeType;
+        this.content = content;
+        this.repeatable = repeatable;
+    }
+
+    /**
+     * <p>
+     * Creates a payload from a byte array. The array is not copied.
+     * </p>
+     *
+     * @param bytes    the image bytes
+     * @param name     the image name
+     * @param mimeType the image mime type without the "image/" prefix (e.g.
+     *                 "jpeg")
+     * @return the payload
+     */
+    public static ImagePayload of(byte[] bytes, String name, String mimeType) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Image must not be null");
+        }
+        return new ImagePayload(name, mimeType, factory -> Flux.defer(() -> Flux.just(factory.wrap(bytes))));
+    }
+
+    /**
+     * <p>
+     * Creates a payload from a file. The mime type is guessed from the file
+     * extension.
+     * </p>
+     *
+     * @param path the image file
+     * @return the payload
+     */
+    public static ImagePayload of(Path path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Image must not be null");
+        }
+        return of(path, mimeType(path));
+    }
+
+    /**
+     * <p>
+     * Creates a payload from a file. The file is read in chunks while the
+     * request is written.
+     * </p>
+     *
+     * @param path     the image file
+     * @param mimeType the image mime type without the "image/" prefix (e.g.
+     *                 "jpeg")
+     * @return the payload
+     */
+    public static ImagePayload of(Path path, String mimeType) {
+        if (path == null) {
+            throw new IllegalArgumentException("Image must not be null");
+        }
+        return new ImagePayload(String.valueOf(path.getFileName()), mimeType,
+                factory -> DataBufferUtils.read(path, factory, BUFFER_SIZE));
+    }
+
+    /**
+     * <p>
+     * Creates a payload from an input stream. The stream is read in chunks while
+     * the request is written and closed afterwards. As a stream can be read only
+     * once, the payload can not be sent again (e.g. by a retry).
+     * </p>
+     *
+     * @param inputStream the image stream
+     * @param name        the image name
+     * @param mimeType    the image mime type without the "image/" prefix (e.g.
+     *                    "jpeg")
+     * @return the payload
+     */
+    public static ImagePayload of(InputStream inputStream, String name, String mimeType) {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("Image must not be null");
+        }
+        AtomicBoolean consumed = new AtomicBoolean();
+        return new ImagePayload(name, mimeType, factory -> DataBufferUtils.readInputStream(() -> {
+            if (!consumed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Input stream of image " + name + " has already been consumed");
+            }
+            return inputStream;
+        }, factory, BUFFER_SIZE), false);
+    }
+
+    /**
+     * <p>
+     * Creates a payload from a byte buffer. The buffer (typically a direct or
+     * memory-mapped one) is not copied, and its position is not modified.
+     * </p>
+     *
+     * @param buffer   the image buffer
+     * @param name     the image name
+     * @param mimeType the image mime type without the "image/" prefix (e.g.
+     *                 "jpeg")
+     * @return the payload
+     */
+    public static ImagePayload of(ByteBuffer buffer, String name, String mimeType) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Image must not be null");
+        }
+        return new ImagePayload(name, mimeType,
+                factory -> Flux.defer(() -> Flux.just(factory.wrap(buffer.duplicate()))));
+    }
+
+    /**
+     * <p>
+     * Creates a payload from a Netty buffer. The buffer is not copied, and its
+     * reader index is not modified. The buffer is retained while it is written,
+     * the caller remains responsible for releasing it.
+     * </p>
+     *
+     * @param buffer   the image buffer
+     * @param name     the image name
+     * @param mimeType the image mime type without the "image/" prefix (e.g.
+     *                 "jpeg")
+     * @return the payload
+     */
+    public static ImagePayload of(ByteBuf buffer, String name, String mimeType) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Image must not be null");
+        }
+        return new ImagePayload(name, mimeType, factory -> Flux.defer(() -> {
+            if (factory instanceof NettyDataBufferFactory) {
+                return Flux.just(((NettyDataBufferFactory) factory).wrap(buffer.retainedDuplicate()));
+            }
+            return Flux.just(factory.wrap(buffer.nioBuffer()));
+        }));
+    }
+
+    /**
+     * <p>
+     * Returns the image name.
+     * </p>
+     *
+     * @return the image name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * <p>
+     * Returns the image mime type without the "image/" prefix.
+     * </p>
+     *
+     * @return the image mime type
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * <p>
+     * Returns the content of the image. The buffers must be released by the
+     * subscriber.
+     * </p>
+     *
+     * @param factory the factory of the buffers
+     * @return the content
+     */
+    Flux<DataBuffer> content(DataBufferFactory factory) {
+        return content.apply(factory);
+    }
+
+    /**
+     * <p>
+     * Returns if the payload can be read more than once (all payloads except
+     * input streams).
+     * </p>
+     *
+     * @return if the payload is repeatable
+     */
+    boolean isRepeatable() {
+        return repeatable;
+    }
+
+    /**
+     * <p>
+     * Calculates the SHA-256 digest of the image by reading it through once.
+     * </p>
+     *
+     * @return the digest
+     */
+    Mono<byte[]> digest() {
+        return Mono.defer(() -> {
+            MessageDigest digest = sha256();
+            return content.apply(DefaultDataBufferFactory.sharedInstance).doOnNext(buffer -> {
+                try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                    iterator.forEachRemaining(digest::update);
+                } finally {
+                    DataBufferUtils.release(buffer);
+                }
+            }).doOnDiscard(DataBuffer.class, DataBufferUtils::release).then(Mono.fromSupplier(digest::digest));
+        });
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String mimeType(Path path) {
+        String fileName = String.valueOf(path.getFileName());
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0 || dot == fileName.length() - 1) {
+            return "jpeg";
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return "jpg".equals(extension) ? "jpeg" : extension;
+    }
+}
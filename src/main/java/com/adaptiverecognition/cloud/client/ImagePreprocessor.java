@@ -0,0 +1,404 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Preprocessor of the images before they are uploaded.
+ * <p>
+ * Images larger than the maximum dimension are downscaled, and the image can
+ * be cropped to the bounding box of the region of interest of a vehicle
+ * request. Transformed images are re-encoded as JPEG with the given quality.
+ * Images that need no transformation are uploaded as they are, images that can
+ * not be decoded are uploaded unchanged. The region of interest sent to the API
+ * is transformed together with the image.
+ * </p>
+ * <p>
+ * The coordinates in the results refer to the preprocessed image. The images
+ * are processed on a bounded worker pool, never on the event loop. The pool is
+ * not closed together with the clients, it must be closed by the owner of the
+ * preprocessor, unless a scheduler of the application is used.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class ImagePreprocessor implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    private final Integer maxDimension;
+    private final float quality;
+    private final boolean cropToRoi;
+    private final Scheduler scheduler;
+    private final boolean ownScheduler;
+
+    private ImagePreprocessor(ImagePreprocessorBuilder builder) {
+        this.maxDimension = builder.maxDimension;
+        this.quality = builder.quality;
+        this.cropToRoi = builder.cropToRoi;
+        this.ownScheduler = builder.scheduler == null;
+        this.scheduler = ownScheduler ? Schedulers.newBoundedElastic(builder.threads, builder.queueSize,
+                "carmen-image-preprocessor", 60, true) : builder.scheduler;
+    }
+
+    /**
+     * <p>
+     * Creates an image preprocessor builder.
+     * </p>
+     *
+     * @return the builder
+     */
+    public static ImagePreprocessorBuilder builder() {
+        return new ImagePreprocessorBuilder();
+    }
+
+    /**
+     * <p>
+     * Shuts down the worker pool of the preprocessor. A scheduler set with
+     * {@link ImagePreprocessorBuilder#scheduler(Scheduler)} is not disposed, it is
+     * owned by the application.
+     * </p>
+     */
+    @Override
+    public void close() {
+        if (ownScheduler) {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * <p>
+     * Preprocesses an image.
+     * </p>
+     *
+     * @param image the image
+     * @param roi   the region of interest as comma separated x,y coordinates of a
+     *              polygon, or null
+     * @return the preprocessed image and the transformed region of interest
+     */
+    Mono<Processed> process(ImagePayload image, Object roi) {
+        if (maxDimension == null && !cropToRoi) {
+            return Mono.just(new Processed(image, roi));
+        }
+        return DataBufferUtils.join(image.content(DefaultDataBufferFactory.sharedInstance)).map(buffer -> {
+            try {
+                byte[] bytes = new byte[buffer.readableByteCount()];
+                buffer.read(bytes);
+                return bytes;
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }).publishOn(scheduler).map(bytes -> {
+            try {
+                return process(image, bytes, roi);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Image {} can not be preprocessed, it is uploaded unchanged", image.getName(), e);
+                return new Processed(ImagePayload.of(bytes, image.getName(), image.getMimeType()), roi);
+            }
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    private Processed process(ImagePayload original, byte[] bytes, Object roi) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            return new Processed(ImagePayload.of(bytes, original.getName(), original.getMimeType()), roi);
+        }
+        int[] polygon = roi != null ? polygon(String.valueOf(roi)) : null;
+        Rectangle crop = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+        if (cropToRoi && polygon != null) {
+            crop = crop.intersection(bounds(polygon));
+            if (crop.isEmpty()) {
+                crop = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+            }
+        }
+        double scale = 1;
+        int longest = Math.max(crop.width, crop.height);
+        if (maxDimension != null && longest > maxDimension) {
+            scale = (double) maxDimension / longest;
+        }
+        boolean cropped = crop.width != image.getWidth() || crop.height != image.getHeight();
+        if (!cropped && scale == 1) {
+            return new Processed(ImagePayload.of(bytes, original.getName(), original.getMimeType()), roi);
+        }
+
+        BufferedImage transformed = image.getSubimage(crop.x, crop.y, crop.width, crop.height);
+        transformed = scale(transformed, Math.max(1, (int) Math.round(crop.width * scale)),
+                Math.max(1, (int) Math.round(crop.height * scale)));
+        Object transformedRoi = roi;
+        if (polygon != null) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < polygon.length; i++) {
+                int origin = i % 2 == 0 ? crop.x : crop.y;
+                builder.append(i > 0 ? "," : "").append(Math.round((polygon[i] - origin) * scale));
+            }
+            transformedRoi = builder.toString();
+        }
+        return new Processed(ImagePayload.of(encode(transformed), original.getName(), "jpeg"), transformedRoi);
+    }
+
+    /**
+     * Downscales an image by halving its size in steps, which gives a result
+     * similar to area averaging at the speed of bilinear interpolation.
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG encoder available");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    private static int[] polygon(String roi) {
+        String[] values = roi.trim().split("[,;\\s]+");
+        if (values.length < 4 || values.length % 2 != 0) {
+            return null;
+        }
+        int[] polygon = new int[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                polygon[i] = (int) Math.round(Double.parseDouble(values[i]));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return polygon;
+    }
+
+    private static Rectangle bounds(int[] polygon) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < polygon.length; i += 2) {
+            minX = Math.min(minX, polygon[i]);
+            maxX = Math.max(maxX, polygon[i]);
+            minY = Math.min(minY, polygon[i + 1]);
+            maxY = Math.max(maxY, polygon[i + 1]);
+        }
+        // the coordinates are pixels, the last row and column are part of the box
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * A preprocessed image and the region of interest transformed with it.
+     */
+    static final class Processed {
+
+        private final ImagePayload image;
+        private final Object roi;
+
+        Processed(ImagePayload image, Object roi) {
+            this.image = image;
+            this.roi = roi;
+        }
+
+        ImagePayload image() {
+            return image;
+        }
+
+        Object roi() {
+            return roi;
+        }
+    }
+
+    /**
+     * Builder for {@link ImagePreprocessor}.
+     */
+    public static class ImagePreprocessorBuilder {
+
+        private Integer maxDimension;
+        private float quality = 0.85f;
+        private boolean cropToRoi;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int queueSize = 1000;
+        private Scheduler scheduler;
+
+        /**
+         * Default constructor.
+         */
+        public ImagePreprocessorBuilder() {
+        }
+
+        /**
+         * <p>
+         * Sets the maximum width and height of the uploaded images. Larger images
+         * are downscaled keeping their aspect ratio. Default is no limit.
+         * </p>
+         *
+         * @param maxDimension the maximum dimension in pixels
+         * @return the builder
+         */
+        public ImagePreprocessorBuilder maxDimension(Integer maxDimension) {
+            this.maxDimension = maxDimension;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the JPEG quality of the transformed images, between 0 and 1.
+         * Default is 0.85.
+         * </p>
+         *
+         * @param quality the JPEG quality
+         * @return the builder
+         */
+        public ImagePreprocessorBuilder quality(float quality) {
+            this.quality = quality;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if the images of vehicle requests should be cropped to the bounding
+         * box of their region of interest. Default is false.
+         * </p>
+         *
+         * @param cropToRoi if the images should be cropped
+         * @return the builder
+         */
+        public ImagePreprocessorBuilder cropToRoi(boolean cropToRoi) {
+            this.cropToRoi = cropToRoi;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the number of the worker threads. Default is the number of the
+         * processors.
+         * </p>
+         *
+         * @param threads the number of the worker threads
+         * @return the builder
+         */
+        public ImagePreprocessorBuilder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of the images waiting for a worker thread. Above
+         * it the searches fail with a {@link java.util.concurrent.RejectedExecutionException}.
+         * Default is 1000.
+         * </p>
+         *
+         * @param queueSize the size of the queue
+         * @return the builder
+         */
+        public ImagePreprocessorBuilder queueSize(int queueSize) {
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the scheduler the images are processed on, instead of a worker
+         * pool of the preprocessor. The threads and the queue size are ignored,
+         * and the scheduler is not disposed when the preprocessor is closed. It
+         * must not be the event loop.
+         * </p>
+         *
+         * @param scheduler the scheduler, or null to use a worker pool of the
+         *                  preprocessor
+         * @return the builder
+         */
+        public ImagePreprocessorBuilder scheduler(Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Builds the image preprocessor.
+         * </p>
+         *
+         * @return the image preprocessor
+         */
+        public ImagePreprocessor build() {
+            if (maxDimension != null && maxDimension < 1) {
+                throw new IllegalArgumentException("Max dimension must be positive");
+            }
+            if (quality <= 0 || quality > 1) {
+                throw new IllegalArgumentException("Quality must be between 0 and 1");
+            }
+            if (threads < 1 || queueSize < 1) {
+                throw new IllegalArgumentException("Threads and queue size must be positive");
+            }
+            return new ImagePreprocessor(this);
+        }
+    }
+}
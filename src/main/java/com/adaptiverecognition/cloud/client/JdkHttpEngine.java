@@ -0,0 +1,274 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+
+/**
+ * {@link HttpEngine} based on {@link HttpClient}. The multipart body is encoded
+ * by the engine and streamed to the request without copying the images. The
+ * response body is limited to the maximum in-memory size while it is read.
+ * Compressed responses are decompressed by the engine, as {@link HttpClient}
+ * does not support it.
+ *
+ * @author laszlo.toth
+ */
+final class JdkHttpEngine implements HttpEngine {
+
+    private final HttpClient httpClient;
+    private final String endpoint;
+    private final Map<String, String> defaultHeaders;
+    private final Duration responseTimeout;
+    private final boolean compression;
+    private final int maxInMemorySize;
+    private final MultipartEncoder multipartEncoder = new MultipartEncoder();
+
+    JdkHttpEngine(ClientConfig config, Map<String, String> defaultHeaders,
+            Http2StreamStatistics streamStatistics) {
+        HttpProtocol protocol = config.protocol();
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL)
+                .version(protocol == HttpProtocol.H2 || protocol == HttpProtocol.H2C ? HttpClient.Version.HTTP_2
+                        : HttpClient.Version.HTTP_1_1);
+        if (config.connectTimeout() != null) {
+            httpClientBuilder.connectTimeout(Duration.ofMillis(config.connectTimeout()));
+        }
+        this.httpClient = httpClientBuilder.build();
+        String base = config.endpoint();
+        this.endpoint = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        this.defaultHeaders = Map.copyOf(defaultHeaders);
+        Long timeout = config.responseTimeout();
+        this.responseTimeout = timeout != null ? Duration.ofMillis(timeout) : null;
+        this.compression = config.compression() == null || config.compression();
+        Integer maxSize = config.maxInMemorySize();
+        this.maxInMemorySize = maxSize != null ? maxSize : CarmenCloudClient.DEFAULT_MAX_IN_MEMORY_SIZE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Mono<Response> exchange(Request request) {
+        return Mono.deferContextual(contextView -> {
+            AttemptMetrics attempt = contextView.getOrDefault(AttemptMetrics.class, null);
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(endpoint + request.path()));
+            if (compression) {
+                builder.setHeader("Accept-Encoding", "gzip, deflate");
+            }
+            defaultHeaders.forEach(builder::setHeader);
+            request.headers().forEach(builder::setHeader);
+            if (responseTimeout != null) {
+                builder.timeout(responseTimeout);
+            }
+            Upload upload = new Upload();
+            if (request.multipart() != null) {
+                Flux<ByteBuffer> body = upload.byteBuffers(
+                        multipartEncoder.encode(request.multipart(), DefaultDataBufferFactory.sharedInstance));
+                if (attempt != null) {
+                    attempt.acquired();
+                    body = body.doOnNext(buffer -> attempt.sent(buffer.remaining())).doOnComplete(attempt::uploaded);
+                }
+                builder.setHeader("Content-Type", multipartEncoder.contentType()).method(
+                        request.method(),
+                        HttpRequest.BodyPublishers.fromPublisher(JdkFlowAdapter.publisherToFlowPublisher(body)));
+            } else {
+                if (attempt != null) {
+                    attempt.acquired();
+                    attempt.uploaded();
+                }
+                builder.method(request.method(), HttpRequest.BodyPublishers.noBody());
+            }
+            HttpRequest httpRequest = builder.build();
+            return Mono.fromFuture(() -> httpClient.sendAsync(httpRequest,
+                    responseInfo -> new LimitedBodySubscriber(maxInMemorySize)))
+                    .doFinally(signal -> upload.release())
+                    .<Response>handle((response, sink) -> {
+                        byte[] body = response.body() != null ? response.body() : new byte[0];
+                        if (attempt != null) {
+                            attempt.responded(response.statusCode());
+                            attempt.received(body.length);
+                        }
+                        String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+                        try {
+                            body = decompress(body, encoding);
+                        } catch (IOException e) {
+                            sink.error(e);
+                            return;
+                        }
+                        if (attempt != null) {
+                            attempt.bodyRead();
+                        }
+                        sink.next(new Response(response.statusCode(),
+                                name -> response.headers().firstValue(name).orElse(null), body));
+                    });
+        });
+    }
+
+    private byte[] decompress(byte[] body, String encoding) throws IOException {
+        if (body.length == 0 || encoding == null || encoding.equalsIgnoreCase("identity")) {
+            return body;
+        }
+        InputStream stream;
+        if (encoding.equalsIgnoreCase("gzip")) {
+            stream = new GZIPInputStream(new ByteArrayInputStream(body));
+        } else if (encoding.equalsIgnoreCase("deflate")) {
+            stream = new InflaterInputStream(new ByteArrayInputStream(body));
+        } else {
+            throw new IOException("Unsupported content encoding: " + encoding);
+        }
+        try (stream) {
+            byte[] decompressed = stream.readNBytes(maxInMemorySize + 1);
+            if (decompressed.length > maxInMemorySize) {
+                throw new DataBufferLimitException("Exceeded limit on max bytes to buffer : " + maxInMemorySize);
+            }
+            return decompressed;
+        }
+    }
+
+    /**
+     * The buffers of a request body. The byte buffers of the data buffers are
+     * passed to {@link HttpClient} without copying, so the data buffers are
+     * released only when the exchange has terminated, as the client gives no
+     * notice when it has written a byte buffer.
+     */
+    private static final class Upload {
+
+        private final Queue<DataBuffer> buffers = new ConcurrentLinkedQueue<>();
+        private final Queue<DataBuffer.ByteBufferIterator> iterators = new ConcurrentLinkedQueue<>();
+        private volatile boolean released;
+
+        Flux<ByteBuffer> byteBuffers(Flux<DataBuffer> body) {
+            return body.concatMapIterable(buffer -> {
+                buffers.add(buffer);
+                DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers();
+                iterators.add(iterator);
+                List<ByteBuffer> byteBuffers = new ArrayList<>(1);
+                iterator.forEachRemaining(byteBuffers::add);
+                if (released) {
+                    // the exchange terminated while the buffer was read
+                    release();
+                }
+                return byteBuffers;
+            });
+        }
+
+        void release() {
+            released = true;
+            DataBuffer.ByteBufferIterator iterator;
+            while ((iterator = iterators.poll()) != null) {
+                iterator.close();
+            }
+            DataBuffer buffer;
+            while ((buffer = buffers.poll()) != null) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Body subscriber reading the response into a byte array, failing with a
+     * {@link DataBufferLimitException} as soon as the body exceeds the limit, so
+     * an oversized response is not loaded into memory.
+     */
+    private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final HttpResponse.BodySubscriber<byte[]> delegate = HttpResponse.BodySubscribers.ofByteArray();
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final int limit;
+        private Flow.Subscription subscription;
+        private long received;
+
+        LimitedBodySubscriber(int limit) {
+            this.limit = limit;
+            delegate.getBody().whenComplete((bytes, throwable) -> {
+                if (throwable != null) {
+                    body.completeExceptionally(throwable);
+                } else {
+                    body.complete(bytes);
+                }
+            });
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (body.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                received += item.remaining();
+            }
+            if (received > limit) {
+                subscription.cancel();
+                body.completeExceptionally(
+                        new DataBufferLimitException("Exceeded limit on max bytes to buffer : " + limit));
+                return;
+            }
+            delegate.onNext(items);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (!body.isDone()) {
+                delegate.onComplete();
+            }
+        }
+    }
+}
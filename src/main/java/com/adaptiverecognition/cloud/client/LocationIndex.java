@@ -0,0 +1,169 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.adaptiverecognition.cloud.vehicle.Locations.Location;
+
+/**
+ * In-memory lookup index of the locations supported by the Vehicle API.
+ * <p>
+ * The country codes are the codes of the locations, the region codes are the
+ * codes of their regions. A location string is either a country code (e.g.
+ * "HUN") or a country code and a region code separated by '/' (e.g. "USA/CA").
+ * Lookups are case insensitive.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public final class LocationIndex {
+
+    private static final char SEPARATOR = '/';
+
+    private final Map<String, Set<String>> regionsByCountry;
+
+    private LocationIndex(Map<String, Set<String>> regionsByCountry) {
+        this.regionsByCountry = regionsByCountry;
+    }
+
+    /**
+     * <p>
+     * Builds the index of the given locations.
+     * </p>
+     *
+     * @param locations the locations
+     * @return the index
+     */
+    public static LocationIndex of(List<Location> locations) {
+        Map<String, Set<String>> regionsByCountry = new HashMap<>();
+        if (locations != null) {
+            for (Location location : locations) {
+                if (location == null || location.getCode() == null) {
+                    continue;
+                }
+                Set<String> regions = new HashSet<>();
+                if (location.getRegions() != null) {
+                    for (Location region : location.getRegions()) {
+                        if (region != null && region.getCode() != null) {
+                            regions.add(normalize(region.getCode()));
+                        }
+                    }
+                }
+                regionsByCountry.put(normalize(location.getCode()), Collections.unmodifiableSet(regions));
+            }
+        }
+        return new LocationIndex(Collections.unmodifiableMap(regionsByCountry));
+    }
+
+    /**
+     * <p>
+     * Returns if the index does not contain any location.
+     * </p>
+     *
+     * @return if the index is empty
+     */
+    public boolean isEmpty() {
+        return regionsByCountry.isEmpty();
+    }
+
+    /**
+     * <p>
+     * Returns the country codes.
+     * </p>
+     *
+     * @return the country codes
+     */
+    public Set<String> countries() {
+        return regionsByCountry.keySet();
+    }
+
+    /**
+     * <p>
+     * Returns the region codes of a country.
+     * </p>
+     *
+     * @param country the country code
+     * @return the region codes, empty if the country is unknown
+     */
+    public Set<String> regions(String country) {
+        if (country == null) {
+            return Collections.emptySet();
+        }
+        return regionsByCountry.getOrDefault(normalize(country), Collections.emptySet());
+    }
+
+    /**
+     * <p>
+     * Returns if the country is supported.
+     * </p>
+     *
+     * @param country the country code
+     * @return if the country is supported
+     */
+    public boolean containsCountry(String country) {
+        return country != null && regionsByCountry.containsKey(normalize(country));
+    }
+
+    /**
+     * <p>
+     * Returns if the region of the country is supported.
+     * </p>
+     *
+     * @param country the country code
+     * @param region  the region code
+     * @return if the region is supported
+     */
+    public boolean containsRegion(String country, String region) {
+        return region != null && regions(country).contains(normalize(region));
+    }
+
+    /**
+     * <p>
+     * Returns if the location (a country code, optionally followed by '/' and a
+     * region code) is supported.
+     * </p>
+     *
+     * @param location the location
+     * @return if the location is supported
+     */
+    public boolean contains(String location) {
+        if (location == null) {
+            return false;
+        }
+        String normalized = normalize(location);
+        if (regionsByCountry.containsKey(normalized)) {
+            return true;
+        }
+        int separator = normalized.indexOf(SEPARATOR);
+        return separator > 0 && containsRegion(normalized.substring(0, separator),
+                normalized.substring(separator + 1));
+    }
+
+    private static String normalize(String code) {
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+}
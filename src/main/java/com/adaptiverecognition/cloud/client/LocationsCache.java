@@ -0,0 +1,197 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adaptiverecognition.cloud.vehicle.Locations;
+import com.adaptiverecognition.cloud.vehicle.Locations.Location;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache of the locations supported by the Vehicle API.
+ * <p>
+ * Concurrent lookups share a single in-flight request. After the time to live
+ * has elapsed, the cached locations are still served while they are
+ * revalidated in the background, using the ETag of the previous response if the
+ * server sent one.
+ * </p>
+ * <p>
+ * A failed load is not repeated for a second, doubling with every consecutive
+ * failure up to the time to live (but at least a second). Meanwhile the lookups
+ * fail with the error of the last load if there are no cached locations, and
+ * the stale locations are served without revalidating them otherwise.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+final class LocationsCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocationsCache.class);
+
+    private static final long MIN_FAILURE_BACKOFF = TimeUnit.SECONDS.toNanos(1);
+
+    private final long ttlNanos;
+    private final Function<Snapshot, Mono<Snapshot>> loader;
+    private final AtomicReference<Mono<Snapshot>> inFlight = new AtomicReference<>();
+    private volatile Snapshot snapshot;
+    private volatile Failure failure;
+
+    /**
+     * <p>
+     * Creates the cache.
+     * </p>
+     *
+     * @param ttl    the time to live of the cached locations
+     * @param loader loads the locations, receives the previous snapshot (or null)
+     *               and returns either a new snapshot or the revalidated previous
+     *               one
+     */
+    LocationsCache(Duration ttl, Function<Snapshot, Mono<Snapshot>> loader) {
+        this.ttlNanos = ttl.toNanos();
+        this.loader = loader;
+    }
+
+    /**
+     * <p>
+     * Returns the cached locations, loading them if they were never loaded.
+     * </p>
+     *
+     * @return the snapshot of the locations
+     */
+    Mono<Snapshot> get() {
+        Snapshot current = snapshot;
+        Failure last = failure;
+        boolean backingOff = last != null && System.nanoTime() - last.failedAt < last.backoff;
+        if (current == null) {
+            return backingOff ? Mono.error(last.error) : refresh();
+        }
+        if (System.nanoTime() - current.loadedAt > ttlNanos && !backingOff) {
+            refresh().subscribe(null, throwable -> {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Revalidating locations failed, serving stale locations", throwable);
+                }
+            });
+        }
+        return Mono.just(current);
+    }
+
+    /**
+     * <p>
+     * Loads the locations, or joins the load already in progress.
+     * </p>
+     *
+     * @return the snapshot of the locations
+     */
+    Mono<Snapshot> refresh() {
+        while (true) {
+            Mono<Snapshot> current = inFlight.get();
+            if (current != null) {
+                return current;
+            }
+            AtomicReference<Mono<Snapshot>> self = new AtomicReference<>();
+            Mono<Snapshot> load = Mono.defer(() -> loader.apply(snapshot)).doOnNext(loaded -> {
+                snapshot = loaded;
+                failure = null;
+            }).doOnError(this::failed).doFinally(signal -> inFlight.compareAndSet(self.get(), null)).cache();
+            self.set(load);
+            if (inFlight.compareAndSet(null, load)) {
+                return load;
+            }
+        }
+    }
+
+    private void failed(Throwable throwable) {
+        Failure last = failure;
+        long backoff = last == null ? MIN_FAILURE_BACKOFF
+                : Math.min(Math.max(ttlNanos, MIN_FAILURE_BACKOFF), last.backoff * 2);
+        failure = new Failure(throwable, backoff);
+    }
+
+    /**
+     * The last failed load.
+     */
+    private static final class Failure {
+
+        private final Throwable error;
+        private final long backoff;
+        private final long failedAt;
+
+        Failure(Throwable error, long backoff) {
+            this.error = error;
+            this.backoff = backoff;
+            this.failedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * An immutable snapshot of the cached locations.
+     */
+    static final class Snapshot {
+
+        private final List<Location> locations;
+        private final LocationIndex index;
+        private final String etag;
+        private final long loadedAt;
+
+        Snapshot(List<Location> locations, String etag) {
+            this(locations, LocationIndex.of(locations), etag);
+        }
+
+        private Snapshot(List<Location> locations, LocationIndex index, String etag) {
+            this.locations = locations;
+            this.index = index;
+            this.etag = etag;
+            this.loadedAt = System.nanoTime();
+        }
+
+        /**
+         * <p>
+         * Returns a copy of the snapshot that is fresh again, used when the server
+         * reports that the locations have not been modified.
+         * </p>
+         *
+         * @return the revalidated snapshot
+         */
+        Snapshot revalidated() {
+            return new Snapshot(locations, index, etag);
+        }
+
+        Locations locations() {
+            return new Locations(locations);
+        }
+
+        LocationIndex index() {
+            return index;
+        }
+
+        String etag() {
+            return etag;
+        }
+    }
+}
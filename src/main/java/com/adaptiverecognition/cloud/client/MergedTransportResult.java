@@ -0,0 +1,185 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.adaptiverecognition.cloud.transport.TransportResult;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Result of a Transportation &amp; Cargo API request sent in several calls (see
+ * {@link TransportClient.TransportClientBuilder#imagesPerCall(Integer)}).
+ * <p>
+ * The codes of the calls are concatenated in the order of the images. If
+ * every code has a code value or a "not found" flag, a code read from several
+ * images (the same code type and code) is kept once, at its first position,
+ * with the reading of the highest confidence, and the "not found" entries are
+ * dropped if a code has been found, otherwise the first one is kept. Codes
+ * without these fields are all kept. The other properties of the data are
+ * taken from the first call; data of an unknown layout are taken from the
+ * first call as a whole. The request id is the id of the first call, the ids
+ * of all the calls are returned by {@link #getRequestIds()}, and the results
+ * of the calls by {@link #getResults()}.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class MergedTransportResult extends TransportResult {
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS).findAndAddModules().build();
+
+    private final List<TransportResult> results;
+    private final List<String> requestIds;
+
+    private MergedTransportResult(List<TransportResult> results) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        List<String> ids = new ArrayList<>(results.size());
+        List<JsonNode> data = new ArrayList<>(results.size());
+        for (TransportResult result : results) {
+            if (result.getRequestId() != null) {
+                ids.add(result.getRequestId());
+            }
+            JsonNode tree = OBJECT_MAPPER.valueToTree(result).path("data");
+            if (!tree.isMissingNode() && !tree.isNull()) {
+                data.add(tree);
+            }
+        }
+        this.requestIds = Collections.unmodifiableList(ids);
+
+        ObjectNode merged = OBJECT_MAPPER.createObjectNode();
+        if (!data.isEmpty()) {
+            merged.set("data", mergeData(data));
+        }
+        try {
+            // the data are read back through the result model, whatever its revision is
+            OBJECT_MAPPER.readerForUpdating(this).readValue(merged);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        setRequestId(ids.isEmpty() ? null : ids.get(0));
+    }
+
+    private static JsonNode mergeData(List<JsonNode> data) {
+        if (data.stream().allMatch(JsonNode::isArray)) {
+            ArrayNode merged = OBJECT_MAPPER.createArrayNode();
+            data.forEach(tree -> merged.addAll((ArrayNode) tree));
+            return merged;
+        }
+        if (!data.stream().allMatch(tree -> tree.isObject()
+                && (tree.path("codes").isArray() || tree.path("codes").isMissingNode()))
+                || data.stream().noneMatch(tree -> tree.path("codes").isArray())) {
+            // unknown layout, the data of the other calls are only returned by getResults()
+            return data.get(0);
+        }
+        List<JsonNode> codes = new ArrayList<>();
+        data.forEach(tree -> tree.path("codes").forEach(codes::add));
+        ObjectNode merged = ((ObjectNode) data.get(0)).deepCopy();
+        merged.set("codes", OBJECT_MAPPER.createArrayNode()
+                .addAll(codes.stream().allMatch(MergedTransportResult::isReading) ? deduplicate(codes) : codes));
+        return merged;
+    }
+
+    /**
+     * Returns if a code has the fields the duplicates are found by: either a code
+     * or an explicit "not found" flag.
+     */
+    private static boolean isReading(JsonNode code) {
+        return code.path("code").isTextual() || !code.path("found").asBoolean(true);
+    }
+
+    private static List<JsonNode> deduplicate(List<JsonNode> codes) {
+        Map<String, JsonNode> found = new LinkedHashMap<>();
+        JsonNode notFound = null;
+        for (JsonNode code : codes) {
+            if (!code.path("found").asBoolean(true) || !code.path("code").isTextual()) {
+                notFound = notFound != null ? notFound : code;
+                continue;
+            }
+            String key = code.path("codeType").asText("") + '\u0000' + code.path("code").asText();
+            JsonNode previous = found.get(key);
+            // replacing the value of a key keeps the position of its first reading
+            if (previous == null || confidence(code) > confidence(previous)) {
+                found.put(key, code);
+            }
+        }
+        if (!found.isEmpty()) {
+            return new ArrayList<>(found.values());
+        }
+        return notFound != null ? List.of(notFound) : List.of();
+    }
+
+    private static double confidence(JsonNode code) {
+        return code.path("confidence").asDouble(-1);
+    }
+
+    /**
+     * <p>
+     * Merges the results of the calls of a request.
+     * </p>
+     *
+     * @param results the results in the order of the calls
+     * @return the merged result
+     */
+    static MergedTransportResult merge(List<TransportResult> results) {
+        if (results == null || results.isEmpty()) {
+            throw new IllegalArgumentException("Results must not be empty");
+        }
+        return new MergedTransportResult(results);
+    }
+
+    /**
+     * <p>
+     * Returns the request ids of the calls, in the order of the calls.
+     * </p>
+     *
+     * @return the request ids
+     */
+    public List<String> getRequestIds() {
+        return requestIds;
+    }
+
+    /**
+     * <p>
+     * Returns the results of the calls, in the order of the calls.
+     * </p>
+     *
+     * @return the results
+     */
+    @JsonIgnore
+    public List<TransportResult> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Exchange filter measuring the phases and the body sizes of the exchanges
+ * that have an {@link AttemptMetrics} in their context.
+ *
+ * @author laszlo.toth
+ */
+final class MetricsFilter implements ExchangeFilterFunction {
+
+    static final MetricsFilter INSTANCE = new MetricsFilter();
+
+    private MetricsFilter() {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(contextView -> {
+            AttemptMetrics attempt = contextView.getOrDefault(AttemptMetrics.class, null);
+            if (attempt == null) {
+                return next.exchange(request);
+            }
+            BodyInserter<?, ClientHttpRequest> body = (outputMessage, context) -> request.body()
+                    .insert(new ClientHttpRequestDecorator(outputMessage) {
+
+                        @Override
+                        public Mono<Void> writeWith(Publisher<? extends DataBuffer> content) {
+                            // the body is written once the connection has been acquired
+                            attempt.acquired();
+                            return super.writeWith(Flux.from(content)
+                                    .doOnNext(buffer -> attempt.sent(buffer.readableByteCount()))
+                                    .doOnComplete(attempt::uploaded));
+                        }
+
+                        @Override
+                        public Mono<Void> setComplete() {
+                            attempt.acquired();
+                            attempt.uploaded();
+                            return super.setComplete();
+                        }
+                    }, context);
+            return next.exchange(ClientRequest.from(request).body(body).build()).map(response -> {
+                attempt.responded(response.statusCode().value());
+                return response.mutate()
+                        .body(content -> content.doOnNext(buffer -> attempt.received(buffer.readableByteCount()))
+                                .doOnComplete(attempt::bodyRead))
+                        .build();
+            });
+        });
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.netty.resources.ConnectionPoolMetrics;
+
+/**
+ * {@link ClientMetrics} publishing the measurements to a Micrometer
+ * {@link MeterRegistry}.
+ * <p>
+ * The following meters are registered (the names are prefixed with the given
+ * prefix, "carmen.client" by default):
+ * </p>
+ * <ul>
+ * <li>requests: timer of the exchanges with api, region, service, status and
+ * outcome tags,</li>
+ * <li>requests.phase: timer of the phases of the exchanges with api, region and
+ * phase (acquire, upload, server, deserialize) tags,</li>
+ * <li>requests.active: gauge of the exchanges in flight with api tag,</li>
+ * <li>retries: counter of the retries with api tag,</li>
+ * <li>bytes.sent, bytes.received: distribution summaries of the body sizes
+ * with api and region tags,</li>
+ * <li>pool.connections.active, idle, total, pending and max: gauges of the
+ * connection pools built with this instance, with pool and remote tags.</li>
+ * </ul>
+ * <p>
+ * Micrometer is an optional dependency, it must be on the classpath to use
+ * this class.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class MicrometerClientMetrics implements ClientMetrics {
+
+    private final MeterRegistry registry;
+    private final String prefix;
+    private final ConcurrentMap<String, AtomicInteger> active = new ConcurrentHashMap<>();
+
+    /**
+     * <p>
+     * Creates the metrics with the default "carmen.client" prefix.
+     * </p>
+     *
+     * @param registry the meter registry
+     */
+    public MicrometerClientMetrics(MeterRegistry registry) {
+        this(registry, "carmen.client");
+    }
+
+    /**
+     * <p>
+     * Creates the metrics.
+     * </p>
+     *
+     * @param registry the meter registry
+     * @param prefix   the prefix of the meter names
+     */
+    public MicrometerClientMetrics(MeterRegistry registry, String prefix) {
+        if (registry == null) {
+            throw new IllegalArgumentException("Registry must not be null");
+        }
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix must not be null");
+        }
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void attemptStarted(AttemptMetrics attempt) {
+        active(attempt.api()).incrementAndGet();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void attemptFinished(AttemptMetrics attempt) {
+        active(attempt.api()).decrementAndGet();
+
+        Tags tags = Tags.of("api", attempt.api(), "region", attempt.region());
+        Timer.builder(prefix + ".requests").description("The HTTP exchanges of the API clients")
+                .tags(tags.and("service", attempt.service(), "status", String.valueOf(attempt.statusCode()),
+                        "outcome", attempt.outcome().name()))
+                .publishPercentileHistogram().register(registry).record(attempt.duration());
+
+        recordPhase(tags, "acquire", attempt.acquireTime());
+        recordPhase(tags, "upload", attempt.uploadTime());
+        recordPhase(tags, "server", attempt.serverTime());
+        recordPhase(tags, "deserialize", attempt.deserializeTime());
+
+        DistributionSummary.builder(prefix + ".bytes.sent").baseUnit("bytes").tags(tags).register(registry)
+                .record(attempt.bytesSent());
+        DistributionSummary.builder(prefix + ".bytes.received").baseUnit("bytes").tags(tags).register(registry)
+                .record(attempt.bytesReceived());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void retried(String api) {
+        registry.counter(prefix + ".retries", "api", api).increment();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void connectionPoolCreated(String poolName, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+        Tags tags = Tags.of("pool", poolName, "remote", String.valueOf(remoteAddress));
+        // the pool metrics are not referenced by anything else, a weakly referenced gauge would report NaN
+        registerPoolGauge("active", metrics, ConnectionPoolMetrics::acquiredSize, tags);
+        registerPoolGauge("idle", metrics, ConnectionPoolMetrics::idleSize, tags);
+        registerPoolGauge("total", metrics, ConnectionPoolMetrics::allocatedSize, tags);
+        registerPoolGauge("pending", metrics, ConnectionPoolMetrics::pendingAcquireSize, tags);
+        registerPoolGauge("max", metrics, ConnectionPoolMetrics::maxAllocatedSize, tags);
+    }
+
+    private void registerPoolGauge(String name, ConnectionPoolMetrics metrics,
+            ToDoubleFunction<ConnectionPoolMetrics> value, Tags tags) {
+        Gauge.builder(prefix + ".pool.connections." + name, metrics, value).tags(tags).strongReference(true)
+                .register(registry);
+    }
+
+    private AtomicInteger active(String api) {
+        return active.computeIfAbsent(api, key -> registry.gauge(prefix + ".requests.active", Tags.of("api", key),
+                new AtomicInteger()));
+    }
+
+    private void recordPhase(Tags tags, String phase, Duration duration) {
+        if (duration != null) {
+            Timer.builder(prefix + ".requests.phase").tags(tags.and("phase", phase)).publishPercentileHistogram()
+                    .register(registry).record(duration);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Encoder of the multipart request bodies of the HTTP engines.
+ * <p>
+ * The boundary is generated once per encoder, and the encoded part headers are
+ * cached by the part name and the image mime type, so a request is written
+ * without building a multipart model, parsing media types or encoding the
+ * headers again. The text parts and the header of the following image are
+ * written into a single buffer of the given factory (the pooled buffers of the
+ * connection with Reactor Netty), the images are streamed as they are.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+final class MultipartEncoder {
+
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FILENAME = "; filename=\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOTE = "\"".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_CACHED_MIME_TYPES = 64;
+
+    private final String boundary;
+    private final String contentType;
+    private final byte[] closing;
+    private final ConcurrentMap<String, byte[]> textHeaders = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, byte[]> imageHeaders = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, byte[]> imageContentTypes = new ConcurrentHashMap<>();
+
+    MultipartEncoder() {
+        this.boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        this.contentType = "multipart/form-data; boundary=" + boundary;
+        this.closing = ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * <p>
+     * Returns the value of the Content-Type header of the encoded bodies.
+     * </p>
+     *
+     * @return the content type with the boundary
+     */
+    String contentType() {
+        return contentType;
+    }
+
+    /**
+     * <p>
+     * Encodes the parts of a request. The buffers must be released by the
+     * subscriber.
+     * </p>
+     *
+     * @param parts   the parts
+     * @param factory the factory of the buffers
+     * @return the encoded body
+     */
+    Flux<DataBuffer> encode(List<HttpEngine.Part> parts, DataBufferFactory factory) {
+        return Flux.defer(() -> {
+            List<Publisher<DataBuffer>> sources = new ArrayList<>(2 * parts.size() + 1);
+            int start = 0;
+            for (int i = 0; i < parts.size(); i++) {
+                ImagePayload image = parts.get(i).image();
+                if (image != null) {
+                    int from = start;
+                    int to = i;
+                    sources.add(Mono.fromSupplier(() -> write(parts, from, to, factory)));
+                    sources.add(image.content(factory));
+                    start = i + 1;
+                }
+            }
+            int from = start;
+            sources.add(Mono.fromSupplier(() -> write(parts, from, parts.size(), factory)));
+            return Flux.concat(sources);
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /**
+     * Writes the text parts from the start index, the end of the preceding
+     * image, and the header of the image at the end index or the closing
+     * boundary into one buffer.
+     */
+    private DataBuffer write(List<HttpEngine.Part> parts, int start, int end, DataBufferFactory factory) {
+        int size = start > 0 ? CRLF.length : 0;
+        for (int i = start; i < end; i++) {
+            HttpEngine.Part part = parts.get(i);
+            size += textHeader(part.name()).length + part.value().length() + CRLF.length;
+        }
+        ImagePayload image = end < parts.size() ? parts.get(end).image() : null;
+        if (image != null) {
+            size += imageHeader(parts.get(end).name()).length + imageContentType(image.getMimeType()).length;
+            if (image.getName() != null) {
+                size += FILENAME.length + image.getName().length() + QUOTE.length;
+            }
+        } else {
+            size += closing.length;
+        }
+
+        // the size is exact for ASCII values, the buffer grows if needed
+        DataBuffer buffer = factory.allocateBuffer(size);
+        try {
+            if (start > 0) {
+                buffer.write(CRLF);
+            }
+            for (int i = start; i < end; i++) {
+                HttpEngine.Part part = parts.get(i);
+                buffer.write(textHeader(part.name())).write(part.value(), StandardCharsets.UTF_8).write(CRLF);
+            }
+            if (image != null) {
+                buffer.write(imageHeader(parts.get(end).name()));
+                if (image.getName() != null) {
+                    buffer.write(FILENAME).write(image.getName().replace("\"", "\\\""), StandardCharsets.UTF_8)
+                            .write(QUOTE);
+                }
+                buffer.write(imageContentType(image.getMimeType()));
+            } else {
+                buffer.write(closing);
+            }
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private byte[] textHeader(String name) {
+        return textHeaders.computeIfAbsent(name, key -> ("--" + boundary + "\r\nContent-Disposition: form-data; name=\""
+                + key + "\"\r\nContent-Type: text/plain;charset=UTF-8\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] imageHeader(String name) {
+        return imageHeaders.computeIfAbsent(name, key -> ("--" + boundary
+                + "\r\nContent-Disposition: form-data; name=\"" + key + "\"").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] imageContentType(String mimeType) {
+        String key = mimeType != null ? mimeType : "jpeg";
+        byte[] header = imageContentTypes.get(key);
+        if (header == null) {
+            header = ("\r\nContent-Type: image/" + key + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+            if (imageContentTypes.size() < MAX_CACHED_MIME_TYPES) {
+                imageContentTypes.putIfAbsent(key, header);
+            }
+        }
+        return header;
+    }
+}
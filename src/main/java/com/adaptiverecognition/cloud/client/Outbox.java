@@ -0,0 +1,527 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import com.adaptiverecognition.cloud.Request;
+import com.adaptiverecognition.cloud.Result;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Durable outbox in front of a client, buffering the requests on the disk while
+ * the API is not reachable.
+ * <p>
+ * {@link #submit(Request)} appends the serialized request to a memory-mapped
+ * segment log in a directory and returns without touching the network. The
+ * requests are sent in the order they were submitted, at most at the drain
+ * rate, and the results are delivered to the {@link Listener}. If a request
+ * fails with a transient error (see {@link RetryPolicy#isTransient(Throwable)})
+ * or its {@link Deadline} expires, draining is paused for the retry delay and
+ * resumed with the same request, so the outbox waits until the endpoint is
+ * reachable again. Other errors are delivered to the listener and the request
+ * is dropped.
+ * </p>
+ * <p>
+ * The delivery is at-least-once: the offset of the last delivered request is
+ * stored after the listener has been called, so a request may be sent and
+ * delivered again after a crash. Every request has an id (generated or given by
+ * the caller) that is passed to the listener, and a request is not accepted if
+ * a request with the same id is still in the outbox.
+ * </p>
+ *
+ * @author laszlo.toth
+ * @param <R> the request type
+ * @param <A> the result type
+ */
+public class Outbox<R extends Request<?>, A extends Result> implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Outbox.class);
+
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * Listener of the outcomes of the requests.
+     *
+     * @param <R> the request type
+     * @param <A> the result type
+     */
+    public interface Listener<R, A> {
+
+        /**
+         * <p>
+         * Called when a request has succeeded. Must not block.
+         * </p>
+         *
+         * @param id      the id of the request
+         * @param request the request
+         * @param result  the result, or null if the API returned no result
+         */
+        void onResult(String id, R request, A result);
+
+        /**
+         * <p>
+         * Called when a request has failed with a permanent error, or could not be
+         * deserialized (then the request is null). Must not block.
+         * </p>
+         *
+         * @param id      the id of the request
+         * @param request the request, or null
+         * @param error   the error
+         */
+        default void onFailure(String id, R request, Throwable error) {
+            LOGGER.warn("Request {} of the outbox failed", id, error);
+        }
+    }
+
+    /**
+     * Serializer of the requests stored in the outbox.
+     *
+     * @param <R> the request type
+     */
+    public interface Codec<R> {
+
+        /**
+         * <p>
+         * Serializes a request together with its images.
+         * </p>
+         *
+         * @param request the request
+         * @return the serialized request
+         * @throws IOException if the request can not be serialized
+         */
+        byte[] encode(R request) throws IOException;
+
+        /**
+         * <p>
+         * Deserializes a request.
+         * </p>
+         *
+         * @param bytes the serialized request
+         * @return the request
+         * @throws IOException if the request can not be deserialized
+         */
+        R decode(byte[] bytes) throws IOException;
+    }
+
+    private final CarmenCloudClient<R, A> client;
+    private final Codec<R> codec;
+    private final Listener<R, A> listener;
+    private final SegmentLog log;
+    private final FileChannel checkpointChannel;
+    private final boolean sync;
+    private final RateLimiter rateLimiter;
+    private final int concurrency;
+    private final int batchSize;
+    private final Duration retryDelay;
+    private final Scheduler scheduler;
+    private final Sinks.Many<Boolean> wakeups = Sinks.many().multicast().directBestEffort();
+    private final Disposable drain;
+    private volatile long checkpoint;
+    private boolean closed;
+
+    private Outbox(OutboxBuilder<R, A> builder) throws IOException {
+        this.client = builder.client;
+        this.codec = builder.codec;
+        this.listener = builder.listener;
+        this.sync = builder.sync;
+        this.log = new SegmentLog(builder.directory, builder.segmentSize, builder.sync);
+        this.checkpointChannel = FileChannel.open(builder.directory.resolve("checkpoint"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        this.checkpoint = checkpointChannel.read(buffer, 0) == Long.BYTES ? buffer.flip().getLong() : 0;
+        this.rateLimiter = builder.drainRate != null ? new RateLimiter(builder.drainRate) : null;
+        this.concurrency = builder.concurrency;
+        this.batchSize = Math.max(64, builder.concurrency * 4);
+        this.retryDelay = builder.retryDelay;
+        this.scheduler = Schedulers.newSingle("carmen-outbox", true);
+        this.drain = Mono.defer(this::drainBatch).onErrorResume(throwable -> {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Outbox paused for {}", retryDelay, throwable);
+            }
+            return Mono.delay(retryDelay, scheduler).then();
+        }).then(Mono.defer(this::awaitRequests)).repeat().subscribeOn(scheduler).subscribe();
+    }
+
+    /**
+     * <p>
+     * Creates an outbox builder.
+     * </p>
+     *
+     * @param <R>    the request type
+     * @param <A>    the result type
+     * @param client the client sending the requests
+     * @return the builder
+     */
+    public static <R extends Request<?>, A extends Result> OutboxBuilder<R, A> builder(
+            CarmenCloudClient<R, A> client) {
+        return new OutboxBuilder<>(client);
+    }
+
+    /**
+     * <p>
+     * Returns a codec serializing the requests as JSON with Jackson. The images
+     * are stored as base64 strings.
+     * </p>
+     *
+     * @param <R>  the request type
+     * @param type the request type
+     * @return the codec
+     */
+    public static <R> Codec<R> jsonCodec(Class<R> type) {
+        ObjectMapper objectMapper = JsonMapper.builder().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .findAndAddModules().build();
+        return new Codec<R>() {
+
+            @Override
+            public byte[] encode(R request) throws IOException {
+                return objectMapper.writeValueAsBytes(request);
+            }
+
+            @Override
+            public R decode(byte[] bytes) throws IOException {
+                return objectMapper.readValue(bytes, type);
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Submits a request with a generated id.
+     * </p>
+     *
+     * @param request the request
+     * @return the id of the request
+     * @throws IOException if the request can not be stored
+     */
+    public String submit(R request) throws IOException {
+        String id = UUID.randomUUID().toString();
+        submit(id, request);
+        return id;
+    }
+
+    /**
+     * <p>
+     * Submits a request with an id, unless a request with the same id is still in
+     * the outbox.
+     * </p>
+     *
+     * @param id      the id of the request
+     * @param request the request
+     * @return if the request has been accepted
+     * @throws IOException if the request can not be stored
+     */
+    public boolean submit(String id, R request) throws IOException {
+        if (id == null || request == null) {
+            throw new IllegalArgumentException("Id and request must not be null");
+        }
+        boolean accepted = log.append(id, codec.encode(request));
+        if (accepted) {
+            wakeups.tryEmitNext(Boolean.TRUE);
+        }
+        return accepted;
+    }
+
+    /**
+     * <p>
+     * Returns the number of bytes of the requests not delivered yet.
+     * </p>
+     *
+     * @return the backlog in bytes
+     */
+    public long backlog() {
+        return log.end() - checkpoint;
+    }
+
+    /**
+     * <p>
+     * Stops draining and closes the files. Waits for the delivery in progress to
+     * be stored, the requests not delivered yet are sent when the outbox is
+     * opened again.
+     * </p>
+     *
+     * @throws IOException if the files can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        drain.dispose();
+        scheduler.dispose();
+        checkpointChannel.close();
+        log.close();
+    }
+
+    private Mono<Void> drainBatch() {
+        List<SegmentLog.Record> records = log.read(checkpoint, batchSize);
+        if (records.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(records)
+                .concatMap(record -> rateLimiter != null ? rateLimiter.acquire().thenReturn(record)
+                        : Mono.just(record))
+                .flatMapSequential(this::send, concurrency).publishOn(scheduler).doOnNext(Runnable::run)
+                .then();
+    }
+
+    /**
+     * Sends a request and returns the delivery of its outcome, which is run in the
+     * order of the requests.
+     */
+    private Mono<Runnable> send(SegmentLog.Record record) {
+        R request;
+        try {
+            request = codec.decode(record.payload());
+        } catch (IOException | RuntimeException e) {
+            return Mono.<Runnable>just(() -> deliver(record, () -> listener.onFailure(record.id(), null, e)));
+        }
+        return client.searchMono(request)
+                .<Runnable>map(result -> () -> deliver(record, () -> listener.onResult(record.id(), request, result)))
+                .defaultIfEmpty(() -> deliver(record, () -> listener.onResult(record.id(), request, null)))
+                .onErrorResume(Outbox::isPermanent, throwable -> Mono.<Runnable>just(
+                        () -> deliver(record, () -> listener.onFailure(record.id(), request, throwable))));
+    }
+
+    /**
+     * Returns if the error is delivered to the listener instead of pausing the
+     * outbox.
+     */
+    private static boolean isPermanent(Throwable throwable) {
+        return !RetryPolicy.isTransient(throwable) && !Deadline.isExceeded(throwable);
+    }
+
+    /**
+     * Runs the callback and stores the checkpoint, unless the outbox has been
+     * closed. Holding the lock lets {@link #close()} wait for the delivery in
+     * progress.
+     */
+    private synchronized void deliver(SegmentLog.Record record, Runnable callback) {
+        if (closed) {
+            return;
+        }
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Listener of the outbox failed on request {}", record.id(), e);
+        }
+        commit(record.next());
+    }
+
+    private void commit(long offset) {
+        checkpoint = offset;
+        try {
+            checkpointChannel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, offset), 0);
+            if (sync) {
+                checkpointChannel.force(false);
+            }
+            log.truncate(offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Mono<Void> awaitRequests() {
+        if (log.end() > checkpoint) {
+            return Mono.empty();
+        }
+        return wakeups.asFlux().next().then().timeout(POLL_INTERVAL, Mono.empty(), scheduler);
+    }
+
+    /**
+     * Builder for {@link Outbox}.
+     *
+     * @param <R> the request type
+     * @param <A> the result type
+     */
+    public static class OutboxBuilder<R extends Request<?>, A extends Result> {
+
+        private final CarmenCloudClient<R, A> client;
+        private Path directory;
+        private Codec<R> codec;
+        private Listener<R, A> listener;
+        private int segmentSize = 64 * 1024 * 1024;
+        private boolean sync;
+        private Double drainRate;
+        private int concurrency = 4;
+        private Duration retryDelay = Duration.ofSeconds(5);
+
+        private OutboxBuilder(CarmenCloudClient<R, A> client) {
+            this.client = client;
+        }
+
+        /**
+         * <p>
+         * Sets the directory of the outbox.
+         * </p>
+         *
+         * @param directory the directory
+         * @return the builder
+         */
+        public OutboxBuilder<R, A> directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the serializer of the requests, see {@link Outbox#jsonCodec(Class)}.
+         * </p>
+         *
+         * @param codec the codec
+         * @return the builder
+         */
+        public OutboxBuilder<R, A> codec(Codec<R> codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the listener of the outcomes of the requests.
+         * </p>
+         *
+         * @param listener the listener
+         * @return the builder
+         */
+        public OutboxBuilder<R, A> listener(Listener<R, A> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the size of the segment files in bytes. Default is 64 MB.
+         * </p>
+         *
+         * @param segmentSize the segment size
+         * @return the builder
+         */
+        public OutboxBuilder<R, A> segmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets if every submitted request should be forced to the disk, so it
+         * survives a power loss, not only a crash of the process. Default is
+         * false.
+         * </p>
+         *
+         * @param sync if the writes should be forced to the disk
+         * @return the builder
+         */
+        public OutboxBuilder<R, A> sync(boolean sync) {
+            this.sync = sync;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of requests sent per second. Default is no
+         * limit.
+         * </p>
+         *
+         * @param drainRate the drain rate
+         * @return the builder
+         */
+        public OutboxBuilder<R, A> drainRate(Double drainRate) {
+            this.drainRate = drainRate;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of requests sent at the same time. Default is 4.
+         * </p>
+         *
+         * @param concurrency the maximum number of concurrent requests
+         * @return the builder
+         */
+        public OutboxBuilder<R, A> concurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets how long draining is paused after a transient error. Default is 5
+         * seconds.
+         * </p>
+         *
+         * @param retryDelay the retry delay
+         * @return the builder
+         */
+        public OutboxBuilder<R, A> retryDelay(Duration retryDelay) {
+            this.retryDelay = retryDelay;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Builds the outbox and starts draining it.
+         * </p>
+         *
+         * @return the outbox
+         * @throws IOException if the directory can not be opened
+         */
+        public Outbox<R, A> build() throws IOException {
+            if (client == null || directory == null || codec == null || listener == null) {
+                throw new IllegalArgumentException("Client, directory, codec and listener must not be null");
+            }
+            if (segmentSize < 1024 || concurrency < 1) {
+                throw new IllegalArgumentException("Segment size and concurrency are too small");
+            }
+            if (drainRate != null && drainRate <= 0) {
+                throw new IllegalArgumentException("Drain rate must be positive");
+            }
+            if (retryDelay == null || retryDelay.isNegative()) {
+                throw new IllegalArgumentException("Retry delay must not be negative");
+            }
+            return new Outbox<>(this);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Client-side token bucket rate limiter with AIMD (additive increase,
+ * multiplicative decrease) adjustment of the rate.
+ * <p>
+ * Requests exceeding the current rate are not rejected, they are delayed until
+ * a permit becomes available. When the API throttles a request (HTTP status code
+ * 429), the rate is decreased multiplicatively, at most once per second, and if
+ * the response contains a Retry-After header, new permits are not handed out
+ * until it has elapsed. Every successful request increases the rate additively,
+ * up to the configured maximum.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class RateLimiter {
+
+    /**
+     * The shared rate limiters by API key. The rate limiters are referenced
+     * weakly, so they are dropped when no client uses them anymore.
+     */
+    private static final Map<String, WeakReference<RateLimiter>> SHARED = new HashMap<>();
+
+    private static final long DECREASE_INTERVAL = Duration.ofSeconds(1).toNanos();
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final double maxRate;
+    private final double minRate;
+    private final double burst;
+    private final double decreaseFactor;
+    private final double additiveIncrease;
+
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+    private long lastDecrease;
+
+    /**
+     * <p>
+     * Creates a rate limiter with default adjustment settings: the burst is one
+     * second worth of permits, the rate is halved on throttling but never goes
+     * below a tenth of the maximum, and grows by a twentieth of the maximum per
+     * second of successful requests.
+     * </p>
+     *
+     * @param permitsPerSecond the maximum (and initial) rate
+     */
+    public RateLimiter(double permitsPerSecond) {
+        this(permitsPerSecond, Math.max(1, permitsPerSecond), permitsPerSecond / 10, 0.5, permitsPerSecond / 20);
+    }
+
+    /**
+     * <p>
+     * Creates a rate limiter.
+     * </p>
+     *
+     * @param maxRate          the maximum (and initial) rate in permits per
+     *                         second
+     * @param burst            the maximum number of permits that can be used at
+     *                         once
+     * @param minRate          the minimum rate in permits per second
+     * @param decreaseFactor   the factor the rate is multiplied with when a
+     *                         request is throttled, between 0 and 1
+     * @param additiveIncrease the increase of the rate per second of successful
+     *                         requests, in permits per second
+     */
+    public RateLimiter(double maxRate, double burst, double minRate, double decreaseFactor,
+            double additiveIncrease) {
+        if (maxRate <= 0 || minRate <= 0 || minRate > maxRate) {
+            throw new IllegalArgumentException("Rates must be positive and the minimum must not exceed the maximum");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Burst must be at least 1");
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("Decrease factor must be between 0 and 1");
+        }
+        this.maxRate = maxRate;
+        this.minRate = minRate;
+        this.burst = burst;
+        this.decreaseFactor = decreaseFactor;
+        this.additiveIncrease = additiveIncrease;
+        this.rate = maxRate;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+        this.lastDecrease = lastRefill - DECREASE_INTERVAL;
+    }
+
+    /**
+     * <p>
+     * Returns the rate limiter shared by all clients using the same API key,
+     * creating it with the given rate if it does not exist yet. The rate limiter
+     * is shared as long as it is referenced (e.g. by a client), after that the
+     * next call creates a new one.
+     * </p>
+     *
+     * @param apiKey           the API key
+     * @param permitsPerSecond the maximum rate
+     * @return the shared rate limiter
+     * @throws IllegalArgumentException if the rate limiter of the API key is
+     *                                  shared with a different maximum rate
+     */
+    public static RateLimiter shared(String apiKey, double permitsPerSecond) {
+        String key = String.valueOf(apiKey);
+        synchronized (SHARED) {
+            SHARED.values().removeIf(reference -> reference.get() == null);
+            WeakReference<RateLimiter> reference = SHARED.get(key);
+            RateLimiter rateLimiter = reference != null ? reference.get() : null;
+            if (rateLimiter == null) {
+                rateLimiter = new RateLimiter(permitsPerSecond);
+                SHARED.put(key, new WeakReference<>(rateLimiter));
+            } else if (rateLimiter.maxRate != permitsPerSecond) {
+                throw new IllegalArgumentException("Rate limiter of the API key is already shared with a rate of "
+                        + rateLimiter.maxRate + " permits per second");
+            }
+            return rateLimiter;
+        }
+    }
+
+    /**
+     * <p>
+     * Acquires a permit. The returned mono completes when the permit is
+     * available, if it is cancelled before, the permit is given back.
+     * </p>
+     *
+     * @return the mono completing when the permit is acquired
+     */
+    public Mono<Void> acquire() {
+        return Mono.defer(() -> {
+            long wait = reserve();
+            if (wait <= 0) {
+                return Mono.empty();
+            }
+            return Mono.delay(Duration.ofNanos(wait)).doOnCancel(this::release).then();
+        });
+    }
+
+    /**
+     * <p>
+     * Acquires a permit if one is available right now, without waiting.
+     * </p>
+     *
+     * @return true if the permit was acquired
+     */
+    public synchronized boolean tryAcquire() {
+        refill(System.nanoTime());
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * <p>
+     * Reports a successful request, increasing the rate.
+     * </p>
+     */
+    public synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + additiveIncrease / rate);
+    }
+
+    /**
+     * <p>
+     * Reports a throttled request, decreasing the rate.
+     * </p>
+     *
+     * @param retryAfter the value of the Retry-After header, or null if it was not
+     *                   present
+     */
+    public synchronized void onThrottled(Duration retryAfter) {
+        long now = System.nanoTime();
+        refill(now);
+        if (now - lastDecrease >= DECREASE_INTERVAL) {
+            rate = Math.max(minRate, rate * decreaseFactor);
+            lastDecrease = now;
+        }
+        if (retryAfter != null && !retryAfter.isNegative()) {
+            // pushes the permits handed out from now on behind the Retry-After period
+            tokens = Math.min(tokens, 0) - retryAfter.toNanos() / NANOS_PER_SECOND * rate;
+        }
+    }
+
+    /**
+     * <p>
+     * Returns the current rate.
+     * </p>
+     *
+     * @return the rate in permits per second
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * <p>
+     * Returns the number of permits available right now. A negative value means
+     * the number of requests waiting for a permit.
+     * </p>
+     *
+     * @return the number of available permits
+     */
+    public synchronized double getAvailablePermits() {
+        refill(System.nanoTime());
+        return tokens;
+    }
+
+    private synchronized long reserve() {
+        refill(System.nanoTime());
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-tokens / rate * NANOS_PER_SECOND);
+    }
+
+    private synchronized void release() {
+        tokens = Math.min(burst, tokens + 1);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefill) / NANOS_PER_SECOND * rate);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.net.ssl.SSLException;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * {@link HttpEngine} based on Spring WebClient and Reactor Netty. The multipart
+ * request bodies are written directly into the (pooled) buffers of the
+ * connection by a {@link MultipartEncoder}, and the response bodies are not
+ * copied from the Netty buffers, they are passed to the clients in the data
+ * buffers.
+ *
+ * @author laszlo.toth
+ */
+final class ReactorHttpEngine implements HttpEngine {
+
+    private final WebClient webClient;
+    private final int maxInMemorySize;
+    private final MultipartEncoder multipartEncoder = new MultipartEncoder();
+
+    ReactorHttpEngine(ClientConfig config, Map<String, String> defaultHeaders,
+            Http2StreamStatistics streamStatistics) {
+        WebClient.Builder webClientBuilder = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(createHttpClient(config, streamStatistics)))
+                .baseUrl(config.endpoint());
+        defaultHeaders.forEach(webClientBuilder::defaultHeader);
+        if (config.metrics() != null) {
+            webClientBuilder.filter(MetricsFilter.INSTANCE);
+        }
+        this.webClient = webClientBuilder.build();
+        Integer maxSize = config.maxInMemorySize();
+        this.maxInMemorySize = maxSize != null ? maxSize : CarmenCloudClient.DEFAULT_MAX_IN_MEMORY_SIZE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Mono<Response> exchange(Request request) {
+        WebClient.RequestBodySpec spec = webClient.method(HttpMethod.valueOf(request.method())).uri(request.path())
+                .headers(headers -> request.headers().forEach(headers::set));
+        WebClient.RequestHeadersSpec<?> headersSpec = spec;
+        List<Part> parts = request.multipart();
+        if (parts != null) {
+            // written into the buffers of the connection
+            headersSpec = spec.header(HttpHeaders.CONTENT_TYPE, multipartEncoder.contentType()).body(
+                    (message, context) -> message.writeWith(multipartEncoder.encode(parts, message.bufferFactory())));
+        }
+        return headersSpec.exchangeToMono(response -> {
+            int statusCode = response.statusCode().value();
+            Function<String, String> headers = response.headers().asHttpHeaders()::getFirst;
+            return DataBufferUtils.join(response.body(BodyExtractors.toDataBuffers()), maxInMemorySize)
+                    .map(body -> new Response(statusCode, headers, body))
+                    .defaultIfEmpty(new Response(statusCode, headers, (byte[]) null));
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release).doOnDiscard(Response.class, Response::release);
+    }
+
+    /**
+     * Creates the HTTP client based on the connection settings of the
+     * configuration.
+     */
+    private static HttpClient createHttpClient(ClientConfig config, Http2StreamStatistics streamStatistics) {
+        ConnectionPool pool = config.connectionPool();
+        HttpProtocol httpProtocol = config.protocol();
+        Long maxConcurrentStreams = config.http2MaxConcurrentStreams();
+        if (maxConcurrentStreams != null && (httpProtocol == HttpProtocol.H2 || httpProtocol == HttpProtocol.H2C)) {
+            if (pool != null) {
+                throw new IllegalArgumentException(
+                        "The HTTP/2 stream limit of a shared connection pool must be set on the pool");
+            }
+            // the streams are limited by the connection pool, so the client gets its own
+            pool = ConnectionPool.builder().http2MaxConcurrentStreams(maxConcurrentStreams).build();
+        }
+        HttpClient httpClient;
+        if (pool == null) {
+            httpClient = HttpClient.create();
+        } else {
+            httpClient = HttpClient.create(pool.connectionProvider());
+            if (pool.loopResources() != null) {
+                httpClient = httpClient.runOn(pool.loopResources());
+            }
+        }
+        httpClient = httpClient.followRedirect(true);
+
+        Boolean compress = config.compression();
+        if (compress == null || compress) {
+            httpClient = httpClient.compress(true);
+        }
+
+        Long timeout = config.responseTimeout();
+        if (timeout != null) {
+            httpClient = httpClient.responseTimeout(Duration.ofMillis(timeout));
+        }
+
+        Long connectTimeout = config.connectTimeout();
+        if (connectTimeout != null) {
+            httpClient = httpClient.option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                    (int) Math.min(connectTimeout, Integer.MAX_VALUE));
+        }
+        // the handlers are added for every request and removed when the connection is released to the pool
+        Long writeTimeout = config.writeTimeout();
+        if (writeTimeout != null) {
+            httpClient = httpClient.doOnRequest((request, connection) -> connection.addHandlerLast(
+                    "carmenWriteTimeout", new WriteTimeoutHandler(writeTimeout, TimeUnit.MILLISECONDS)));
+        }
+        Long readTimeout = config.readTimeout();
+        if (readTimeout != null) {
+            // started after the request has been sent, so a slow upload is not a read timeout
+            httpClient = httpClient.doAfterRequest((request, connection) -> connection.addHandlerLast(
+                    "carmenReadTimeout", new ReadTimeoutHandler(readTimeout, TimeUnit.MILLISECONDS)));
+        }
+
+        if (httpProtocol == HttpProtocol.H2 || httpProtocol == HttpProtocol.H2C) {
+            if (httpProtocol == HttpProtocol.H2) {
+                Long cacheSize = config.sslSessionCacheSize();
+                Long sessionTimeout = config.sslSessionTimeout();
+                Http2SslContextSpec sslContextSpec = Http2SslContextSpec.forClient().configure(sslContextBuilder -> {
+                    if (OpenSsl.isAvailable() && SslProvider.isAlpnSupported(SslProvider.OPENSSL)) {
+                        sslContextBuilder.sslProvider(SslProvider.OPENSSL);
+                    }
+                    if (cacheSize != null) {
+                        sslContextBuilder.sessionCacheSize(cacheSize);
+                    }
+                    if (sessionTimeout != null) {
+                        sslContextBuilder.sessionTimeout(sessionTimeout);
+                    }
+                });
+                SslContext sslContext;
+                try {
+                    sslContext = sslContextSpec.sslContext();
+                } catch (SSLException e) {
+                    throw new IllegalStateException(e);
+                }
+                httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure(spec -> {
+                    reactor.netty.tcp.SslProvider.Builder ssl = spec.sslContext(sslContext);
+                    if (connectTimeout != null) {
+                        ssl.handshakeTimeoutMillis(connectTimeout);
+                    }
+                });
+            } else {
+                httpClient = httpClient.protocol(HttpProtocol.H2C);
+            }
+
+            if (streamStatistics != null) {
+                httpClient = httpClient
+                        .doOnRequest((request, connection) -> streamStatistics.streamOpened(connection.channel()));
+            }
+        }
+        return httpClient;
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Options of a single search, overriding the headers the client sends by
+ * default.
+ * <p>
+ * The flags configured on the client builder (e.g. disabling image resizing)
+ * are sent as headers with every request. Different combinations of them can be
+ * used on one shared client with {@link AbstractCarmenCloudClient#withOptions(RequestOptions)},
+ * or by putting the options into the Reactor context of a search under the
+ * {@code RequestOptions.class} key, instead of building a client (with its own
+ * connections) for every combination. Options that are not set keep the value
+ * of the client.
+ * </p>
+ * <p>
+ * The options can also set the end-to-end timeout of the searches (see
+ * {@link Deadline}) and their priority (see {@link RequestScheduler}).
+ * </p>
+ * <p>
+ * Request options are immutable and can be shared.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public final class RequestOptions {
+
+    private final Map<String, String> headers;
+    private final Duration timeout;
+    private final RequestScheduler.Priority priority;
+
+    private RequestOptions(RequestOptionsBuilder builder) {
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(builder.headers));
+        this.timeout = builder.timeout;
+        this.priority = builder.priority;
+    }
+
+    /**
+     * <p>
+     * Creates a request options builder.
+     * </p>
+     *
+     * @return the builder
+     */
+    public static RequestOptionsBuilder builder() {
+        return new RequestOptionsBuilder();
+    }
+
+    /**
+     * <p>
+     * Returns the headers overridden by the options.
+     * </p>
+     *
+     * @return the headers
+     */
+    public Map<String, String> headers() {
+        return headers;
+    }
+
+    /**
+     * <p>
+     * Returns the end-to-end timeout of the searches.
+     * </p>
+     *
+     * @return the timeout, or null to use the timeout of the client
+     */
+    public Duration timeout() {
+        return timeout;
+    }
+
+    /**
+     * <p>
+     * Returns the priority of the searches.
+     * </p>
+     *
+     * @return the priority, or null for the default priority
+     */
+    public RequestScheduler.Priority priority() {
+        return priority;
+    }
+
+    /**
+     * <p>
+     * Returns a copy of a request with the headers of the options. The request
+     * itself is not modified, as it may be sent by several attempts at the same
+     * time.
+     * </p>
+     *
+     * @param request the request
+     * @return the request with the headers
+     */
+    HttpEngine.Request applyTo(HttpEngine.Request request) {
+        HttpEngine.Request copy = request.copy();
+        headers.forEach(copy::header);
+        return copy;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof RequestOptions && headers.equals(((RequestOptions) obj).headers)
+                && Objects.equals(timeout, ((RequestOptions) obj).timeout)
+                && priority == ((RequestOptions) obj).priority;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return Objects.hash(headers, timeout, priority);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "RequestOptions" + headers + (timeout != null ? "[timeout=" + timeout + "]" : "")
+                + (priority != null ? "[priority=" + priority + "]" : "");
+    }
+
+    /**
+     * Builder for {@link RequestOptions}.
+     */
+    public static class RequestOptionsBuilder {
+
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private Duration timeout;
+        private RequestScheduler.Priority priority;
+
+        /**
+         * Default constructor.
+         */
+        public RequestOptionsBuilder() {
+        }
+
+        /**
+         * <p>
+         * Sets whether image resizing is disabled.
+         * </p>
+         *
+         * @param disableImageResizing if image resizing is disabled
+         * @return the builder
+         */
+        public RequestOptionsBuilder disableImageResizing(boolean disableImageResizing) {
+            return header("X-Disable-Image-Resizing", String.valueOf(disableImageResizing));
+        }
+
+        /**
+         * <p>
+         * Sets whether wide range analysis is enabled.
+         * </p>
+         *
+         * @param enableWideRangeAnalysis if wide range analysis is enabled
+         * @return the builder
+         */
+        public RequestOptionsBuilder enableWideRangeAnalysis(boolean enableWideRangeAnalysis) {
+            return header("X-Enable-Wide-Range-Analysis", String.valueOf(enableWideRangeAnalysis));
+        }
+
+        /**
+         * <p>
+         * Sets whether call statistics are disabled. Used by the Vehicle API only.
+         * </p>
+         *
+         * @param disableCallStatistics if call statistics are disabled
+         * @return the builder
+         */
+        public RequestOptionsBuilder disableCallStatistics(boolean disableCallStatistics) {
+            return header("X-Disable-Call-Statistics", String.valueOf(disableCallStatistics));
+        }
+
+        /**
+         * <p>
+         * Sets whether checksum check is disabled. Used by the Transportation
+         * &amp; Cargo API only.
+         * </p>
+         *
+         * @param disableChecksumCheck if checksum check is disabled
+         * @return the builder
+         */
+        public RequestOptionsBuilder disableChecksumCheck(boolean disableChecksumCheck) {
+            return header("X-Disable-Checksum-Check", String.valueOf(disableChecksumCheck));
+        }
+
+        /**
+         * <p>
+         * Sets whether the full US ACCR code is enabled. Used by the
+         * Transportation &amp; Cargo API only.
+         * </p>
+         *
+         * @param enableFullUsAccrCode if the full US ACCR code is enabled
+         * @return the builder
+         */
+        public RequestOptionsBuilder enableFullUsAccrCode(boolean enableFullUsAccrCode) {
+            return header("X-Enable-Full-Us-Accr-Code", String.valueOf(enableFullUsAccrCode));
+        }
+
+        /**
+         * <p>
+         * Sets whether the ISO code is disabled. Used by the Transportation &amp;
+         * Cargo API only.
+         * </p>
+         *
+         * @param disableIsoCode if the ISO code is disabled
+         * @return the builder
+         */
+        public RequestOptionsBuilder disableIsoCode(boolean disableIsoCode) {
+            return header("X-Disable-Iso-Code", String.valueOf(disableIsoCode));
+        }
+
+        /**
+         * <p>
+         * Sets a header, overriding the header of the client with the same name.
+         * </p>
+         *
+         * @param name  the name of the header
+         * @param value the value of the header
+         * @return the builder
+         */
+        public RequestOptionsBuilder header(String name, String value) {
+            if (name == null || value == null) {
+                throw new IllegalArgumentException("Name and value must not be null");
+            }
+            headers.put(name, value);
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the end-to-end timeout of the searches, overriding the request
+         * timeout of the client. A deadline in the context of a search still
+         * applies if it is earlier.
+         * </p>
+         *
+         * @param timeout the timeout, or null to use the timeout of the client
+         * @return the builder
+         */
+        public RequestOptionsBuilder timeout(Duration timeout) {
+            if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+                throw new IllegalArgumentException("Timeout must be positive");
+            }
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the priority of the searches, used if the client has a
+         * {@link RequestScheduler}.
+         * </p>
+         *
+         * @param priority the priority, or null for the default priority
+         * @return the builder
+         */
+        public RequestOptionsBuilder priority(RequestScheduler.Priority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Builds the request options.
+         * </p>
+         *
+         * @return the request options
+         */
+        public RequestOptions build() {
+            return new RequestOptions(this);
+        }
+    }
+}
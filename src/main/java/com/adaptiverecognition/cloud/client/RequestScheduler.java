@@ -0,0 +1,384 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Scheduler of the attempts of the searches by their priority.
+ * <p>
+ * The scheduler limits the number of the attempts in flight. Attempts above the
+ * limit wait in the queue of their priority, and when an attempt finishes, the
+ * next one is taken from the queues by weighted fair queuing: while several
+ * priorities are waiting, they get the free slots in proportion to their
+ * weights, so lower priorities are slowed down but not starved. A number of the
+ * slots is reserved for {@link Priority#HIGH}, and the number of the attempts
+ * in flight can be capped per priority, so bulk traffic uses the spare capacity
+ * without delaying real-time traffic.
+ * </p>
+ * <p>
+ * The priority of a search is set by its {@link RequestOptions}, searches
+ * without one are {@link Priority#NORMAL}. An attempt cancelled while it is
+ * waiting (e.g. by its {@link Deadline}) leaves the queue. The maximum
+ * concurrency should not exceed the number of the connections (or HTTP/2
+ * streams) of the connection pool, so the reserved slots are connections that
+ * are free for high priority attempts. A scheduler can be shared by the clients
+ * using the same connection pool.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class RequestScheduler {
+
+    /**
+     * The priority of a search.
+     */
+    public enum Priority {
+        /**
+         * Real-time traffic, e.g. live cameras. Can use the reserved slots.
+         */
+        HIGH,
+        /**
+         * The default priority.
+         */
+        NORMAL,
+        /**
+         * Bulk traffic, e.g. backfills and re-processing jobs.
+         */
+        LOW
+    }
+
+    private final int maxConcurrency;
+    private final int reserved;
+    private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+
+    private int inFlight;
+    private double virtualTime;
+
+    private RequestScheduler(RequestSchedulerBuilder builder) {
+        this.maxConcurrency = builder.maxConcurrency;
+        this.reserved = builder.reserved;
+        for (Priority priority : Priority.values()) {
+            Integer limit = builder.limits.get(priority);
+            lanes.put(priority, new Lane(builder.weights.get(priority), limit != null ? limit : Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * <p>
+     * Creates a request scheduler builder.
+     * </p>
+     *
+     * @return the builder
+     */
+    public static RequestSchedulerBuilder builder() {
+        return new RequestSchedulerBuilder();
+    }
+
+    /**
+     * <p>
+     * Runs a call when a slot is free for its priority. The slot is held until
+     * the call terminates or is cancelled.
+     * </p>
+     *
+     * @param <T>      the type of the result
+     * @param priority the priority, null for {@link Priority#NORMAL}
+     * @param call     the call
+     * @return the scheduled call
+     */
+    public <T> Mono<T> schedule(Priority priority, Mono<T> call) {
+        if (call == null) {
+            throw new IllegalArgumentException("Call must not be null");
+        }
+        Lane lane = lanes.get(priority != null ? priority : Priority.NORMAL);
+        return Mono.<Permit>create(sink -> enqueue(lane, sink))
+                .flatMap(permit -> call.doFinally(signal -> permit.release()));
+    }
+
+    /**
+     * <p>
+     * Returns the number of the attempts in flight.
+     * </p>
+     *
+     * @return the number of the attempts in flight
+     */
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * <p>
+     * Returns the number of the attempts waiting with a priority.
+     * </p>
+     *
+     * @param priority the priority
+     * @return the number of the waiting attempts
+     */
+    public synchronized int queued(Priority priority) {
+        return lanes.get(priority).waiting.size();
+    }
+
+    private void enqueue(Lane lane, MonoSink<Permit> sink) {
+        Waiter waiter = new Waiter(lane, sink);
+        sink.onCancel(() -> cancel(waiter));
+        Permit permit = null;
+        synchronized (this) {
+            if (waiter.cancelled) {
+                return;
+            }
+            if (lane.waiting.isEmpty() && canRun(lane)) {
+                permit = start(lane);
+                waiter.permit = permit;
+            } else {
+                if (lane.waiting.isEmpty()) {
+                    // an idle lane does not save up a share for later
+                    lane.virtualTime = Math.max(lane.virtualTime, virtualTime);
+                }
+                lane.waiting.add(waiter);
+            }
+        }
+        if (permit != null) {
+            sink.success(permit);
+        }
+    }
+
+    private void cancel(Waiter waiter) {
+        Permit permit;
+        synchronized (this) {
+            permit = waiter.permit;
+            if (permit == null) {
+                waiter.cancelled = true;
+                waiter.lane.waiting.remove(waiter);
+                return;
+            }
+        }
+        // the permit may have been handed out after the cancellation
+        permit.release();
+    }
+
+    private void release(Lane lane) {
+        List<Waiter> started = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            lane.inFlight--;
+            Waiter next;
+            while ((next = next()) != null) {
+                next.lane.waiting.poll();
+                next.permit = start(next.lane);
+                started.add(next);
+            }
+        }
+        started.forEach(waiter -> waiter.sink.success(waiter.permit));
+    }
+
+    /**
+     * Returns the first waiter of the runnable lane with the smallest virtual
+     * time, or null if no waiter can run.
+     */
+    private Waiter next() {
+        Lane selected = null;
+        for (Lane lane : lanes.values()) {
+            if (!lane.waiting.isEmpty() && canRun(lane)
+                    && (selected == null || lane.virtualTime < selected.virtualTime)) {
+                selected = lane;
+            }
+        }
+        return selected != null ? selected.waiting.peek() : null;
+    }
+
+    private boolean canRun(Lane lane) {
+        int limit = lane == lanes.get(Priority.HIGH) ? maxConcurrency : maxConcurrency - reserved;
+        return inFlight < limit && lane.inFlight < lane.limit;
+    }
+
+    private Permit start(Lane lane) {
+        inFlight++;
+        lane.inFlight++;
+        lane.virtualTime = Math.max(lane.virtualTime, virtualTime);
+        virtualTime = lane.virtualTime;
+        lane.virtualTime += 1 / lane.weight;
+        return new Permit(lane);
+    }
+
+    /**
+     * The queue and the counters of a priority.
+     */
+    private static final class Lane {
+
+        private final double weight;
+        private final int limit;
+        private final ArrayDeque<Waiter> waiting = new ArrayDeque<>();
+        private int inFlight;
+        private double virtualTime;
+
+        Lane(double weight, int limit) {
+            this.weight = weight;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * An attempt waiting for a slot.
+     */
+    private static final class Waiter {
+
+        private final Lane lane;
+        private final MonoSink<Permit> sink;
+        private Permit permit;
+        private boolean cancelled;
+
+        Waiter(Lane lane, MonoSink<Permit> sink) {
+            this.lane = lane;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * A slot held by an attempt, released only once.
+     */
+    private final class Permit {
+
+        private final Lane lane;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                RequestScheduler.this.release(lane);
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link RequestScheduler}.
+     */
+    public static class RequestSchedulerBuilder {
+
+        private int maxConcurrency = 100;
+        private int reserved;
+        private final Map<Priority, Double> weights = new EnumMap<>(Map.of(Priority.HIGH, 16d, Priority.NORMAL,
+                4d, Priority.LOW, 1d));
+        private final Map<Priority, Integer> limits = new EnumMap<>(Priority.class);
+
+        /**
+         * Default constructor.
+         */
+        public RequestSchedulerBuilder() {
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of the attempts in flight. Default is 100.
+         * </p>
+         *
+         * @param maxConcurrency the maximum number of the attempts in flight
+         * @return the builder
+         */
+        public RequestSchedulerBuilder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the number of the slots only {@link Priority#HIGH} attempts can
+         * use. Default is 0.
+         * </p>
+         *
+         * @param reserved the number of the reserved slots
+         * @return the builder
+         */
+        public RequestSchedulerBuilder reserved(int reserved) {
+            this.reserved = reserved;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the weight of a priority in the fair queuing. Defaults are 16 for
+         * {@link Priority#HIGH}, 4 for {@link Priority#NORMAL} and 1 for
+         * {@link Priority#LOW}.
+         * </p>
+         *
+         * @param priority the priority
+         * @param weight   the weight
+         * @return the builder
+         */
+        public RequestSchedulerBuilder weight(Priority priority, double weight) {
+            if (priority == null) {
+                throw new IllegalArgumentException("Priority must not be null");
+            }
+            weights.put(priority, weight);
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of the attempts of a priority in flight.
+         * Default is no limit besides the maximum concurrency.
+         * </p>
+         *
+         * @param priority       the priority
+         * @param maxConcurrency the maximum number of the attempts in flight
+         * @return the builder
+         */
+        public RequestSchedulerBuilder maxConcurrency(Priority priority, int maxConcurrency) {
+            if (priority == null) {
+                throw new IllegalArgumentException("Priority must not be null");
+            }
+            limits.put(priority, maxConcurrency);
+            return this;
+        }
+
+        /**
+         * <p>
+         * Builds the request scheduler.
+         * </p>
+         *
+         * @return the request scheduler
+         */
+        public RequestScheduler build() {
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("Max concurrency must be positive");
+            }
+            if (reserved < 0 || reserved >= maxConcurrency) {
+                throw new IllegalArgumentException("Reserved slots must be between 0 and the max concurrency");
+            }
+            if (weights.values().stream().anyMatch(weight -> !(weight > 0))) {
+                throw new IllegalArgumentException("Weights must be positive");
+            }
+            if (limits.values().stream().anyMatch(limit -> limit < 1)) {
+                throw new IllegalArgumentException("Max concurrency must be positive");
+            }
+            return new RequestScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Cache of the search results, keyed by the digest of the images and the
+ * parameters of the request.
+ * <p>
+ * The results are kept in a size-bounded in-memory cache with W-TinyLFU
+ * eviction (Caffeine, an optional dependency), and optionally in a directory as
+ * JSON files, so they survive restarts. Concurrent searches of the same key
+ * share a single in-flight call. Only successful, non-empty results are
+ * cached. Requests with a single-use image payload (an input stream) are not
+ * cached.
+ * </p>
+ * <p>
+ * The cached results are shared by the callers, they must not be modified. A
+ * cache can be shared by several clients: the keys of the Vehicle API and the
+ * Transportation &amp; Cargo API are different, and the keys of the clients
+ * also cover their endpoints and default headers, including the API key and
+ * flags like image resizing, so clients with different settings or accounts do
+ * not get each other's results.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class ResultCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultCache.class);
+
+    private final Cache<String, Object> memory;
+    private final DiskTier disk;
+    private final ConcurrentMap<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
+
+    private ResultCache(ResultCacheBuilder builder) {
+        Caffeine<Object, Object> caffeine = Caffeine.newBuilder().maximumSize(builder.maximumSize);
+        if (builder.expireAfterWrite != null) {
+            caffeine.expireAfterWrite(builder.expireAfterWrite);
+        }
+        this.memory = caffeine.build();
+        this.disk = builder.directory != null
+                ? new DiskTier(builder.directory, builder.maximumDiskSize, builder.expireAfterWrite)
+                : null;
+    }
+
+    /**
+     * <p>
+     * Creates a result cache builder.
+     * </p>
+     *
+     * @return the builder
+     */
+    public static ResultCacheBuilder builder() {
+        return new ResultCacheBuilder();
+    }
+
+    /**
+     * <p>
+     * Returns the cached result of a key, or calls the API if it is not cached.
+     * If a call of the same key is in flight, its result is shared.
+     * </p>
+     *
+     * @param <T>  the type of the result
+     * @param key  the key
+     * @param type the type of the result
+     * @param call the call returning the result
+     * @return the result
+     */
+    public <T> Mono<T> get(String key, Class<T> type, Mono<T> call) {
+        if (key == null || type == null || call == null) {
+            throw new IllegalArgumentException("Key, type and call must not be null");
+        }
+        return Mono.defer(() -> {
+            Object cached = memory.getIfPresent(key);
+            if (type.isInstance(cached)) {
+                return Mono.just(type.cast(cached));
+            }
+            return inFlight.computeIfAbsent(key, k -> load(k, type, call)).cast(type);
+        });
+    }
+
+    /**
+     * <p>
+     * Removes all results from the cache.
+     * </p>
+     */
+    public void invalidateAll() {
+        memory.invalidateAll();
+        if (disk != null) {
+            disk.clear();
+        }
+    }
+
+    /**
+     * <p>
+     * Returns the approximate number of the results in memory.
+     * </p>
+     *
+     * @return the number of the results
+     */
+    public long estimatedSize() {
+        return memory.estimatedSize();
+    }
+
+    private <T> Mono<T> load(String key, Class<T> type, Mono<T> call) {
+        AtomicReference<Mono<T>> self = new AtomicReference<>();
+        Mono<T> fromCall = call.flatMap(result -> disk != null ? disk.write(key, result).thenReturn(result)
+                : Mono.just(result));
+        Mono<T> loaded = (disk != null ? disk.read(key, type).switchIfEmpty(fromCall) : fromCall)
+                .doOnNext(result -> memory.put(key, result))
+                .doFinally(signal -> inFlight.remove(key, self.get())).share();
+        self.set(loaded);
+        return loaded;
+    }
+
+    /**
+     * <p>
+     * Calculates the cache key of a search from the digests of its images and
+     * its parameters.
+     * </p>
+     *
+     * @param api        the API
+     * @param parameters the parameters of the request
+     * @param images     the images of the request
+     * @return the key, or empty if an image is not repeatable
+     */
+    static Mono<String> key(String api, List<?> parameters, List<ImagePayload> images) {
+        if (images.stream().anyMatch(image -> !image.isRepeatable())) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(images).concatMap(ImagePayload::digest).collectList().map(digests -> {
+            MessageDigest digest = ImagePayload.sha256();
+            digest.update(api.getBytes(StandardCharsets.UTF_8));
+            for (Object parameter : parameters) {
+                digest.update((byte) 0);
+                if (parameter != null) {
+                    digest.update(String.valueOf(parameter).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    digest.update((byte) 1);
+                }
+            }
+            for (byte[] image : digests) {
+                digest.update((byte) 0);
+                digest.update(image);
+            }
+            return api + "-" + HexFormat.of().formatHex(digest.digest());
+        });
+    }
+
+    /**
+     * The results stored in a directory as JSON files named by their keys.
+     */
+    private static final class DiskTier {
+
+        private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).findAndAddModules().build();
+
+        private final Path directory;
+        private final long maximumSize;
+        private final Duration expireAfterWrite;
+        private final AtomicLong size = new AtomicLong();
+
+        DiskTier(Path directory, long maximumSize, Duration expireAfterWrite) {
+            this.directory = directory;
+            this.maximumSize = maximumSize;
+            this.expireAfterWrite = expireAfterWrite;
+            try {
+                Files.createDirectories(directory);
+                try (Stream<Path> files = files()) {
+                    size.set(files.mapToLong(DiskTier::sizeOf).sum());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        <T> Mono<T> read(String key, Class<T> type) {
+            return Mono.fromCallable(() -> {
+                Path file = directory.resolve(key + ".json");
+                try {
+                    if (expireAfterWrite != null && Files.getLastModifiedTime(file).toMillis()
+                            + expireAfterWrite.toMillis() < System.currentTimeMillis()) {
+                        delete(file);
+                        return null;
+                    }
+                    return OBJECT_MAPPER.readValue(file.toFile(), type);
+                } catch (NoSuchFileException e) {
+                    return null;
+                } catch (IOException e) {
+                    LOGGER.warn("Cached result {} can not be read", file, e);
+                    delete(file);
+                    return null;
+                }
+            }).subscribeOn(Schedulers.boundedElastic());
+        }
+
+        Mono<Void> write(String key, Object result) {
+            return Mono.<Void>fromRunnable(() -> {
+                Path file = directory.resolve(key + ".json");
+                try {
+                    Path temporary = Files.createTempFile(directory, key, ".tmp");
+                    OBJECT_MAPPER.writeValue(temporary.toFile(), result);
+                    long written = Files.size(temporary);
+                    long replaced = sizeOf(file);
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    if (size.addAndGet(written - replaced) > maximumSize) {
+                        trim();
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Result {} can not be cached", file, e);
+                }
+            }).subscribeOn(Schedulers.boundedElastic());
+        }
+
+        void clear() {
+            try (Stream<Path> files = files()) {
+                files.forEach(this::delete);
+            } catch (IOException e) {
+                LOGGER.warn("Result cache {} can not be cleared", directory, e);
+            }
+        }
+
+        /**
+         * Deletes the least recently written files until the size of the
+         * directory is below 90% of the maximum.
+         */
+        private synchronized void trim() throws IOException {
+            List<Path> files;
+            try (Stream<Path> stream = files()) {
+                files = stream.sorted(Comparator.comparing(DiskTier::lastModified)).collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                if (size.get() <= maximumSize * 0.9) {
+                    break;
+                }
+                delete(file);
+            }
+        }
+
+        private Stream<Path> files() throws IOException {
+            return Files.list(directory).filter(file -> file.getFileName().toString().endsWith(".json"));
+        }
+
+        private void delete(Path file) {
+            long deleted = sizeOf(file);
+            try {
+                if (Files.deleteIfExists(file)) {
+                    size.addAndGet(-deleted);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Cached result {} can not be deleted", file, e);
+            }
+        }
+
+        private static long sizeOf(Path file) {
+            try {
+                return Files.size(file);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        private static FileTime lastModified(Path file) {
+            try {
+                return Files.getLastModifiedTime(file);
+            } catch (IOException e) {
+                return FileTime.fromMillis(0);
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link ResultCache}.
+     */
+    public static class ResultCacheBuilder {
+
+        private long maximumSize = 10_000;
+        private Duration expireAfterWrite;
+        private Path directory;
+        private long maximumDiskSize = 256L * 1024 * 1024;
+
+        /**
+         * Default constructor.
+         */
+        public ResultCacheBuilder() {
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of results kept in memory. Default is 10000.
+         * </p>
+         *
+         * @param maximumSize the maximum number of results
+         * @return the builder
+         */
+        public ResultCacheBuilder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets how long a result is kept after it has been cached. Default is no
+         * expiration.
+         * </p>
+         *
+         * @param expireAfterWrite the time to live of the results
+         * @return the builder
+         */
+        public ResultCacheBuilder expireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the directory the results are also stored in. Default is none, the
+         * results are kept only in memory.
+         * </p>
+         *
+         * @param directory the directory
+         * @return the builder
+         */
+        public ResultCacheBuilder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum total size of the results stored in the directory in
+         * bytes. The least recently written results are deleted above it. Default
+         * is 256 MB.
+         * </p>
+         *
+         * @param maximumDiskSize the maximum size in bytes
+         * @return the builder
+         */
+        public ResultCacheBuilder maximumDiskSize(long maximumDiskSize) {
+            this.maximumDiskSize = maximumDiskSize;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Builds the result cache.
+         * </p>
+         *
+         * @return the result cache
+         */
+        public ResultCache build() {
+            if (maximumSize < 0 || maximumDiskSize < 0) {
+                throw new IllegalArgumentException("Maximum sizes must not be negative");
+            }
+            if (expireAfterWrite != null && (expireAfterWrite.isNegative() || expireAfterWrite.isZero())) {
+                throw new IllegalArgumentException("Expiration must be positive");
+            }
+            return new ResultCache(this);
+        }
+    }
+}
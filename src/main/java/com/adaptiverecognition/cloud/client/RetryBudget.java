@@ -0,0 +1,116 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.time.Duration;
+
+/**
+ * Limits the number of retries to a percentage of the requests sent in a
+ * sliding time window, so that retries can not multiply the load when the API
+ * degrades.
+ * <p>
+ * A small number of retries per second is always allowed, so that retries also
+ * work under low traffic.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final int minRetriesPerSecond;
+    private final long[] seconds;
+    private final long[] requests;
+    private final long[] retries;
+
+    /**
+     * <p>
+     * Creates a retry budget.
+     * </p>
+     *
+     * @param ratio               the maximum number of retries as a ratio of the
+     *                            requests (e.g. 0.2 for 20%)
+     * @param minRetriesPerSecond the number of retries per second allowed
+     *                            regardless of the ratio
+     * @param window              the length of the sliding window, at least 1
+     *                            second
+     */
+    public RetryBudget(double ratio, int minRetriesPerSecond, Duration window) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("Ratio must not be negative");
+        }
+        if (minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("Minimum retries per second must not be negative");
+        }
+        int windowSeconds = (int) Math.max(1, window.getSeconds());
+        this.ratio = ratio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.seconds = new long[windowSeconds];
+        this.requests = new long[windowSeconds];
+        this.retries = new long[windowSeconds];
+    }
+
+    /**
+     * <p>
+     * Records a request.
+     * </p>
+     */
+    public synchronized void onRequest() {
+        requests[bucket(currentSecond())]++;
+    }
+
+    /**
+     * <p>
+     * Tries to withdraw a retry from the budget.
+     * </p>
+     *
+     * @return if the retry is allowed
+     */
+    public synchronized boolean tryRetry() {
+        long now = currentSecond();
+        long requestCount = 0;
+        long retryCount = 0;
+        for (int i = 0; i < seconds.length; i++) {
+            if (now - seconds[i] < seconds.length) {
+                requestCount += requests[i];
+                retryCount += retries[i];
+            }
+        }
+        if (retryCount >= ratio * requestCount + (double) minRetriesPerSecond * seconds.length) {
+            return false;
+        }
+        retries[bucket(now)]++;
+        return true;
+    }
+
+    private int bucket(long second) {
+        int index = (int) Math.floorMod(second, (long) seconds.length);
+        if (seconds[index] != second) {
+            seconds[index] = second;
+            requests[index] = 0;
+            retries[index] = 0;
+        }
+        return index;
+    }
+
+    private static long currentSecond() {
+        return System.nanoTime() / 1_000_000_000L;
+    }
+}
@@ -0,0 +1,354 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+import org.reactivestreams.Publisher;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Retry policy with exponential backoff, jitter, a client-wide retry budget and
+ * support of the Retry-After header.
+ * <p>
+ * A failed attempt is retried if
+ * </p>
+ * <ul>
+ * <li>the error matches the filter (by default
+ * {@link WebClientRequestException}, an {@link IOException} of the HTTP engine
+ * and {@link CarmenCloudException} with status code 429 or 5xx),</li>
+ * <li>the maximum number of retries has not been reached,</li>
+ * <li>the retry budget allows it,</li>
+ * <li>if a time budget is set, enough of it remains after the delay,</li>
+ * <li>and, if the search has a {@link Deadline}, enough time remains until it
+ * after the delay.</li>
+ * </ul>
+ * <p>
+ * The delay is taken from the Retry-After header of the failed response if
+ * present, otherwise it grows exponentially from the base delay up to the
+ * maximum delay, randomized according to the jitter. If the call is not
+ * retried, it fails with the error of the last attempt.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+public class RetryPolicy extends Retry {
+
+    /**
+     * The randomization of the backoff delays.
+     */
+    public enum Jitter {
+        /**
+         * No randomization, the delays are base * 2^n.
+         */
+        NONE,
+        /**
+         * The delays are uniformly distributed between 0 and base * 2^n.
+         */
+        FULL,
+        /**
+         * The delays are uniformly distributed between the base delay and three
+         * times the previous delay.
+         */
+        DECORRELATED
+    }
+
+    private final int maxRetries;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final Jitter jitter;
+    private final RetryBudget budget;
+    private final Duration timeBudget;
+    private final Duration minAttemptTime;
+    private final Predicate<Throwable> filter;
+
+    private RetryPolicy(RetryPolicyBuilder builder) {
+        this.maxRetries = builder.maxRetries;
+        this.baseDelay = builder.baseDelay;
+        this.maxDelay = builder.maxDelay;
+        this.jitter = builder.jitter;
+        this.budget = builder.budget;
+        this.timeBudget = builder.timeBudget;
+        this.minAttemptTime = builder.minAttemptTime;
+        this.filter = builder.filter;
+    }
+
+    /**
+     * <p>
+     * Creates a retry policy builder.
+     * </p>
+     *
+     * @return the builder
+     */
+    public static RetryPolicyBuilder builder() {
+        return new RetryPolicyBuilder();
+    }
+
+    /**
+     * <p>
+     * Returns if an error is transient: a {@link WebClientRequestException}, an
+     * {@link IOException} of the HTTP engine (e.g. a connection or a timeout
+     * error, but not a JSON parsing error) or a {@link CarmenCloudException} with
+     * status code 429 or 5xx, except the rejections of an open circuit (see
+     * {@link CircuitBreaker}) and the expired deadlines (see {@link Deadline}).
+     * </p>
+     *
+     * @param throwable the error
+     * @return if the error is transient
+     */
+    public static boolean isTransient(Throwable throwable) {
+        if (throwable instanceof WebClientRequestException
+                || (throwable instanceof IOException && !(throwable instanceof JsonProcessingException))) {
+            return true;
+        }
+        if (throwable instanceof CarmenCloudException && !CircuitBreaker.isRejection(throwable)
+                && !Deadline.isExceeded(throwable)) {
+            int statusCode = ((CarmenCloudException) throwable).getStatusCode();
+            return statusCode == 429 || statusCode >= 500;
+        }
+        return false;
+    }
+
+    /**
+     * <p>
+     * Returns the retry budget.
+     * </p>
+     *
+     * @return the retry budget, or null if the retries are not budgeted
+     */
+    public RetryBudget budget() {
+        return budget;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Publisher<?> generateCompanion(Flux<RetrySignal> retrySignals) {
+        if (budget != null) {
+            budget.onRequest();
+        }
+        long[] previousDelay = { baseDelay.toNanos() };
+        return Flux.deferContextual(contextView -> {
+            CallState call = contextView.getOrDefault(CallState.class, null);
+            Deadline deadline = contextView.getOrDefault(Deadline.class, null);
+            return retrySignals.concatMap(signal -> {
+                Throwable failure = signal.failure();
+                if (signal.totalRetries() >= maxRetries || !filter.test(failure)) {
+                    return Mono.error(failure);
+                }
+                Duration retryAfter = null;
+                if (call != null) {
+                    retryAfter = call.retryAfter();
+                    call.retryAfter(null);
+                }
+                Duration delay = retryAfter != null ? retryAfter : backoff(signal.totalRetries(), previousDelay);
+                if (timeBudget != null && call != null
+                        && call.elapsed().plus(delay).plus(minAttemptTime).compareTo(timeBudget) > 0) {
+                    return Mono.error(failure);
+                }
+                if (deadline != null && deadline.remaining().compareTo(delay.plus(minAttemptTime)) <= 0) {
+                    // the retry could not complete before the deadline of the search
+                    return Mono.error(failure);
+                }
+                if (budget != null && !budget.tryRetry()) {
+                    return Mono.error(failure);
+                }
+                return delay.isZero() ? Mono.just(signal.totalRetries())
+                        : Mono.delay(delay).thenReturn(signal.totalRetries());
+            });
+        });
+    }
+
+    private Duration backoff(long retry, long[] previousDelay) {
+        long base = baseDelay.toNanos();
+        long max = maxDelay.toNanos();
+        long exponential = max;
+        if (retry < Long.SIZE - 1) {
+            long shifted = base << retry;
+            if (shifted >= 0 && (shifted >> retry) == base) {
+                exponential = Math.min(max, shifted);
+            }
+        }
+        long delay;
+        switch (jitter) {
+        case FULL:
+            delay = ThreadLocalRandom.current().nextLong(exponential + 1);
+            break;
+        case DECORRELATED:
+            long upper = Math.min(max, Math.max(base, previousDelay[0]) * 3);
+            delay = upper > base ? ThreadLocalRandom.current().nextLong(base, upper + 1) : base;
+            previousDelay[0] = delay;
+            break;
+        default:
+            delay = exponential;
+            break;
+        }
+        return Duration.ofNanos(delay);
+    }
+
+    /**
+     * Builder for {@link RetryPolicy}.
+     */
+    public static class RetryPolicyBuilder {
+
+        private int maxRetries = 3;
+        private Duration baseDelay = Duration.ofMillis(200);
+        private Duration maxDelay = Duration.ofSeconds(10);
+        private Jitter jitter = Jitter.FULL;
+        private RetryBudget budget = new RetryBudget(0.2, 10, Duration.ofSeconds(10));
+        private Duration timeBudget;
+        private Duration minAttemptTime = Duration.ZERO;
+        private Predicate<Throwable> filter = RetryPolicy::isTransient;
+
+        /**
+         * Default constructor.
+         */
+        public RetryPolicyBuilder() {
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of retries. Default is 3.
+         * </p>
+         *
+         * @param maxRetries the maximum number of retries
+         * @return the builder
+         */
+        public RetryPolicyBuilder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the delay of the first retry. Default is 200 milliseconds.
+         * </p>
+         *
+         * @param baseDelay the base delay
+         * @return the builder
+         */
+        public RetryPolicyBuilder baseDelay(Duration baseDelay) {
+            this.baseDelay = baseDelay;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum backoff delay. Default is 10 seconds. Does not limit
+         * the delays requested by Retry-After headers.
+         * </p>
+         *
+         * @param maxDelay the maximum delay
+         * @return the builder
+         */
+        public RetryPolicyBuilder maxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the jitter. Default is {@link Jitter#FULL}.
+         * </p>
+         *
+         * @param jitter the jitter
+         * @return the builder
+         */
+        public RetryPolicyBuilder jitter(Jitter jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the retry budget. Default allows retries for 20% of the requests
+         * of the last 10 seconds plus 10 retries per second. Null disables the
+         * budget.
+         * </p>
+         *
+         * @param budget the retry budget
+         * @return the builder
+         */
+        public RetryPolicyBuilder budget(RetryBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the total time budget of a call including all attempts and delays.
+         * A retry is skipped if less than the minimum attempt time would remain
+         * of the budget after its delay. Default is null (no time budget).
+         * </p>
+         *
+         * @param timeBudget     the time budget
+         * @param minAttemptTime the minimum time an attempt needs
+         * @return the builder
+         */
+        public RetryPolicyBuilder timeBudget(Duration timeBudget, Duration minAttemptTime) {
+            this.timeBudget = timeBudget;
+            this.minAttemptTime = minAttemptTime != null ? minAttemptTime : Duration.ZERO;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Sets the filter of the retryable errors. Default is
+         * {@link RetryPolicy#isTransient(Throwable)}.
+         * </p>
+         *
+         * @param filter the filter
+         * @return the builder
+         */
+        public RetryPolicyBuilder filter(Predicate<Throwable> filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Builds the retry policy.
+         * </p>
+         *
+         * @return the retry policy
+         */
+        public RetryPolicy build() {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("Maximum number of retries must not be negative");
+            }
+            if (baseDelay == null || maxDelay == null || baseDelay.isNegative()
+                    || maxDelay.compareTo(baseDelay) < 0) {
+                throw new IllegalArgumentException(
+                        "Delays must not be negative and the base delay must not exceed the maximum delay");
+            }
+            return new RetryPolicy(this);
+        }
+    }
+}
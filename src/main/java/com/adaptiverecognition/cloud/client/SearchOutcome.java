@@ -0,0 +1,110 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import com.adaptiverecognition.cloud.Request;
+import com.adaptiverecognition.cloud.Result;
+
+/**
+ * The outcome of a single request of a batch search: either its result or the
+ * error it failed with. A failed request does not stop the rest of the batch.
+ *
+ * @author laszlo.toth
+ * @param <R> the request type
+ * @param <A> the result type
+ */
+public final class SearchOutcome<R extends Request<?>, A extends Result> {
+
+    private final long index;
+    private final R request;
+    private final A result;
+    private final Throwable error;
+
+    private SearchOutcome(long index, R request, A result, Throwable error) {
+        this.index = index;
+        this.request = request;
+        this.result = result;
+        this.error = error;
+    }
+
+    static <R extends Request<?>, A extends Result> SearchOutcome<R, A> success(long index, R request, A result) {
+        return new SearchOutcome<>(index, request, result, null);
+    }
+
+    static <R extends Request<?>, A extends Result> SearchOutcome<R, A> failure(long index, R request,
+            Throwable error) {
+        return new SearchOutcome<>(index, request, null, error);
+    }
+
+    /**
+     * <p>
+     * Returns the position of the request in the batch, starting from 0.
+     * </p>
+     *
+     * @return the index of the request
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * <p>
+     * Returns the request.
+     * </p>
+     *
+     * @return the request
+     */
+    public R getRequest() {
+        return request;
+    }
+
+    /**
+     * <p>
+     * Returns the result.
+     * </p>
+     *
+     * @return the result, or null if the request failed
+     */
+    public A getResult() {
+        return result;
+    }
+
+    /**
+     * <p>
+     * Returns the error.
+     * </p>
+     *
+     * @return the error, or null if the request succeeded
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * <p>
+     * Returns if the request succeeded.
+     * </p>
+     *
+     * @return if the request succeeded
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
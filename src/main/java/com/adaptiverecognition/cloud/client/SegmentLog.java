@@ -0,0 +1,321 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records stored in memory-mapped segment files.
+ * <p>
+ * Every record has a global offset: the base offset of its segment (which is
+ * also the name of the segment file) plus its position in the segment. A
+ * record is stored as its length, its CRC32 checksum, its id and its payload. A
+ * zero length marks the end of the written part of a segment, so a torn record
+ * at the end of the last segment is detected by its checksum and overwritten.
+ * </p>
+ *
+ * @author laszlo.toth
+ */
+final class SegmentLog implements Closeable {
+
+    private static final String SUFFIX = ".segment";
+    private static final int HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean sync;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Set<String> ids = new HashSet<>();
+    private Segment active;
+
+    /**
+     * <p>
+     * Opens the log in a directory, creating it if it does not exist.
+     * </p>
+     *
+     * @param directory   the directory
+     * @param segmentSize the size of the segment files
+     * @param sync        if every append should be forced to the disk
+     * @throws IOException if the log can not be opened
+     */
+    SegmentLog(Path directory, int segmentSize, boolean sync) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            Segment segment = new Segment(base, file, (int) Files.size(file));
+            segments.put(base, segment);
+            ids.addAll(segment.ids);
+        }
+        active = segments.isEmpty() ? roll(0, segmentSize) : segments.lastEntry().getValue();
+    }
+
+    /**
+     * <p>
+     * Appends a record unless a record with the same id is in the log.
+     * </p>
+     *
+     * @param id      the id of the record
+     * @param payload the payload of the record
+     * @return if the record has been appended
+     * @throws IOException if the record can not be written
+     */
+    synchronized boolean append(String id, byte[] payload) throws IOException {
+        if (active == null) {
+            throw new IOException("Log is closed");
+        }
+        if (ids.contains(id)) {
+            return false;
+        }
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        int length = 2 + idBytes.length + payload.length;
+        if (active.position + HEADER_SIZE + length + 4 > active.buffer.capacity()) {
+            active = roll(active.base + active.position, Math.max(segmentSize, HEADER_SIZE + length + 4));
+        }
+        CRC32 crc = new CRC32();
+        crc.update((byte) (idBytes.length >>> 8));
+        crc.update((byte) idBytes.length);
+        crc.update(idBytes);
+        crc.update(payload);
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.position;
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putShort(position + HEADER_SIZE, (short) idBytes.length);
+        buffer.put(position + HEADER_SIZE + 2, idBytes);
+        buffer.put(position + HEADER_SIZE + 2 + idBytes.length, payload);
+        buffer.putInt(position + HEADER_SIZE + length, 0);
+        // the length is written last, so a partially written record is never read
+        buffer.putInt(position, length);
+        if (sync) {
+            buffer.force();
+        }
+        active.position += HEADER_SIZE + length;
+        active.ids.add(id);
+        ids.add(id);
+        return true;
+    }
+
+    /**
+     * <p>
+     * Reads the records starting at an offset.
+     * </p>
+     *
+     * @param offset the offset of the first record
+     * @param max    the maximum number of records
+     * @return the records
+     */
+    synchronized List<Record> read(long offset, int max) {
+        List<Record> records = new ArrayList<>();
+        Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+        long next = offset;
+        while (entry != null && records.size() < max) {
+            Segment segment = entry.getValue();
+            int position = (int) Math.max(0, next - segment.base);
+            while (position < segment.position && records.size() < max) {
+                Record record = segment.read(position);
+                records.add(record);
+                position = (int) (record.next - segment.base);
+            }
+            if (records.size() < max) {
+                entry = segments.higherEntry(segment.base);
+                next = entry != null ? entry.getKey() : next;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * <p>
+     * Returns the offset after the last record.
+     * </p>
+     *
+     * @return the end offset
+     */
+    synchronized long end() {
+        return active != null ? active.base + active.position : 0;
+    }
+
+    /**
+     * <p>
+     * Deletes the segments all records of which are before an offset. The active
+     * segment is kept.
+     * </p>
+     *
+     * @param offset the offset
+     * @throws IOException if a segment can not be deleted
+     */
+    synchronized void truncate(long offset) throws IOException {
+        while (segments.size() > 1) {
+            Segment first = segments.firstEntry().getValue();
+            if (first == active || first.base + first.position > offset) {
+                break;
+            }
+            segments.remove(first.base);
+            ids.removeAll(first.ids);
+            first.close();
+            Files.deleteIfExists(first.file);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        active = null;
+    }
+
+    private Segment roll(long base, int size) throws IOException {
+        Segment empty = segments.remove(base);
+        if (empty != null) {
+            // an empty segment too small for the record is mapped again with the larger size
+            empty.close();
+        }
+        Path file = directory.resolve(String.format("%020d%s", base, SUFFIX));
+        Segment segment = new Segment(base, file, size);
+        segments.put(base, segment);
+        return segment;
+    }
+
+    /**
+     * A record of the log.
+     */
+    static final class Record {
+
+        private final long offset;
+        private final long next;
+        private final String id;
+        private final byte[] payload;
+
+        private Record(long offset, long next, String id, byte[] payload) {
+            this.offset = offset;
+            this.next = next;
+            this.id = id;
+            this.payload = payload;
+        }
+
+        long offset() {
+            return offset;
+        }
+
+        long next() {
+            return next;
+        }
+
+        String id() {
+            return id;
+        }
+
+        byte[] payload() {
+            return payload;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file.
+     */
+    private static final class Segment {
+
+        private final long base;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final List<String> ids = new ArrayList<>();
+        private int position;
+
+        Segment(long base, Path file, int size) throws IOException {
+            this.base = base;
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            while (true) {
+                Record record = tryRead(position);
+                if (record == null) {
+                    break;
+                }
+                ids.add(record.id);
+                position = (int) (record.next - base);
+            }
+        }
+
+        Record read(int position) {
+            Record record = tryRead(position);
+            if (record == null) {
+                throw new IllegalStateException("Corrupt record at " + (base + position) + " in " + file);
+            }
+            return record;
+        }
+
+        private Record tryRead(int position) {
+            if (position + HEADER_SIZE + 2 > buffer.capacity()) {
+                return null;
+            }
+            int length = buffer.getInt(position);
+            if (length < 2 || position + HEADER_SIZE + length > buffer.capacity()) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            buffer.get(position + HEADER_SIZE, body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                return null;
+            }
+            int idLength = ((body[0] & 0xff) << 8) | (body[1] & 0xff);
+            if (idLength > length - 2) {
+                return null;
+            }
+            String id = new String(body, 2, idLength, StandardCharsets.UTF_8);
+            byte[] payload = new byte[length - 2 - idLength];
+            System.arraycopy(body, 2 + idLength, payload, 0, payload.length);
+            return new Record(base + position, base + position + HEADER_SIZE + length, id, payload);
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -19,27 +19,20 @@
  */
 package com.adaptiverecognition.cloud.client;
 
-import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.MediaType;
-import org.springframework.http.client.MultipartBodyBuilder;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.WebClient;
+import java.util.stream.Collectors;
 
 import com.adaptiverecognition.cloud.CarmenCloudException;
 import com.adaptiverecognition.cloud.transport.TransportRequest;
 import com.adaptiverecognition.cloud.transport.TransportResult;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
-import reactor.util.context.Context;
+import reactor.netty.http.HttpProtocol;
 import reactor.util.retry.RetryBackoffSpec;
 
 /**
@@ -47,31 +40,25 @@ import reactor.util.retry.RetryBackoffSpec;
  *
  * @author laszlo.toth
  */
-public class TransportClient implements CarmenCloudClient<TransportRequest, TransportResult> {
-
-    private static final Logger LOGGER = LoggerFactory.getLogger(TransportClient.class);
-
-    private final RetryBackoffSpec retry;
-    private final WebClient webClient;
-
-    private TransportClient(TransportClientBuilder builder) {
-        this.retry = builder.retry.get();
+public class TransportClient extends AbstractCarmenCloudClient<TransportRequest, TransportResult> {
 
-        HttpClient httpClient = HttpClient.create().followRedirect(true);
+    private final Integer imagesPerCall;
 
-        Long responseTimeout = builder.responseTimeout.get();
-        if (responseTimeout != null) {
-            httpClient = httpClient.responseTimeout(Duration.ofMillis(responseTimeout));
-        }
+    private TransportClient(ClientConfig config) {
+        super(config, defaultHeaders(config));
+        this.imagesPerCall = config.imagesPerCall();
+    }
 
-        this.webClient = WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient))
-                .baseUrl(builder.endpoint.get()).defaultHeader("Content-Type", MediaType.MULTIPART_FORM_DATA_VALUE)
-                .defaultHeader("X-Api-Key", builder.apiKey())
-                .defaultHeader("X-Disable-Image-Resizing", String.valueOf(builder.disableImageResizing()))
-                .defaultHeader("X-Enable-Wide-Range-Analysis", String.valueOf(builder.enableWideRangeAnalysis()))
-                .defaultHeader("X-Disable-Checksum-Check", String.valueOf(builder.disableChecksumCheck()))
-                .defaultHeader("X-Enable-Full-Us-Accr-Code", String.valueOf(builder.enableFullUsAccrCode()))
-                .defaultHeader("X-Disable-Iso-Code", String.valueOf(builder.disableIsoCode())).build();
+    private static Map<String, String> defaultHeaders(ClientConfig config) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "multipart/form-data");
+        headers.put("X-Api-Key", config.apiKey());
+        headers.put("X-Disable-Image-Resizing", String.valueOf(config.disableImageResizing()));
+        headers.put("X-Enable-Wide-Range-Analysis", String.valueOf(config.enableWideRangeAnalysis()));
+        headers.put("X-Disable-Checksum-Check", String.valueOf(config.disableChecksumCheck()));
+        headers.put("X-Enable-Full-Us-Accr-Code", String.valueOf(config.enableFullUsAccrCode()));
+        headers.put("X-Disable-Iso-Code", String.valueOf(config.disableIsoCode()));
+        return headers;
     }
 
     /**
@@ -85,7 +72,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
      */
     @Override
     public TransportResult search(TransportRequest request) throws CarmenCloudException {
-        return search(request, null);
+        return search(request, (Map<?, ?>) null);
     }
 
     /**
@@ -100,35 +87,133 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
      */
     @Override
     public TransportResult search(TransportRequest request, Map<?, ?> context) throws CarmenCloudException {
-        try {
-            return searchAsync(request, context).get();
-        } catch (InterruptedException | ExecutionException e) {
-            // Restore interrupted state...
-            Thread.currentThread().interrupt();
-            throw new CarmenCloudException(500, e.getMessage(), e);
-        }
+        return search(request, imagePayloads(request), context);
+    }
+
+    /**
+     * <p>
+     * Searches for ocr codes in images that are streamed from the given payloads
+     * instead of the images of the request.
+     * </p>
+     *
+     * @param request the request
+     * @param images  the image payloads
+     * @return the result
+     * @throws CarmenCloudException if any error occurs
+     */
+    public TransportResult search(TransportRequest request, List<ImagePayload> images) throws CarmenCloudException {
+        return search(request, images, null);
+    }
+
+    /**
+     * <p>
+     * Searches for ocr codes in images that are streamed from the given payloads
+     * instead of the images of the request, with a retry context.
+     * </p>
+     *
+     * @param request the request
+     * @param images  the image payloads
+     * @param context the retry context
+     * @return the result
+     * @throws CarmenCloudException if any error occurs
+     */
+    public TransportResult search(TransportRequest request, List<ImagePayload> images, Map<?, ?> context)
+            throws CarmenCloudException {
+        return block(execute(request, images, context));
     }
 
     /** {@inheritDoc} */
     @Override
     public CompletableFuture<TransportResult> searchAsync(TransportRequest request) throws CarmenCloudException {
-        return searchAsync(request, null);
+        return searchAsync(request, (Map<?, ?>) null);
     }
 
     /** {@inheritDoc} */
     @Override
     public CompletableFuture<TransportResult> searchAsync(TransportRequest request, Map<?, ?> context)
             throws CarmenCloudException {
+        return searchAsync(request, imagePayloads(request), context);
+    }
+
+    /**
+     * <p>
+     * Asynchronously searches for ocr codes in images that are streamed from the
+     * given payloads instead of the images of the request.
+     * </p>
+     *
+     * @param request the request
+     * @param images  the image payloads
+     * @return the result
+     */
+    public CompletableFuture<TransportResult> searchAsync(TransportRequest request, List<ImagePayload> images) {
+        return searchAsync(request, images, null);
+    }
 
-        MultipartBodyBuilder builder = new MultipartBodyBuilder();
-        if (request.getInputImages() != null) {
-            request.getInputImages()
-                    .forEach(inputImage -> builder
-                            .part("image", new ByteArrayResource(inputImage.getImageSource()),
-                                    MediaType.parseMediaType("image/" + inputImage.getImageMimeType()))
-                            .filename(inputImage.getImageName()));
+    /**
+     * <p>
+     * Asynchronously searches for ocr codes in images that are streamed from the
+     * given payloads instead of the images of the request, with a retry context.
+     * </p>
+     *
+     * @param request the request
+     * @param images  the image payloads
+     * @param context the retry context
+     * @return the result
+     */
+    public CompletableFuture<TransportResult> searchAsync(TransportRequest request, List<ImagePayload> images,
+            Map<?, ?> context) {
+        return searchMono(request, images, context).toFuture();
+    }
+
+    /**
+     * <p>
+     * Reactive search for ocr codes in images that are streamed from the given
+     * payloads instead of the images of the request.
+     * </p>
+     *
+     * @param request the request
+     * @param images  the image payloads
+     * @return the result
+     */
+    public Mono<TransportResult> searchMono(TransportRequest request, List<ImagePayload> images) {
+        return searchMono(request, images, null);
+    }
+
+    /**
+     * <p>
+     * Reactive search for ocr codes in images that are streamed from the given
+     * payloads instead of the images of the request, with a retry context.
+     * </p>
+     *
+     * @param request the request
+     * @param images  the image payloads
+     * @param context the retry context
+     * @return the result
+     */
+    public Mono<TransportResult> searchMono(TransportRequest request, List<ImagePayload> images,
+            Map<?, ?> context) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request must not be null");
         }
+        return Mono.defer(() -> execute(request, images, context));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected String api() {
+        return "transport";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Mono<TransportResult> execute(TransportRequest request, Map<?, ?> context) {
+        return execute(request, imagePayloads(request), context);
+    }
 
+    private Mono<TransportResult> execute(TransportRequest request, List<ImagePayload> images, Map<?, ?> context) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request must not be null");
+        }
         String type;
         if (request.getType() == null || request.getType().length() == 0) {
             type = "";
@@ -138,35 +223,56 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
             type = request.getType();
         }
 
-        Mono<TransportResult> result = webClient.post().uri(type).accept(MediaType.APPLICATION_JSON)
-                .body(BodyInserters.fromMultipartData(builder.build())).retrieve()
-                .onStatus(statusCode -> statusCode.is4xxClientError(),
-                        response -> response.bodyToMono(String.class).flatMap(error -> {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("4xx error occured: {} ({})", error, response.statusCode());
-                            }
-                            return Mono.error(new CarmenCloudException(response.statusCode().value(), error));
-                        }))
-                .onStatus(statusCode -> statusCode.is5xxServerError(),
-                        response -> response.bodyToMono(String.class).flatMap(error -> {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("5xx error occured: {} ({})", error, response.statusCode());
-                            }
-                            return Mono.error(new CarmenCloudException(response.statusCode().value(), error));
-                        }))
-                .toEntity(TransportResult.class).flatMap(entity -> {
-                    TransportResult vr = entity.getBody();
-                    if (vr != null) {
-                        vr.setRequestId(entity.getHeaders().getFirst("x-amzn-requestid"));
-                    }
-                    return Mono.justOrEmpty(vr);
-                });
-
-        if (retry != null) {
-            result = result.retryWhen(context != null ? retry.withRetryContext(Context.of(context)) : retry);
-        }
-
-        return result.toFuture();
+        Mono<TransportResult> result;
+        if (imagePreprocessor != null && images != null) {
+            result = Flux.fromIterable(images).flatMapSequential(image -> imagePreprocessor.process(image, null))
+                    .map(ImagePreprocessor.Processed::image).collectList()
+                    .flatMap(processed -> fanOut(type, processed, context));
+        } else {
+            result = fanOut(type, images, context);
+        }
+
+        return cached(TransportResult.class, List.of(type), images != null ? images : List.of(), result);
+    }
+
+    /**
+     * Sends the images in slices of at most {@link #imagesPerCall} images in
+     * parallel, and merges the results of the slices into a
+     * {@link MergedTransportResult}.
+     */
+    private Mono<TransportResult> fanOut(String type, List<ImagePayload> images, Map<?, ?> context) {
+        if (imagesPerCall == null || images == null || images.size() <= imagesPerCall) {
+            return send(type, images, context);
+        }
+        List<List<ImagePayload>> slices = new ArrayList<>();
+        for (int i = 0; i < images.size(); i += imagesPerCall) {
+            slices.add(images.subList(i, Math.min(i + imagesPerCall, images.size())));
+        }
+        return Flux.fromIterable(slices).flatMapSequential(slice -> send(type, slice, context), slices.size())
+                .collectList().flatMap(results -> results.isEmpty() ? Mono.empty()
+                        : Mono.just(MergedTransportResult.merge(results)));
+    }
+
+    private Mono<TransportResult> send(String type, List<ImagePayload> images, Map<?, ?> context) {
+        HttpEngine.Request httpRequest = HttpEngine.Request.post(type).header("Accept", "application/json");
+        if (images != null) {
+            images.forEach(image -> httpRequest.part("image", image));
+        }
+
+        Mono<TransportResult> result = exchange(httpRequest).flatMap(response -> decode(response,
+                TransportResult.class).doOnNext(tr -> tr.setRequestId(response.header("x-amzn-requestid"))));
+
+        boolean repeatable = httpRequest.isRepeatable();
+        return withRetry(attempt(type, type.startsWith("/") ? type.substring(1) : type, repeatable, result),
+                context, repeatable);
+    }
+
+    private static List<ImagePayload> imagePayloads(TransportRequest request) {
+        if (request == null || request.getInputImages() == null) {
+            return null;
+        }
+        return request.getInputImages().stream().map(inputImage -> ImagePayload.of(inputImage.getImageSource(),
+                inputImage.getImageName(), inputImage.getImageMimeType())).collect(Collectors.toList());
     }
 
     /**
@@ -174,21 +280,10 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
      */
     public static class TransportClientBuilder extends CarmenCloudClientBuilder<TransportRequest, TransportResult> {
 
-        private final ThreadLocal<Boolean> disableImageResizing = new ThreadLocal<>();
-        private final ThreadLocal<Boolean> enableWideRangeAnalysis = new ThreadLocal<>();
-        private final ThreadLocal<Boolean> disableChecksumCheck = new ThreadLocal<>();
-        private final ThreadLocal<Boolean> enableFullUsAccrCode = new ThreadLocal<>();
-        private final ThreadLocal<Boolean> disableIsoCode = new ThreadLocal<>();
-
         /**
          * Default constructor.
          */
         public TransportClientBuilder() {
-            this.disableImageResizing.set(false);
-            this.enableWideRangeAnalysis.set(false);
-            this.disableChecksumCheck.set(false);
-            this.enableFullUsAccrCode.set(false);
-            this.disableIsoCode.set(false);
         }
 
         /** {@inheritDoc} */
@@ -215,6 +310,144 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
             return (TransportClientBuilder) super.retry(retry);
         }
 
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder connectionPool(ConnectionPool connectionPool) {
+            return (TransportClientBuilder) super.connectionPool(connectionPool);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder protocol(HttpProtocol protocol) {
+            return (TransportClientBuilder) super.protocol(protocol);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder http2MaxConcurrentStreams(Long http2MaxConcurrentStreams) {
+            return (TransportClientBuilder) super.http2MaxConcurrentStreams(http2MaxConcurrentStreams);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder sslSessionCacheSize(Long sslSessionCacheSize) {
+            return (TransportClientBuilder) super.sslSessionCacheSize(sslSessionCacheSize);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder sslSessionTimeout(Long sslSessionTimeout) {
+            return (TransportClientBuilder) super.sslSessionTimeout(sslSessionTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder rateLimit(Double rateLimit) {
+            return (TransportClientBuilder) super.rateLimit(rateLimit);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder retryPolicy(RetryPolicy retryPolicy) {
+            return (TransportClientBuilder) super.retryPolicy(retryPolicy);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder circuitBreaker(CircuitBreaker circuitBreaker) {
+            return (TransportClientBuilder) super.circuitBreaker(circuitBreaker);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+            return (TransportClientBuilder) super.hedgingPolicy(hedgingPolicy);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder metrics(ClientMetrics metrics) {
+            return (TransportClientBuilder) super.metrics(metrics);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder blockingMode(BlockingMode blockingMode) {
+            return (TransportClientBuilder) super.blockingMode(blockingMode);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder httpEngine(HttpEngine.Factory httpEngine) {
+            return (TransportClientBuilder) super.httpEngine(httpEngine);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder resultCache(ResultCache resultCache) {
+            return (TransportClientBuilder) super.resultCache(resultCache);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder imagePreprocessor(ImagePreprocessor imagePreprocessor) {
+            return (TransportClientBuilder) super.imagePreprocessor(imagePreprocessor);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder compression(Boolean compression) {
+            return (TransportClientBuilder) super.compression(compression);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder maxInMemorySize(Integer maxInMemorySize) {
+            return (TransportClientBuilder) super.maxInMemorySize(maxInMemorySize);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder endpoints(List<String> endpoints) {
+            return (TransportClientBuilder) super.endpoints(endpoints);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder requestTimeout(Long requestTimeout) {
+            return (TransportClientBuilder) super.requestTimeout(requestTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder connectTimeout(Long connectTimeout) {
+            return (TransportClientBuilder) super.connectTimeout(connectTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder writeTimeout(Long writeTimeout) {
+            return (TransportClientBuilder) super.writeTimeout(writeTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder readTimeout(Long readTimeout) {
+            return (TransportClientBuilder) super.readTimeout(readTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder requestScheduler(RequestScheduler requestScheduler) {
+            return (TransportClientBuilder) super.requestScheduler(requestScheduler);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TransportClientBuilder config(ClientConfig config) {
+            return (TransportClientBuilder) super.config(config);
+        }
+
         /**
          * <p>
          * Sets if image resizing should be disabled or not.
@@ -224,7 +457,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return the builder
          */
         public TransportClientBuilder disableImageResizing(boolean disableImageResizing) {
-            this.disableImageResizing.set(disableImageResizing);
+            this.config.disableImageResizing(disableImageResizing);
             return this;
         }
 
@@ -236,7 +469,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return if image resizing is disabled or not
          */
         public boolean disableImageResizing() {
-            return this.disableImageResizing.get();
+            return this.config.disableImageResizing;
         }
 
         /**
@@ -248,7 +481,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return the builder
          */
         public TransportClientBuilder enableWideRangeAnalysis(boolean enableWideRangeAnalysis) {
-            this.enableWideRangeAnalysis.set(enableWideRangeAnalysis);
+            this.config.enableWideRangeAnalysis(enableWideRangeAnalysis);
             return this;
         }
 
@@ -260,7 +493,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return if wide range analysis is enabled or not
          */
         public boolean enableWideRangeAnalysis() {
-            return this.enableWideRangeAnalysis.get();
+            return this.config.enableWideRangeAnalysis;
         }
 
         /**
@@ -272,7 +505,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return the builder
          */
         public TransportClientBuilder disableChecksumCheck(boolean disableChecksumCheck) {
-            this.disableChecksumCheck.set(disableChecksumCheck);
+            this.config.disableChecksumCheck(disableChecksumCheck);
             return this;
         }
 
@@ -284,7 +517,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return if checksum check is disabled or not
          */
         public boolean disableChecksumCheck() {
-            return this.disableChecksumCheck.get();
+            return this.config.disableChecksumCheck;
         }
 
         /**
@@ -296,7 +529,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return the builder
          */
         public TransportClientBuilder enableFullUsAccrCode(boolean enableFullUsAccrCode) {
-            this.enableFullUsAccrCode.set(enableFullUsAccrCode);
+            this.config.enableFullUsAccrCode(enableFullUsAccrCode);
             return this;
         }
 
@@ -308,7 +541,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return if full US Accr Code is enabled or not
          */
         public boolean enableFullUsAccrCode() {
-            return this.enableFullUsAccrCode.get();
+            return this.config.enableFullUsAccrCode;
         }
 
         /**
@@ -320,7 +553,7 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return the builder
          */
         public TransportClientBuilder disableIsoCode(boolean disableIsoCode) {
-            this.disableIsoCode.set(disableIsoCode);
+            this.config.disableIsoCode(disableIsoCode);
             return this;
         }
 
@@ -332,13 +565,45 @@ public class TransportClient implements CarmenCloudClient<TransportRequest, Tran
          * @return if ISO code is disabled or not
          */
         public boolean disableIsoCode() {
-            return this.disableIsoCode.get();
+            return this.config.disableIsoCode;
+        }
+
+        /**
+         * <p>
+         * Sets the maximum number of images sent in one call. Requests with more
+         * images are split into slices sent in parallel, and the results of the
+         * slices are merged into a {@link MergedTransportResult}. A slice is
+         * retried on its own. Default is null, all images of a request are sent in
+         * one call.
+         * </p>
+         *
+         * @param imagesPerCall the maximum number of images in one call, 1 to
+         *                      send every image in its own call
+         * @return the builder
+         */
+        public TransportClientBuilder imagesPerCall(Integer imagesPerCall) {
+            if (imagesPerCall != null && imagesPerCall < 1) {
+                throw new IllegalArgumentException("Images per call must be positive");
+            }
+            this.config.imagesPerCall(imagesPerCall);
+            return this;
+        }
+
+        /**
+         * <p>
+         * Returns the maximum number of images sent in one call.
+         * </p>
+         *
+         * @return the maximum number of images in one call
+         */
+        public Integer imagesPerCall() {
+            return this.config.imagesPerCall;
         }
 
         /** {@inheritDoc} */
         @Override
         public TransportClient build() {
-            return new TransportClient(this);
+            return new TransportClient(this.config.build());
         }
     }
 
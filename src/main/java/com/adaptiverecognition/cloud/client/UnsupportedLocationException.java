@@ -0,0 +1,59 @@
+/**
+ * Cloud API Client Java reference implementation.
+
+ * License: Apache License 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * This file is part of the Adaptive Recognition Hungary Kft. 
+ * Vehicle API and Transportation&Cargo API Client Java reference implementation.
+ * 
+ * This software is free to use in either commercial or non-commercial applications.
+ * 
+ * This software is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * Adaptive Recognition Hungary Kft.
+ * H-1023 Budapest, Alkotas u. 41. Hungary
+ * Web: https://adaptiverecognition.com/contact-us/
+ * 
+ */
+package com.adaptiverecognition.cloud.client;
+
+/**
+ * Signals that a request was rejected without calling the API because its
+ * location is not among the locations supported by the Vehicle API (see
+ * {@link LocationIndex}). It is the cause of the
+ * {@link com.adaptiverecognition.cloud.CarmenCloudException} the search fails
+ * with.
+ *
+ * @author laszlo.toth
+ */
+public class UnsupportedLocationException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String location;
+
+    /**
+     * <p>
+     * Creates the exception.
+     * </p>
+     *
+     * @param location the location of the request
+     */
+    public UnsupportedLocationException(String location) {
+        super("Unsupported location: " + location, null, false, false);
+        this.location = location;
+    }
+
+    /**
+     * <p>
+     * Returns the location of the request.
+     * </p>
+     *
+     * @return the location
+     */
+    public String getLocation() {
+        return location;
+    }
+}
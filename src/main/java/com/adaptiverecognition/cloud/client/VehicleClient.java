@@ -20,21 +20,21 @@
 package com.adaptiverecognition.cloud.client;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.MediaType;
-import org.springframework.http.client.MultipartBodyBuilder;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.core.type.TypeReference;
 
 import com.adaptiverecognition.cloud.CarmenCloudException;
 import com.adaptiverecognition.cloud.vehicle.Locations;
@@ -44,8 +44,7 @@ import com.adaptiverecognition.cloud.vehicle.VehicleRequest.Service;
 import com.adaptiverecognition.cloud.vehicle.VehicleResult;
 
 import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
-import reactor.util.context.Context;
+import reactor.netty.http.HttpProtocol;
 import reactor.util.retry.RetryBackoffSpec;
 
 /**
@@ -53,30 +52,41 @@ import reactor.util.retry.RetryBackoffSpec;
  *
  * @author laszlo.toth
  */
-public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleResult> {
+public class VehicleClient extends AbstractCarmenCloudClient<VehicleRequest, VehicleResult> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(VehicleClient.class);
 
-    private final RetryBackoffSpec retry;
-    private final WebClient webClient;
+    private static final int MAX_CACHED_SERVICES = 64;
+
+    private static final ConcurrentMap<Collection<Service>, String> SERVICES = new ConcurrentHashMap<>();
 
-    private VehicleClient(VehicleClientBuilder builder) {
-        this.retry = builder.retry.get();
+    private static final TypeReference<List<Location>> LOCATIONS_TYPE = new TypeReference<>() {
+    };
 
-        HttpClient httpClient = HttpClient.create().followRedirect(true);
+    private final LocationsCache locationsCache;
+    private final boolean validateLocations;
 
-        Long responseTimeout = builder.responseTimeout.get();
-        if (responseTimeout != null) {
-            httpClient = httpClient.responseTimeout(Duration.ofMillis(responseTimeout));
+    private VehicleClient(ClientConfig config) {
+        super(config, defaultHeaders(config));
+
+        this.validateLocations = config.validateLocations();
+        Long locationsCacheTtl = config.locationsCacheTtl();
+        if (locationsCacheTtl == null && validateLocations) {
+            locationsCacheTtl = VehicleClientBuilder.DEFAULT_LOCATIONS_CACHE_TTL;
         }
+        this.locationsCache = locationsCacheTtl != null
+                ? new LocationsCache(Duration.ofMillis(locationsCacheTtl), previous -> loadLocations(previous, null))
+                : null;
+    }
 
-        this.webClient = WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient))
-                .baseUrl(builder.endpoint.get()).defaultHeader("Content-Type", MediaType.MULTIPART_FORM_DATA_VALUE)
-                .defaultHeader("X-Api-Key", builder.apiKey())
-                .defaultHeader("X-Disable-Call-Statistics", String.valueOf(builder.disableCallStatistics()))
-                .defaultHeader("X-Disable-Image-Resizing", String.valueOf(builder.disableImageResizing()))
-                .defaultHeader("X-Enable-Wide-Range-Analysis", String.valueOf(builder.enableWideRangeAnalysis()))
-                .build();
+    private static Map<String, String> defaultHeaders(ClientConfig config) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "multipart/form-data");
+        headers.put("X-Api-Key", config.apiKey());
+        headers.put("X-Disable-Call-Statistics", String.valueOf(config.disableCallStatistics()));
+        headers.put("X-Disable-Image-Resizing", String.valueOf(config.disableImageResizing()));
+        headers.put("X-Enable-Wide-Range-Analysis", String.valueOf(config.enableWideRangeAnalysis()));
+        return headers;
     }
 
     /**
@@ -101,18 +111,7 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
      * @throws CarmenCloudException if an error occurs
      */
     public Locations getLocations(Map<?, ?> context) throws CarmenCloudException {
-        try {
-            return getLocationsAsync(context).get();
-        } catch (InterruptedException | ExecutionException e) {
-            // Restore interrupted state...
-            Thread.currentThread().interrupt();
-            if (e.getCause() instanceof CarmenCloudException) {
-                throw (CarmenCloudException) e.getCause();
-            } else {
-                throw new CarmenCloudException(500, e.getMessage(), e);
-            }
-
-        }
+        return block(locations(context));
     }
 
     /**
@@ -128,31 +127,74 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
 
     /**
      * <p>
-     * Gets the available locations asynchronously with a retry context.
+     * Gets the available locations asynchronously with a retry context. If the
+     * locations cache is enabled, the cached locations are returned and the
+     * context is not used.
      * </p>
      *
      * @param context the retry context
      * @return the locations
      */
     public CompletableFuture<Locations> getLocationsAsync(Map<?, ?> context) {
-        ParameterizedTypeReference<List<Location>> ptr = new ParameterizedTypeReference<>() {
-        };
+        return locations(context).toFuture();
+    }
 
-        Mono<Locations> result = webClient.get().uri(uriBuilder -> uriBuilder.pathSegment("countries").build())
-                .accept(MediaType.APPLICATION_JSON).retrieve().onStatus(statusCode -> statusCode.is5xxServerError(),
-                        response -> response.bodyToMono(String.class).flatMap(error -> {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("5xx error occured: {} ({})", error, response.statusCode());
-                            }
-                            return Mono.error(new CarmenCloudException(response.statusCode().value(), error));
-                        }))
-                .bodyToMono(ptr).flatMap(locations -> Mono.just(new Locations(locations)));
+    private Mono<Locations> locations(Map<?, ?> context) {
+        if (locationsCache != null) {
+            return locationsCache.get().map(LocationsCache.Snapshot::locations);
+        }
+        return loadLocations(null, context).map(LocationsCache.Snapshot::locations);
+    }
 
-        if (retry != null) {
-            result = result.retryWhen(context != null ? retry.withRetryContext(Context.of(context)) : retry);
+    /**
+     * <p>
+     * Gets the lookup index of the available locations asynchronously. The index
+     * is built from the cached locations if the locations cache is enabled.
+     * </p>
+     *
+     * @return the location index
+     */
+    public CompletableFuture<LocationIndex> getLocationIndexAsync() {
+        if (locationsCache != null) {
+            return locationsCache.get().map(LocationsCache.Snapshot::index).toFuture();
         }
+        return loadLocations(null, null).map(LocationsCache.Snapshot::index).toFuture();
+    }
 
-        return result.toFuture();
+    private Mono<LocationsCache.Snapshot> loadLocations(LocationsCache.Snapshot previous, Map<?, ?> context) {
+        HttpEngine.Request request = HttpEngine.Request.get("/countries").header("Accept", "application/json")
+                .header("If-None-Match", previous != null ? previous.etag() : null);
+
+        Mono<LocationsCache.Snapshot> result = exchange(request).flatMap(response -> {
+            if (response.statusCode() == 304 && previous != null) {
+                response.release();
+                return Mono.just(previous.revalidated());
+            }
+            String etag = response.header("ETag");
+            return decode(response, LOCATIONS_TYPE).map(locations -> new LocationsCache.Snapshot(locations, etag));
+        });
+
+        return withRetry(result, context);
+    }
+
+    private Mono<Void> validateLocation(String location) {
+        if (!validateLocations || location == null) {
+            return Mono.empty();
+        }
+        return locationsCache.get().onErrorResume(throwable -> {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Locations are not available, skipping location validation", throwable);
+            }
+            return Mono.empty();
+        }).flatMap(snapshot -> {
+            LocationIndex index = snapshot.index();
+            if (index.isEmpty() || index.contains(location)) {
+                return Mono.empty();
+            }
+            UnsupportedLocationException cause = new UnsupportedLocationException(location);
+            return Mono.error(new CarmenCloudException(400,
+                    "{\"message\":\"" + cause.getMessage().replace("\"", "\\\"") + "\"}", cause));
+        });
     }
 
     /**
@@ -166,7 +208,7 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
      */
     @Override
     public VehicleResult search(VehicleRequest request) throws CarmenCloudException {
-        return search(request, null);
+        return search(request, (Map<?, ?>) null);
     }
 
     /**
@@ -182,53 +224,132 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
      */
     @Override
     public VehicleResult search(VehicleRequest request, Map<?, ?> context) throws CarmenCloudException {
-        try {
-            return searchAsync(request, context).get();
-        } catch (InterruptedException | ExecutionException e) {
-            // Restore interrupted state...
-            Thread.currentThread().interrupt();
-            if (e.getCause() instanceof CarmenCloudException) {
-                throw (CarmenCloudException) e.getCause();
-            } else {
-                throw new CarmenCloudException(500, e.getMessage(), e);
-            }
+        return search(request, imagePayload(request), context);
+    }
 
-        }
+    /**
+     * <p>
+     * Searches for vehicles (anpr, mmr, and adr informations) in an image that is
+     * streamed from the given payload instead of the image of the request.
+     * </p>
+     *
+     * @param request the request
+     * @param image   the image payload
+     * @return the result
+     * @throws CarmenCloudException if an error occurs
+     */
+    public VehicleResult search(VehicleRequest request, ImagePayload image) throws CarmenCloudException {
+        return search(request, image, null);
+    }
+
+    /**
+     * <p>
+     * Searches for vehicles (anpr, mmr, and adr informations) in an image that is
+     * streamed from the given payload instead of the image of the request, with a
+     * retry context.
+     * </p>
+     *
+     * @param request the request
+     * @param image   the image payload
+     * @param context the retry context
+     * @return the result
+     * @throws CarmenCloudException if an error occurs
+     */
+    public VehicleResult search(VehicleRequest request, ImagePayload image, Map<?, ?> context)
+            throws CarmenCloudException {
+        return block(execute(request, image, context));
     }
 
     /** {@inheritDoc} */
     @Override
     public CompletableFuture<VehicleResult> searchAsync(VehicleRequest request) {
-        return searchAsync(request, null);
+        return searchAsync(request, (Map<?, ?>) null);
     }
 
     /** {@inheritDoc} */
     @Override
     public CompletableFuture<VehicleResult> searchAsync(VehicleRequest request, Map<?, ?> context) {
+        return searchAsync(request, imagePayload(request), context);
+    }
+
+    /**
+     * <p>
+     * Asynchronously searches for vehicles in an image that is streamed from the
+     * given payload instead of the image of the request.
+     * </p>
+     *
+     * @param request the request
+     * @param image   the image payload
+     * @return the result
+     */
+    public CompletableFuture<VehicleResult> searchAsync(VehicleRequest request, ImagePayload image) {
+        return searchAsync(request, image, null);
+    }
+
+    /**
+     * <p>
+     * Asynchronously searches for vehicles in an image that is streamed from the
+     * given payload instead of the image of the request, with a retry context.
+     * </p>
+     *
+     * @param request the request
+     * @param image   the image payload
+     * @param context the retry context
+     * @return the result
+     */
+    public CompletableFuture<VehicleResult> searchAsync(VehicleRequest request, ImagePayload image,
+            Map<?, ?> context) {
+        return searchMono(request, image, context).toFuture();
+    }
+
+    /**
+     * <p>
+     * Reactive search for vehicles in an image that is streamed from the given
+     * payload instead of the image of the request.
+     * </p>
+     *
+     * @param request the request
+     * @param image   the image payload
+     * @return the result
+     */
+    public Mono<VehicleResult> searchMono(VehicleRequest request, ImagePayload image) {
+        return searchMono(request, image, null);
+    }
 
+    /**
+     * <p>
+     * Reactive search for vehicles in an image that is streamed from the given
+     * payload instead of the image of the request, with a retry context.
+     * </p>
+     *
+     * @param request the request
+     * @param image   the image payload
+     * @param context the retry context
+     * @return the result
+     */
+    public Mono<VehicleResult> searchMono(VehicleRequest request, ImagePayload image, Map<?, ?> context) {
         if (request == null) {
             throw new IllegalArgumentException("Request must not be null");
         }
-        MultipartBodyBuilder builder = new MultipartBodyBuilder();
-        if (request.getServices() != null && !request.getServices().isEmpty()) {
-            builder.part("service", String.join(",",
-                    request.getServices().stream().map(Service::getValue).collect(Collectors.toList())));
-        }
-        if (request.getInputImage() != null) {
-            builder.part("image", new ByteArrayResource(request.getInputImage().getImageSource()),
-                    MediaType.parseMediaType("image/" + request.getInputImage().getImageMimeType()))
-                    .filename(request.getInputImage().getImageName());
-        }
-        if (request.getLocation() != null) {
-            builder.part("location", request.getLocation());
-        }
-        if (request.getRoi() != null) {
-            builder.part("roi", request.getRoi());
-        }
-        if (request.getMaxreads() != null) {
-            builder.part("maxreads", request.getMaxreads());
-        }
+        return Mono.defer(() -> execute(request, image, context));
+    }
 
+    /** {@inheritDoc} */
+    @Override
+    protected String api() {
+        return "vehicle";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Mono<VehicleResult> execute(VehicleRequest request, Map<?, ?> context) {
+        return execute(request, imagePayload(request), context);
+    }
+
+    private Mono<VehicleResult> execute(VehicleRequest request, ImagePayload image, Map<?, ?> context) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request must not be null");
+        }
         String region;
         if (request.getRegion() == null || request.getRegion().length() == 0) {
             region = "";
@@ -236,35 +357,64 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
             region = request.getRegion();
         }
 
-        Mono<VehicleResult> result = webClient.post().uri(uriBuilder -> uriBuilder.pathSegment(region).build())
-                .accept(MediaType.APPLICATION_JSON).body(BodyInserters.fromMultipartData(builder.build())).retrieve()
-                .onStatus(statusCode -> statusCode.is4xxClientError(),
-                        response -> response.bodyToMono(String.class).flatMap(error -> {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("4xx error occured: {} ({})", error, response.statusCode());
-                            }
-                            return Mono.error(new CarmenCloudException(response.statusCode().value(), error));
-                        }))
-                .onStatus(statusCode -> statusCode.is5xxServerError(),
-                        response -> response.bodyToMono(String.class).flatMap(error -> {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("5xx error occured: {} ({})", error, response.statusCode());
-                            }
-                            return Mono.error(new CarmenCloudException(response.statusCode().value(), error));
-                        }))
-                .toEntity(VehicleResult.class).flatMap(entity -> {
-                    VehicleResult vr = entity.getBody();
-                    if (vr != null) {
-                        vr.setRequestId(entity.getHeaders().getFirst("x-amzn-requestid"));
-                    }
-                    return Mono.justOrEmpty(vr);
-                });
-
-        if (retry != null) {
-            result = result.retryWhen(context != null ? retry.withRetryContext(Context.of(context)) : retry);
-        }
-
-        return result.toFuture();
+        Mono<VehicleResult> result;
+        if (imagePreprocessor != null && image != null) {
+            result = imagePreprocessor.process(image, request.getRoi()).flatMap(
+                    processed -> send(request, region, processed.image(), processed.roi(), context));
+        } else {
+            result = send(request, region, image, request.getRoi(), context);
+        }
+
+        return cached(VehicleResult.class,
+                Arrays.asList(services(request), request.getLocation(), region, request.getRoi(),
+                        request.getMaxreads()),
+                image != null ? List.of(image) : List.of(), validateLocation(request.getLocation()).then(result));
+    }
+
+    private Mono<VehicleResult> send(VehicleRequest request, String region, ImagePayload image, Object roi,
+            Map<?, ?> context) {
+        HttpEngine.Request httpRequest = HttpEngine.Request.post(region.isEmpty() ? "" : "/" + region)
+                .header("Accept", "application/json");
+        String services = services(request);
+        if (!services.isEmpty()) {
+            httpRequest.part("service", services);
+        }
+        httpRequest.part("image", image).part("location", request.getLocation()).part("roi", roi)
+                .part("maxreads", request.getMaxreads());
+
+        Mono<VehicleResult> result = exchange(httpRequest).flatMap(response -> decode(response,
+                VehicleResult.class).doOnNext(vr -> vr.setRequestId(response.header("x-amzn-requestid"))));
+
+        boolean repeatable = httpRequest.isRepeatable();
+        return withRetry(attempt(region, services, repeatable, result), context, repeatable);
+    }
+
+    /**
+     * Returns the comma separated values of the services of a request. The
+     * values of the recent combinations of services are cached.
+     */
+    private static String services(VehicleRequest request) {
+        Collection<Service> services = request.getServices();
+        if (services == null || services.isEmpty()) {
+            return "";
+        }
+        String joined = SERVICES.get(services);
+        if (joined == null) {
+            joined = services.stream().map(Service::getValue).collect(Collectors.joining(","));
+            if (SERVICES.size() < MAX_CACHED_SERVICES) {
+                // copied, as the services of the request may change later
+                SERVICES.putIfAbsent(services instanceof Set ? Set.copyOf(services) : List.copyOf(services), joined);
+            }
+        }
+        return joined;
+    }
+
+    private static ImagePayload imagePayload(VehicleRequest request) {
+        if (request == null || request.getInputImage() == null) {
+            return null;
+        }
+        return ImagePayload.of(request.getInputImage().getImageSource(), request.getInputImage().getImageName(),
+                request.getInputImage().getImageMimeType());
     }
 
     /**
@@ -272,17 +422,16 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
      */
     public static class VehicleClientBuilder extends CarmenCloudClientBuilder<VehicleRequest, VehicleResult> {
 
-        private final ThreadLocal<Boolean> disableCallStatistics = new ThreadLocal<>();
-        private final ThreadLocal<Boolean> disableImageResizing = new ThreadLocal<>();
-        private final ThreadLocal<Boolean> enableWideRangeAnalysis = new ThreadLocal<>();
+        /**
+         * The default time to live of the cached locations in milliseconds, used
+         * if the locations are validated but no time to live is set.
+         */
+        public static final long DEFAULT_LOCATIONS_CACHE_TTL = 3_600_000L;
 
         /**
          * Default constructor.
          */
         public VehicleClientBuilder() {
-            this.disableCallStatistics.set(false);
-            this.disableImageResizing.set(false);
-            this.enableWideRangeAnalysis.set(false);
         }
 
         /** {@inheritDoc} */
@@ -309,6 +458,144 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
             return (VehicleClientBuilder) super.retry(retry);
         }
 
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder connectionPool(ConnectionPool connectionPool) {
+            return (VehicleClientBuilder) super.connectionPool(connectionPool);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder protocol(HttpProtocol protocol) {
+            return (VehicleClientBuilder) super.protocol(protocol);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder http2MaxConcurrentStreams(Long http2MaxConcurrentStreams) {
+            return (VehicleClientBuilder) super.http2MaxConcurrentStreams(http2MaxConcurrentStreams);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder sslSessionCacheSize(Long sslSessionCacheSize) {
+            return (VehicleClientBuilder) super.sslSessionCacheSize(sslSessionCacheSize);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder sslSessionTimeout(Long sslSessionTimeout) {
+            return (VehicleClientBuilder) super.sslSessionTimeout(sslSessionTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder rateLimit(Double rateLimit) {
+            return (VehicleClientBuilder) super.rateLimit(rateLimit);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder retryPolicy(RetryPolicy retryPolicy) {
+            return (VehicleClientBuilder) super.retryPolicy(retryPolicy);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder circuitBreaker(CircuitBreaker circuitBreaker) {
+            return (VehicleClientBuilder) super.circuitBreaker(circuitBreaker);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+            return (VehicleClientBuilder) super.hedgingPolicy(hedgingPolicy);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder metrics(ClientMetrics metrics) {
+            return (VehicleClientBuilder) super.metrics(metrics);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder blockingMode(BlockingMode blockingMode) {
+            return (VehicleClientBuilder) super.blockingMode(blockingMode);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder httpEngine(HttpEngine.Factory httpEngine) {
+            return (VehicleClientBuilder) super.httpEngine(httpEngine);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder resultCache(ResultCache resultCache) {
+            return (VehicleClientBuilder) super.resultCache(resultCache);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder imagePreprocessor(ImagePreprocessor imagePreprocessor) {
+            return (VehicleClientBuilder) super.imagePreprocessor(imagePreprocessor);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder compression(Boolean compression) {
+            return (VehicleClientBuilder) super.compression(compression);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder maxInMemorySize(Integer maxInMemorySize) {
+            return (VehicleClientBuilder) super.maxInMemorySize(maxInMemorySize);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder endpoints(List<String> endpoints) {
+            return (VehicleClientBuilder) super.endpoints(endpoints);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder requestTimeout(Long requestTimeout) {
+            return (VehicleClientBuilder) super.requestTimeout(requestTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder connectTimeout(Long connectTimeout) {
+            return (VehicleClientBuilder) super.connectTimeout(connectTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder writeTimeout(Long writeTimeout) {
+            return (VehicleClientBuilder) super.writeTimeout(writeTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder readTimeout(Long readTimeout) {
+            return (VehicleClientBuilder) super.readTimeout(readTimeout);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder requestScheduler(RequestScheduler requestScheduler) {
+            return (VehicleClientBuilder) super.requestScheduler(requestScheduler);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public VehicleClientBuilder config(ClientConfig config) {
+            return (VehicleClientBuilder) super.config(config);
+        }
+
         /**
          * <p>
          * Sets if call statistics should be disabled. Default is false.
@@ -318,7 +605,7 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
          * @return the builder
          */
         public VehicleClientBuilder disableCallStatistics(boolean disableCallStatistics) {
-            this.disableCallStatistics.set(disableCallStatistics);
+            this.config.disableCallStatistics(disableCallStatistics);
             return this;
         }
 
@@ -330,7 +617,7 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
          * @return if call statistics are disabled
          */
         public boolean disableCallStatistics() {
-            return this.disableCallStatistics.get();
+            return this.config.disableCallStatistics;
         }
 
         /**
@@ -342,7 +629,7 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
          * @return the builder
          */
         public VehicleClientBuilder disableImageResizing(boolean disableImageResizing) {
-            this.disableImageResizing.set(disableImageResizing);
+            this.config.disableImageResizing(disableImageResizing);
             return this;
         }
 
@@ -354,7 +641,7 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
          * @return if image resizing is disabled
          */
         public boolean disableImageResizing() {
-            return this.disableImageResizing.get();
+            return this.config.disableImageResizing;
         }
 
         /**
@@ -366,7 +653,7 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
          * @return the builder
          */
         public VehicleClientBuilder enableWideRangeAnalysis(boolean enableWideRangeAnalysis) {
-            this.enableWideRangeAnalysis.set(enableWideRangeAnalysis);
+            this.config.enableWideRangeAnalysis(enableWideRangeAnalysis);
             return this;
         }
 
@@ -378,13 +665,65 @@ public class VehicleClient implements CarmenCloudClient<VehicleRequest, VehicleR
          * @return if wide range analysis is enabled
          */
         public boolean enableWideRangeAnalysis() {
-            return this.enableWideRangeAnalysis.get();
+            return this.config.enableWideRangeAnalysis;
+        }
+
+        /**
+         * <p>
+         * Sets the time to live of the cached locations in milliseconds. If set,
+         * the locations are cached, and revalidated in the background once the
+         * time to live has elapsed. Default is null (no caching).
+         * </p>
+         *
+         * @param locationsCacheTtl the time to live in milliseconds
+         * @return the builder
+         */
+        public VehicleClientBuilder locationsCacheTtl(Long locationsCacheTtl) {
+            this.config.locationsCacheTtl(locationsCacheTtl);
+            return this;
+        }
+
+        /**
+         * <p>
+         * Returns the time to live of the cached locations.
+         * </p>
+         *
+         * @return the time to live in milliseconds
+         */
+        public Long locationsCacheTtl() {
+            return this.config.locationsCacheTtl;
+        }
+
+        /**
+         * <p>
+         * Sets if the location of the requests should be validated against the
+         * cached locations before sending them. Unsupported locations fail with a
+         * {@link CarmenCloudException} with status code 400. Default is false.
+         * </p>
+         *
+         * @param validateLocations if the locations should be validated
+         * @return the builder
+         */
+        public VehicleClientBuilder validateLocations(boolean validateLocations) {
+            this.config.validateLocations(validateLocations);
+            return this;
+        }
+
+        /**
+         * <p>
+         * Returns if the locations are validated.
+         * </p>
+         *
+         * @return if the locations are validated
+         */
+        public boolean validateLocations() {
+            return this.config.validateLocations;
         }
 
         /** {@inheritDoc} */
         @Override
         public VehicleClient build() {
-            return new VehicleClient(this);
+            return new VehicleClient(this.config.build());
         }
     }
 
@@ -0,0 +1,91 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.client.BlockingMode;
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.HttpEngine;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+
+import reactor.core.publisher.Mono;
+
+public class BlockingModeTest {
+
+    /**
+     * @param blockingMode the blocking mode
+     * @param engines      the HTTP engine
+     * @return the client
+     */
+    private static VehicleClient client(BlockingMode blockingMode, HttpEngine.Factory engines) {
+        return CarmenCloudClientBuilder.vehicleClientBuilder().endpoint("https://api.carmencloud.com").apiKey("key")
+                .blockingMode(blockingMode).httpEngine(engines).build();
+    }
+
+    /**
+     */
+    @Test
+    public void testResultsAndErrorsAreReturned() throws Exception {
+        for (BlockingMode blockingMode : BlockingMode.values()) {
+            VehicleClient succeeding = client(blockingMode,
+                    (config, headers, streamStatistics) -> request -> Mono.just(new HttpEngine.Response(200,
+                            name -> null, "{}".getBytes(StandardCharsets.UTF_8))));
+            assertNotNull(succeeding.search(new VehicleRequest()), blockingMode.name());
+
+            VehicleClient failing = client(blockingMode,
+                    (config, headers, streamStatistics) -> request -> Mono.just(new HttpEngine.Response(400,
+                            name -> null, "{\"message\":\"bad request\"}".getBytes(StandardCharsets.UTF_8))));
+            // the error is not wrapped
+            CarmenCloudException e = assertThrows(CarmenCloudException.class,
+                    () -> failing.search(new VehicleRequest()), blockingMode.name());
+            assertEquals(400, e.getStatusCode(), blockingMode.name());
+        }
+    }
+
+    /**
+     */
+    @Test
+    public void testInterruptedSearchIsCancelled() throws Exception {
+        for (BlockingMode blockingMode : BlockingMode.values()) {
+            CountDownLatch subscribed = new CountDownLatch(1);
+            CountDownLatch cancelled = new CountDownLatch(1);
+            VehicleClient client = client(blockingMode,
+                    (config, headers, streamStatistics) -> request -> Mono.<HttpEngine.Response>never()
+                            .doOnSubscribe(subscription -> subscribed.countDown())
+                            .doOnCancel(cancelled::countDown));
+
+            CompletableFuture<Throwable> error = new CompletableFuture<>();
+            CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    client.search(new VehicleRequest());
+                } catch (Throwable e) {
+                    error.complete(e);
+                }
+                interrupted.complete(Thread.currentThread().isInterrupted());
+            });
+            thread.start();
+            assertTrue(subscribed.await(10, TimeUnit.SECONDS), blockingMode.name());
+            thread.interrupt();
+
+            assertTrue(cancelled.await(10, TimeUnit.SECONDS), blockingMode.name());
+            CarmenCloudException e = assertInstanceOf(CarmenCloudException.class,
+                    error.get(10, TimeUnit.SECONDS), blockingMode.name());
+            assertEquals(500, e.getStatusCode(), blockingMode.name());
+            // the interrupted status is preserved
+            assertTrue(interrupted.get(10, TimeUnit.SECONDS), blockingMode.name());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.client.CircuitBreaker;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Mono;
+
+public class CircuitBreakerTest {
+
+    private static final Mono<String> FAILURE = Mono.error(new CarmenCloudException(503, "unavailable"));
+
+    private static final Mono<String> SUCCESS = Mono.just("ok");
+
+    /**
+     */
+    @Test
+    public void testOpensAndRejects() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.builder().windowSize(4).minimumCalls(4)
+                .openDuration(Duration.ofMinutes(1)).halfOpenCalls(2).build();
+        List<CircuitBreaker.State> transitions = new CopyOnWriteArrayList<>();
+        circuitBreaker.addListener((region, from, to) -> transitions.add(to));
+
+        circuitBreaker.protect("eur", SUCCESS).block();
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.protect("eur", FAILURE).onErrorResume(e -> Mono.empty()).block();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state("eur"));
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state("usa"));
+        assertEquals(List.of(CircuitBreaker.State.OPEN), transitions);
+        assertFalse(circuitBreaker.isCallPermitted("eur"));
+
+        Throwable rejection = circuitBreaker.protect("eur", SUCCESS).map(Throwable.class::cast)
+                .onErrorResume(Mono::just).block();
+        assertTrue(CircuitBreaker.isRejection(rejection));
+        assertEquals(503, ((CarmenCloudException) rejection).getStatusCode());
+    }
+
+    /**
+     */
+    @Test
+    public void testClosesAfterSuccessfulProbes() throws InterruptedException {
+        CircuitBreaker circuitBreaker = CircuitBreaker.builder().windowSize(2).minimumCalls(2)
+                .openDuration(Duration.ofMillis(50)).halfOpenCalls(2).build();
+        for (int i = 0; i < 2; i++) {
+            circuitBreaker.protect("", FAILURE).onErrorResume(e -> Mono.empty()).block();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state(""));
+        Thread.sleep(100);
+        assertTrue(circuitBreaker.isCallPermitted(""));
+        circuitBreaker.protect("", SUCCESS).block();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state(""));
+        circuitBreaker.protect("", SUCCESS).block();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state(""));
+    }
+
+    /**
+     */
+    @Test
+    public void testClientErrorsDoNotOpen() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.builder().windowSize(2).minimumCalls(2).halfOpenCalls(1)
+                .build();
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.protect("eur", Mono.error(new CarmenCloudException(400, "bad request")))
+                    .onErrorResume(e -> Mono.empty()).block();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state("eur"));
+    }
+
+    /**
+     */
+    @Test
+    public void testThrottlingDoesNotOpen() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.builder().windowSize(2).minimumCalls(2).halfOpenCalls(1)
+                .build();
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.protect("eur", Mono.error(new CarmenCloudException(429, "too many requests")))
+                    .onErrorResume(e -> Mono.empty()).block();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state("eur"));
+        assertFalse(CircuitBreaker.isFailure(new CarmenCloudException(429, "too many requests")));
+        assertTrue(CircuitBreaker.isFailure(new CarmenCloudException(503, "unavailable")));
+    }
+
+    /**
+     */
+    @Test
+    public void testFailingListenerIsIgnored() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.builder().windowSize(2).minimumCalls(2).halfOpenCalls(1)
+                .build();
+        List<CircuitBreaker.State> transitions = new CopyOnWriteArrayList<>();
+        circuitBreaker.addListener((region, from, to) -> {
+            throw new IllegalStateException("listener failed");
+        });
+        circuitBreaker.addListener((region, from, to) -> transitions.add(to));
+
+        circuitBreaker.protect("eur", FAILURE).onErrorResume(e -> Mono.empty()).block();
+        // the call completing the window opens the circuit, it still fails with its own error
+        Throwable error = circuitBreaker.protect("eur", FAILURE).map(Throwable.class::cast)
+                .onErrorResume(Mono::just).block();
+        assertEquals(503, ((CarmenCloudException) error).getStatusCode());
+        assertFalse(CircuitBreaker.isRejection(error));
+        assertEquals(List.of(CircuitBreaker.State.OPEN), transitions);
+    }
+
+    /**
+     */
+    @Test
+    public void testRejectionMessageIsValidJson() throws Exception {
+        CircuitBreaker circuitBreaker = CircuitBreaker.builder().windowSize(2).minimumCalls(2)
+                .openDuration(Duration.ofMinutes(1)).halfOpenCalls(1).build();
+        String region = "e\\u\"r";
+        for (int i = 0; i < 2; i++) {
+            circuitBreaker.protect(region, FAILURE).onErrorResume(e -> Mono.empty()).block();
+        }
+        Throwable rejection = circuitBreaker.protect(region, SUCCESS).map(Throwable.class::cast)
+                .onErrorResume(Mono::just).block();
+        assertTrue(CircuitBreaker.isRejection(rejection));
+        JsonNode message = new ObjectMapper().readTree(rejection.getMessage()).path("message");
+        assertEquals(rejection.getCause().getMessage(), message.asText());
+    }
+}
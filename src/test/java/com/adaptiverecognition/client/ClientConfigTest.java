@@ -0,0 +1,91 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.BlockingMode;
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.ClientConfig;
+import com.adaptiverecognition.cloud.client.VehicleClient.VehicleClientBuilder;
+
+import reactor.netty.http.HttpProtocol;
+
+public class ClientConfigTest {
+
+    /**
+     */
+    @Test
+    public void testFromProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("carmen.endpoint", "https://api.carmencloud.com");
+        properties.setProperty("carmen.api-key", "key");
+        properties.setProperty("carmen.RESPONSE_TIMEOUT", "5000");
+        properties.setProperty("carmen.protocol", "h2");
+        properties.setProperty("carmen.blockingMode", "future");
+        properties.setProperty("carmen.disable-image-resizing", "true");
+        properties.setProperty("other.endpoint", "ignored");
+
+        ClientConfig config = ClientConfig.fromProperties(properties, "carmen");
+        assertEquals("https://api.carmencloud.com", config.endpoint());
+        assertEquals("key", config.apiKey());
+        assertEquals(5000L, config.responseTimeout());
+        assertEquals(HttpProtocol.H2, config.protocol());
+        assertEquals(BlockingMode.FUTURE, config.blockingMode());
+        assertTrue(config.disableImageResizing());
+        assertNull(config.rateLimit());
+    }
+
+    /**
+     */
+    @Test
+    public void testFromYaml() {
+        String yaml = "carmen:\n  endpoint: https://api.carmencloud.com\n  rate-limit: 20\n"
+                + "  validate-locations: true\n  http-engine: jdk\n";
+        ClientConfig config = ClientConfig
+                .fromYaml(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)), "carmen");
+        assertEquals("https://api.carmencloud.com", config.endpoint());
+        assertEquals(20.0, config.rateLimit());
+        assertTrue(config.validateLocations());
+    }
+
+    /**
+     */
+    @Test
+    public void testInvalidSettings() {
+        Properties unknown = new Properties();
+        unknown.setProperty("endpiont", "https://api.carmencloud.com");
+        assertThrows(IllegalArgumentException.class, () -> ClientConfig.fromProperties(unknown, null));
+
+        Properties invalid = new Properties();
+        invalid.setProperty("responseTimeout", "ten");
+        assertThrows(IllegalArgumentException.class, () -> ClientConfig.fromProperties(invalid, null));
+    }
+
+    /**
+     */
+    @Test
+    public void testBuilderCanBeBuiltOnAnotherThread() throws Exception {
+        VehicleClientBuilder builder = CarmenCloudClientBuilder.vehicleClientBuilder()
+                .endpoint("https://api.carmencloud.com").apiKey("key").responseTimeout(1000L)
+                .disableCallStatistics(true);
+        ClientConfig config = CompletableFuture.supplyAsync(builder::config).get();
+        assertEquals("https://api.carmencloud.com", config.endpoint());
+        assertEquals("key", config.apiKey());
+        assertEquals(1000L, config.responseTimeout());
+        assertTrue(config.disableCallStatistics());
+
+        ClientConfig copy = CarmenCloudClientBuilder.vehicleClientBuilder().config(config).apiKey("other").config();
+        assertEquals("https://api.carmencloud.com", copy.endpoint());
+        assertEquals("other", copy.apiKey());
+        assertEquals("key", config.apiKey());
+    }
+}
@@ -0,0 +1,109 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.ConnectionPool;
+import com.adaptiverecognition.cloud.client.ImagePayload;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+import com.adaptiverecognition.cloud.vehicle.VehicleResult;
+import com.sun.net.httpserver.HttpServer;
+
+public class ConnectionPoolTest {
+
+    /**
+     * @param pool the connection pool
+     * @return the number of the calls out of four rejected while the only
+     *         connection of the pool is in use
+     */
+    private int rejectedCalls(ConnectionPool pool) throws Exception {
+        Semaphore arrived = new Semaphore(0);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            arrived.release();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder()
+                    .endpoint("http://127.0.0.1:" + server.getAddress().getPort()).apiKey("key").connectionPool(pool)
+                    .build();
+            VehicleRequest request = new VehicleRequest().services(VehicleRequest.Service.ANPR).location("HUN");
+            List<CompletableFuture<VehicleResult>> calls = new ArrayList<>();
+            calls.add(client.searchAsync(request, ImagePayload.of(new byte[] { 1 }, "car.jpg", "jpeg")));
+            assertTrue(arrived.tryAcquire(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                calls.add(client.searchAsync(request, ImagePayload.of(new byte[] { 1 }, "car.jpg", "jpeg")));
+            }
+            // a rejected call fails without waiting for the connection
+            Thread.sleep(200);
+            int rejected = 0;
+            for (CompletableFuture<VehicleResult> call : calls) {
+                rejected += call.isCompletedExceptionally() ? 1 : 0;
+            }
+            release.countDown();
+            for (CompletableFuture<VehicleResult> call : calls) {
+                try {
+                    call.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    // rejected
+                }
+            }
+            return rejected;
+        } finally {
+            release.countDown();
+            server.stop(0);
+            pool.close();
+        }
+    }
+
+    /**
+     */
+    @Test
+    public void testPendingAcquiresAreBoundedByDefault() throws Exception {
+        // one connection in use, two calls waiting for it, the fourth is rejected
+        assertEquals(1, rejectedCalls(ConnectionPool.builder().maxConnections(1).build()));
+    }
+
+    /**
+     */
+    @Test
+    public void testPendingAcquireLimit() throws Exception {
+        assertEquals(2, rejectedCalls(ConnectionPool.builder().maxConnections(1).pendingAcquireMaxCount(1).build()));
+        assertEquals(0, rejectedCalls(ConnectionPool.builder().maxConnections(1).pendingAcquireMaxCount(-1).build()));
+    }
+
+    /**
+     */
+    @Test
+    public void testInvalidPendingAcquireLimit() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ConnectionPool.builder().pendingAcquireMaxCount(0).build());
+    }
+}
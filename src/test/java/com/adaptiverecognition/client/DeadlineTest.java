@@ -0,0 +1,77 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.Deadline;
+import com.adaptiverecognition.cloud.client.HttpEngine;
+import com.adaptiverecognition.cloud.client.RequestOptions;
+import com.adaptiverecognition.cloud.client.RetryPolicy;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+public class DeadlineTest {
+
+    /**
+     */
+    @Test
+    public void testSearchIsCancelledAtTheDeadline() {
+        AtomicInteger cancelled = new AtomicInteger();
+        HttpEngine.Factory engines = (config, headers, streamStatistics) -> request -> Mono
+                .<HttpEngine.Response>never().doOnCancel(cancelled::incrementAndGet);
+        VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder().endpoint("https://api.carmencloud.com")
+                .apiKey("key").requestTimeout(200L).httpEngine(engines).build();
+
+        long start = System.nanoTime();
+        CarmenCloudException e = assertThrows(CarmenCloudException.class,
+                () -> client.search(new VehicleRequest()));
+        assertEquals(504, e.getStatusCode());
+        assertTrue(Deadline.isExceeded(e));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+        assertEquals(1, cancelled.get());
+
+        // the timeout of the options overrides the timeout of the client
+        CarmenCloudException overridden = assertThrows(CarmenCloudException.class, () -> client
+                .withOptions(RequestOptions.builder().timeout(Duration.ofMillis(50)).build())
+                .search(new VehicleRequest()));
+        assertTrue(Deadline.isExceeded(overridden));
+    }
+
+    /**
+     */
+    @Test
+    public void testRetriesStopBeforeThePropagatedDeadline() {
+        AtomicInteger attempts = new AtomicInteger();
+        HttpEngine.Factory engines = (config, headers, streamStatistics) -> request -> Mono.fromSupplier(() -> {
+            attempts.incrementAndGet();
+            return new HttpEngine.Response(503, name -> null, "{}".getBytes(StandardCharsets.UTF_8));
+        });
+        VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder().endpoint("https://api.carmencloud.com")
+                .apiKey("key").retryPolicy(RetryPolicy.builder().maxRetries(10).jitter(RetryPolicy.Jitter.NONE)
+                        .baseDelay(Duration.ofMillis(300)).maxDelay(Duration.ofMillis(300)).build())
+                .httpEngine(engines).build();
+
+        // block() wraps the checked exception
+        Throwable error = Exceptions.unwrap(assertThrows(RuntimeException.class,
+                () -> client.searchMono(new VehicleRequest())
+                        .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(500)))).block()));
+        CarmenCloudException e = assertInstanceOf(CarmenCloudException.class, error);
+        // the second retry could not complete before the deadline, the last error is returned
+        assertEquals(503, e.getStatusCode());
+        assertEquals(2, attempts.get());
+    }
+}
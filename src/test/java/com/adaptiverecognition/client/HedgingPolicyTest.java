@@ -0,0 +1,164 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.HedgingPolicy;
+import com.adaptiverecognition.cloud.client.HttpEngine;
+import com.adaptiverecognition.cloud.client.ImagePayload;
+import com.adaptiverecognition.cloud.client.RetryBudget;
+import com.adaptiverecognition.cloud.client.RetryPolicy;
+import com.adaptiverecognition.cloud.client.TransportClient;
+import com.adaptiverecognition.cloud.transport.TransportRequest;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+public class HedgingPolicyTest {
+
+    /**
+     * The first subscription is slow, the following ones are fast.
+     */
+    private static Mono<String> slowFirst(AtomicInteger calls) {
+        return Mono.defer(() -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(2)).thenReturn("slow")
+                : Mono.just("fast"));
+    }
+
+    /**
+     */
+    @Test
+    public void testDuplicateWins() {
+        AtomicInteger calls = new AtomicInteger();
+        HedgingPolicy hedgingPolicy = HedgingPolicy.builder().delay(Duration.ofMillis(50)).budget(null).build();
+        assertEquals("fast", hedgingPolicy.hedge("eur", slowFirst(calls)).block(Duration.ofSeconds(1)));
+        assertEquals(2, calls.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testBudgetPreventsDuplicate() {
+        AtomicInteger calls = new AtomicInteger();
+        HedgingPolicy hedgingPolicy = HedgingPolicy.builder().delay(Duration.ofMillis(50))
+                .budget(new RetryBudget(0, 0, Duration.ofSeconds(10))).build();
+        assertEquals("slow", hedgingPolicy.hedge("eur", slowFirst(calls)).block(Duration.ofSeconds(5)));
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testEarlyFailureIsNotHedged() {
+        AtomicInteger calls = new AtomicInteger();
+        HedgingPolicy hedgingPolicy = HedgingPolicy.builder().delay(Duration.ofMillis(200)).budget(null).build();
+        Mono<String> call = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new CarmenCloudException(500, "error"));
+        });
+        Exception e = assertThrows(Exception.class, () -> hedgingPolicy.hedge("eur", call).block());
+        assertTrue(Exceptions.unwrap(e) instanceof CarmenCloudException);
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testPendingDuplicateIsDroppedWhenCallCompletesEmpty() {
+        AtomicInteger calls = new AtomicInteger();
+        HedgingPolicy hedgingPolicy = HedgingPolicy.builder().delay(Duration.ofMillis(200)).budget(null).build();
+        Mono<String> call = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(20)).then(Mono.<String>empty());
+        });
+        long start = System.nanoTime();
+        assertNull(hedgingPolicy.hedge("eur", call).block(Duration.ofSeconds(1)));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(200)) < 0);
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testSingleUseImageIsNotHedgedOrRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        HttpEngine.Factory engines = (config, headers, streamStatistics) -> request -> Mono
+                .delay(Duration.ofMillis(100)).map(tick -> {
+                    calls.incrementAndGet();
+                    return new HttpEngine.Response(503, name -> null, "{}".getBytes(StandardCharsets.UTF_8));
+                });
+        TransportClient client = CarmenCloudClientBuilder.transportClientBuilder()
+                .endpoint("https://api.carmencloud.com").apiKey("key")
+                .hedgingPolicy(HedgingPolicy.builder().delay(Duration.ofMillis(10)).budget(null).build())
+                .retryPolicy(RetryPolicy.builder().maxRetries(2).baseDelay(Duration.ofMillis(1)).budget(null).build())
+                .httpEngine(engines).build();
+
+        ImagePayload image = ImagePayload.of(new ByteArrayInputStream(new byte[] { 1 }), "front.jpg", "jpeg");
+        CarmenCloudException e = assertThrows(CarmenCloudException.class,
+                () -> client.search(new TransportRequest(), List.of(image)));
+        // the error of the call is returned, not the error of reading the stream again
+        assertEquals(503, e.getStatusCode());
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * @param throttled if the permits of the rate limiter are used up before the
+     *                  search
+     * @param apiKey    the API key, sharing its rate limiter
+     * @return the number of calls sent for a slow search
+     */
+    private int hedgedCalls(boolean throttled, String apiKey) throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        HttpEngine.Factory engines = (config, headers, streamStatistics) -> request -> Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(300))
+                    .map(tick -> new HttpEngine.Response(200, name -> null, "{}".getBytes(StandardCharsets.UTF_8)));
+        });
+        TransportClient client = CarmenCloudClientBuilder.transportClientBuilder()
+                .endpoint("https://api.carmencloud.com").apiKey(apiKey).rateLimit(5.0)
+                .hedgingPolicy(HedgingPolicy.builder().delay(Duration.ofMillis(100)).budget(null).build())
+                .httpEngine(engines).build();
+        if (throttled) {
+            while (client.rateLimiter().getAvailablePermits() >= 1) {
+                client.rateLimiter().acquire().block();
+            }
+        }
+        client.search(new TransportRequest(), List.of(ImagePayload.of(new byte[] { 1 }, "front.jpg", "jpeg")));
+        return calls.get();
+    }
+
+    /**
+     */
+    @Test
+    public void testThrottledCallIsNotHedged() throws Exception {
+        assertEquals(2, hedgedCalls(false, "hedging-free-key"));
+        // the call waits 200 ms for its permit, which neither counts as hedging delay
+        // nor leaves a permit for the duplicate
+        assertEquals(1, hedgedCalls(true, "hedging-throttled-key"));
+    }
+
+    /**
+     */
+    @Test
+    public void testLearnedDelayNeedsSamples() {
+        HedgingPolicy hedgingPolicy = HedgingPolicy.builder().percentile(0.95).build();
+        assertNull(hedgingPolicy.delay("eur"));
+        for (int i = 0; i < 50; i++) {
+            hedgingPolicy.hedge("eur", Mono.just(i)).block();
+        }
+        assertNotNull(hedgingPolicy.delay("eur"));
+    }
+}
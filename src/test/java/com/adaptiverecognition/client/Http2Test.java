@@ -0,0 +1,131 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.ConnectionPool;
+import com.adaptiverecognition.cloud.client.ImagePayload;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+import com.adaptiverecognition.cloud.vehicle.VehicleResult;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+public class Http2Test {
+
+    /**
+     * Records the protocols and the maximum number of concurrent requests per
+     * connection seen by the server.
+     */
+    private static class Server {
+
+        private final Set<String> protocols = ConcurrentHashMap.newKeySet();
+        private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+        private final Map<String, Integer> maxActive = new ConcurrentHashMap<>();
+        private final DisposableServer server = HttpServer.create().host("127.0.0.1").port(0)
+                .protocol(HttpProtocol.H2C).handle((request, response) -> {
+                    protocols.add(request.protocol());
+                    String connection = String.valueOf(request.remoteAddress());
+                    AtomicInteger streams = active.computeIfAbsent(connection, key -> new AtomicInteger());
+                    return request.receive().aggregate().then(Mono.defer(() -> {
+                        maxActive.merge(connection, streams.incrementAndGet(), Math::max);
+                        return Mono.delay(Duration.ofMillis(200));
+                    })).then(response.header("Content-Type", "application/json")
+                            .sendString(Mono.just("{}"), StandardCharsets.UTF_8).then()
+                            .doFinally(signal -> streams.decrementAndGet()));
+                }).bindNow();
+    }
+
+    /**
+     * @param server  the server
+     * @param builder the client builder
+     * @return the number of the results of four concurrent searches following a
+     *         first one
+     */
+    private static int search(Server server, VehicleClient.VehicleClientBuilder builder) throws Exception {
+        try {
+            VehicleClient client = builder.endpoint("http://127.0.0.1:" + server.server.port())
+                    .apiKey("key").protocol(HttpProtocol.H2C).build();
+            VehicleRequest request = new VehicleRequest().services(VehicleRequest.Service.ANPR).location("HUN");
+            // opens the first connection, so the concurrent calls are not spread over new connections
+            client.search(request, ImagePayload.of(new byte[] { 1 }, "car.jpg", "jpeg"));
+            List<CompletableFuture<VehicleResult>> calls = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                calls.add(client.searchAsync(request, ImagePayload.of(new byte[] { 1 }, "car.jpg", "jpeg")));
+            }
+            int results = 0;
+            for (CompletableFuture<VehicleResult> call : calls) {
+                results += call.get(10, TimeUnit.SECONDS) != null ? 1 : 0;
+            }
+            return results;
+        } finally {
+            server.server.disposeNow();
+        }
+    }
+
+    /**
+     */
+    @Test
+    public void testRequestsAreMultiplexed() throws Exception {
+        Server server = new Server();
+        try (ConnectionPool pool = ConnectionPool.builder().maxConnections(1).build()) {
+            assertEquals(4, search(server, CarmenCloudClientBuilder.vehicleClientBuilder().connectionPool(pool)));
+        }
+        assertEquals(Set.of("HTTP/2.0"), server.protocols);
+        assertEquals(1, server.maxActive.size());
+        assertTrue(server.maxActive.values().iterator().next() > 1, "concurrent streams: " + server.maxActive);
+    }
+
+    /**
+     */
+    @Test
+    public void testConcurrentStreamsOfClientAreLimited() throws Exception {
+        Server server = new Server();
+        // the client gets its own pool for the limit
+        assertEquals(4,
+                search(server, CarmenCloudClientBuilder.vehicleClientBuilder().http2MaxConcurrentStreams(2L)));
+        assertEquals(2, Collections.max(server.maxActive.values()));
+    }
+
+    /**
+     */
+    @Test
+    public void testConcurrentStreamsOfPoolAreLimited() throws Exception {
+        Server server = new Server();
+        try (ConnectionPool pool = ConnectionPool.builder().maxConnections(1).http2MaxConcurrentStreams(2).build()) {
+            assertEquals(4, search(server, CarmenCloudClientBuilder.vehicleClientBuilder().connectionPool(pool)));
+        }
+        assertEquals(Map.of(server.maxActive.keySet().iterator().next(), 2), server.maxActive);
+    }
+
+    /**
+     */
+    @Test
+    public void testSharedPoolIsNotLimitedByClient() {
+        try (ConnectionPool pool = ConnectionPool.builder().build()) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> CarmenCloudClientBuilder.vehicleClientBuilder().endpoint("http://127.0.0.1:8080")
+                            .apiKey("key").protocol(HttpProtocol.H2C).http2MaxConcurrentStreams(2L)
+                            .connectionPool(pool).build());
+        }
+    }
+}
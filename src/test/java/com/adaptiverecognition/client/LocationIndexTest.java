@@ -0,0 +1,53 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.LocationIndex;
+import com.adaptiverecognition.cloud.vehicle.Locations.Location;
+
+public class LocationIndexTest {
+
+    private static Location location(String code, Location... regions) {
+        Location location = new Location();
+        location.setCode(code);
+        location.setRegions(List.of(regions));
+        return location;
+    }
+
+    /**
+     */
+    @Test
+    public void testCountriesAndRegions() {
+        LocationIndex index = LocationIndex.of(List.of(location("HUN"),
+                location("USA", location("CA"), location("NY"))));
+
+        assertEquals(Set.of("HUN", "USA"), index.countries());
+        assertEquals(Set.of("CA", "NY"), index.regions("usa"));
+        assertTrue(index.contains("HUN"));
+        assertTrue(index.contains("usa/ca"));
+        assertFalse(index.contains("USA/TX"));
+        assertFalse(index.contains("HUN/CA"));
+        assertFalse(index.contains("USA-CA"));
+        assertFalse(index.contains("AUT"));
+    }
+
+    /**
+     */
+    @Test
+    public void testLocationsWithoutCodesAreIgnored() {
+        Location withoutRegions = new Location();
+        withoutRegions.setCode("AUT");
+        LocationIndex index = LocationIndex.of(List.of(new Location(), withoutRegions));
+
+        assertEquals(Set.of("AUT"), index.countries());
+        assertTrue(index.regions("AUT").isEmpty());
+        assertTrue(LocationIndex.of(null).isEmpty());
+    }
+}
@@ -0,0 +1,159 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.ConnectionPool;
+import com.adaptiverecognition.cloud.client.ImagePayload;
+import com.adaptiverecognition.cloud.client.MicrometerClientMetrics;
+import com.adaptiverecognition.cloud.client.RetryPolicy;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+import com.adaptiverecognition.cloud.vehicle.VehicleResult;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MetricsTest {
+
+    private static final byte[] ERROR = "{\"message\":\"unavailable\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESULT = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] IMAGE = new byte[1024];
+
+    /**
+     * Waits until the measurements of the exchanges are finished, that happens
+     * after their results have been delivered.
+     *
+     * @param condition the condition to wait for
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static double active(SimpleMeterRegistry registry) {
+        return registry.get("carmen.client.requests.active").tag("api", "vehicle").gauge().value();
+    }
+
+    /**
+     */
+    @Test
+    public void testExchangesAreMeasured() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            // the first call fails and is retried
+            boolean failed = calls.incrementAndGet() == 1;
+            byte[] response = failed ? ERROR : RESULT;
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(failed ? 503 : 200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerClientMetrics metrics = new MicrometerClientMetrics(registry);
+        ConnectionPool pool = ConnectionPool.builder().maxConnections(2).metrics(metrics).build();
+        try {
+            VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder()
+                    .endpoint("http://127.0.0.1:" + server.getAddress().getPort()).apiKey("key")
+                    .retryPolicy(RetryPolicy.builder().maxRetries(1).baseDelay(Duration.ofMillis(1)).budget(null)
+                            .build())
+                    .connectionPool(pool).metrics(metrics).build();
+            VehicleRequest request = new VehicleRequest().services(VehicleRequest.Service.ANPR).location("HUN");
+            assertNotNull(client.search(request, ImagePayload.of(IMAGE, "car.jpg", "jpeg")));
+            // the gauges must not lose the pool metrics
+            System.gc();
+            assertEquals(2, registry.get("carmen.client.pool.connections.max").gauge().value());
+        } finally {
+            server.stop(0);
+            pool.close();
+        }
+        // the byte summaries are recorded last
+        await(() -> registry.find("carmen.client.bytes.received").summaries().stream()
+                .mapToLong(DistributionSummary::count).sum() == 2);
+
+        assertEquals(0, active(registry));
+        Timer failed = registry.find("carmen.client.requests").tags("api", "vehicle", "status", "503", "outcome",
+                "SERVER_ERROR").timer();
+        Timer succeeded = registry.find("carmen.client.requests").tags("api", "vehicle", "status", "200", "outcome",
+                "SUCCESS").timer();
+        assertEquals(1, failed.count());
+        assertEquals(1, succeeded.count());
+        assertEquals(1, registry.get("carmen.client.retries").tag("api", "vehicle").counter().count());
+
+        for (String phase : new String[] { "acquire", "upload", "server" }) {
+            assertEquals(2, registry.get("carmen.client.requests.phase").tag("phase", phase).timer().count(), phase);
+        }
+        assertTrue(registry.get("carmen.client.requests.phase").tag("phase", "deserialize").timer().count() >= 1);
+
+        // both uploads contain the multipart encoded image
+        DistributionSummary sent = registry.get("carmen.client.bytes.sent").summary();
+        assertEquals(2, sent.count());
+        assertTrue(sent.totalAmount() > 2 * IMAGE.length);
+        DistributionSummary received = registry.get("carmen.client.bytes.received").summary();
+        assertEquals(2, received.count());
+        assertEquals(ERROR.length + RESULT.length, received.totalAmount());
+    }
+
+    /**
+     */
+    @Test
+    public void testActiveExchangesAreCounted() throws Exception {
+        Semaphore arrived = new Semaphore(0);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            arrived.release();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, RESULT.length);
+            exchange.getResponseBody().write(RESULT);
+            exchange.close();
+        });
+        server.start();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try {
+            VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder()
+                    .endpoint("http://127.0.0.1:" + server.getAddress().getPort()).apiKey("key")
+                    .metrics(new MicrometerClientMetrics(registry)).build();
+            VehicleRequest request = new VehicleRequest().services(VehicleRequest.Service.ANPR).location("HUN");
+            CompletableFuture<VehicleResult> call = client.searchAsync(request,
+                    ImagePayload.of(IMAGE, "car.jpg", "jpeg"));
+            assertTrue(arrived.tryAcquire(10, TimeUnit.SECONDS));
+            assertEquals(1, active(registry));
+
+            release.countDown();
+            call.get(10, TimeUnit.SECONDS);
+            await(() -> active(registry) == 0);
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.HttpEngine;
+import com.adaptiverecognition.cloud.client.ImagePayload;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+import com.sun.net.httpserver.HttpServer;
+
+public class MultipartBodyTest {
+
+    /**
+     */
+    @Test
+    public void testBodyOfBothEngines() throws Exception {
+        AtomicReference<String> contentType = new AtomicReference<>();
+        AtomicReference<String> body = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            contentType.set(exchange.getRequestHeaders().getFirst("Content-Type"));
+            body.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1));
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            for (HttpEngine.Factory engine : new HttpEngine.Factory[] { HttpEngine.reactor(), HttpEngine.jdk() }) {
+                VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder()
+                        .endpoint("http://127.0.0.1:" + server.getAddress().getPort()).apiKey("key")
+                        .httpEngine(engine).build();
+                client.search(new VehicleRequest().services(VehicleRequest.Service.ANPR, VehicleRequest.Service.MMR)
+                        .location("HUN"), ImagePayload.of(new byte[] { 1, 2, 3 }, "car.jpg", "jpeg"));
+
+                assertTrue(contentType.get().startsWith("multipart/form-data; boundary="));
+                String boundary = contentType.get().substring(contentType.get().indexOf('=') + 1);
+                String services = VehicleRequest.Service.ANPR.getValue() + "," + VehicleRequest.Service.MMR.getValue();
+                String expected = "--" + boundary + "\r\nContent-Disposition: form-data; name=\"service\"\r\n"
+                        + "Content-Type: text/plain;charset=UTF-8\r\n\r\n" + services + "\r\n"
+                        + "--" + boundary + "\r\nContent-Disposition: form-data; name=\"image\"; filename=\"car.jpg\""
+                        + "\r\nContent-Type: image/jpeg\r\n\r\n\u0001\u0002\u0003\r\n"
+                        + "--" + boundary + "\r\nContent-Disposition: form-data; name=\"location\"\r\n"
+                        + "Content-Type: text/plain;charset=UTF-8\r\n\r\nHUN\r\n"
+                        + "--" + boundary + "--\r\n";
+                assertEquals(expected, body.get());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.client.CarmenCloudClient;
+import com.adaptiverecognition.cloud.client.Outbox;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+import com.adaptiverecognition.cloud.vehicle.VehicleResult;
+
+public class OutboxTest {
+
+    /**
+     * A client failing its first call with a transient error.
+     */
+    private static class FlakyClient implements CarmenCloudClient<VehicleRequest, VehicleResult> {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public VehicleResult search(VehicleRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public VehicleResult search(VehicleRequest request, Map<?, ?> context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<VehicleResult> searchAsync(VehicleRequest request) {
+            return searchAsync(request, null);
+        }
+
+        @Override
+        public CompletableFuture<VehicleResult> searchAsync(VehicleRequest request, Map<?, ?> context) {
+            return calls.incrementAndGet() == 1
+                    ? CompletableFuture.failedFuture(new CarmenCloudException(503, "unavailable"))
+                    : CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private static final Outbox.Codec<VehicleRequest> CODEC = new Outbox.Codec<>() {
+
+        @Override
+        public byte[] encode(VehicleRequest request) {
+            return request.getRegion().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public VehicleRequest decode(byte[] bytes) {
+            return new VehicleRequest().region(new String(bytes, StandardCharsets.UTF_8));
+        }
+    };
+
+    /**
+     */
+    @Test
+    public void testRequestsAreDeliveredInOrderAfterTransientError(@TempDir Path directory) throws Exception {
+        FlakyClient client = new FlakyClient();
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        Outbox.Listener<VehicleRequest, VehicleResult> listener = (id, request, result) -> {
+            delivered.add(id + ":" + request.getRegion());
+            latch.countDown();
+        };
+        try (Outbox<VehicleRequest, VehicleResult> outbox = Outbox.builder(client).directory(directory).codec(CODEC)
+                .listener(listener).concurrency(1).retryDelay(Duration.ofMillis(100)).build()) {
+            assertTrue(outbox.submit("1", new VehicleRequest().region("eur")));
+            assertTrue(outbox.submit("2", new VehicleRequest().region("sam")));
+            assertFalse(outbox.submit("2", new VehicleRequest().region("sam")));
+            assertTrue(outbox.submit("3", new VehicleRequest().region("nam")));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            // the checkpoint is stored after the listener has been called
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (outbox.backlog() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, outbox.backlog());
+        }
+        assertEquals(List.of("1:eur", "2:sam", "3:nam"), delivered);
+        assertEquals(4, client.calls.get());
+
+        try (Outbox<VehicleRequest, VehicleResult> reopened = Outbox.builder(client).directory(directory)
+                .codec(CODEC).listener(listener).build()) {
+            assertEquals(0, reopened.backlog());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.RateLimiter;
+
+public class RateLimiterTest {
+
+    /**
+     */
+    @Test
+    public void testBurstIsNotDelayed() {
+        RateLimiter rateLimiter = new RateLimiter(10);
+        for (int i = 0; i < 10; i++) {
+            // a permit of the burst is acquired without waiting
+            assertTrue(rateLimiter.acquire().toFuture().isDone());
+        }
+        assertTrue(rateLimiter.getAvailablePermits() < 1);
+        assertFalse(rateLimiter.acquire().toFuture().isDone());
+    }
+
+    /**
+     */
+    @Test
+    public void testExceedingRequestsAreQueued() {
+        RateLimiter rateLimiter = new RateLimiter(10, 1, 1, 0.5, 0);
+        assertTrue(rateLimiter.acquire().toFuture().isDone());
+        CompletableFuture<Void> second = rateLimiter.acquire().toFuture();
+        CompletableFuture<Void> third = rateLimiter.acquire().toFuture();
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+        // two requests are waiting, a permit is refilled every 100 ms
+        double permits = rateLimiter.getAvailablePermits();
+        assertTrue(permits >= -2 && permits < -1, "Available permits: " + permits);
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> CompletableFuture.allOf(second, third).join());
+    }
+
+    /**
+     */
+    @Test
+    public void testThrottlingDecreasesRate() {
+        RateLimiter rateLimiter = new RateLimiter(100, 100, 10, 0.5, 1);
+        rateLimiter.onThrottled(null);
+        assertEquals(50, rateLimiter.getRate(), 0.001);
+        // at most one decrease per second
+        rateLimiter.onThrottled(null);
+        assertEquals(50, rateLimiter.getRate(), 0.001);
+        rateLimiter.onSuccess();
+        assertTrue(rateLimiter.getRate() > 50);
+    }
+
+    /**
+     */
+    @Test
+    public void testRetryAfterBlocksPermits() {
+        RateLimiter rateLimiter = new RateLimiter(10);
+        rateLimiter.onThrottled(Duration.ofSeconds(2));
+        assertTrue(rateLimiter.getAvailablePermits() < 0);
+    }
+
+    /**
+     */
+    @Test
+    public void testSharedPerApiKey() {
+        RateLimiter rateLimiter = RateLimiter.shared("test-key", 10);
+        assertSame(rateLimiter, RateLimiter.shared("test-key", 10));
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.shared("test-key", 20));
+    }
+}
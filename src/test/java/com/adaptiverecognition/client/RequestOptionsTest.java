@@ -0,0 +1,69 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.HttpEngine;
+import com.adaptiverecognition.cloud.client.ImagePayload;
+import com.adaptiverecognition.cloud.client.RequestOptions;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+
+public class RequestOptionsTest {
+
+    /**
+     */
+    @Test
+    public void testOptionsOverrideDefaultHeadersOfBothEngines() throws Exception {
+        AtomicReference<Headers> headers = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            headers.set(exchange.getRequestHeaders());
+            exchange.getRequestBody().readAllBytes();
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            for (HttpEngine.Factory engine : new HttpEngine.Factory[] { HttpEngine.reactor(), HttpEngine.jdk() }) {
+                VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder()
+                        .endpoint("http://127.0.0.1:" + server.getAddress().getPort()).apiKey("key")
+                        .disableImageResizing(true).httpEngine(engine).build();
+                VehicleRequest request = new VehicleRequest().services(VehicleRequest.Service.ANPR).location("HUN");
+                ImagePayload image = ImagePayload.of(new byte[] { 1, 2, 3 }, "car.jpg", "jpeg");
+
+                client.search(request, image);
+                assertEquals("true", headers.get().getFirst("X-Disable-Image-Resizing"));
+                assertEquals("false", headers.get().getFirst("X-Enable-Wide-Range-Analysis"));
+
+                // the options clear a flag of the client and set another one
+                client.withOptions(RequestOptions.builder().disableImageResizing(false)
+                        .enableWideRangeAnalysis(true).header("X-Custom", "custom").build()).search(request);
+                assertEquals("false", headers.get().getFirst("X-Disable-Image-Resizing"));
+                assertEquals("true", headers.get().getFirst("X-Enable-Wide-Range-Analysis"));
+                assertEquals("custom", headers.get().getFirst("X-Custom"));
+                assertEquals(1, headers.get().get("X-Disable-Image-Resizing").size());
+                assertEquals("key", headers.get().getFirst("X-Api-Key"));
+
+                // a search without options still sends the defaults of the client
+                client.search(request, image);
+                assertEquals("true", headers.get().getFirst("X-Disable-Image-Resizing"));
+                assertNull(headers.get().getFirst("X-Custom"));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+}
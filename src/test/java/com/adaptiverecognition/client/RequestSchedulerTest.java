@@ -0,0 +1,129 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.RequestOptions;
+import com.adaptiverecognition.cloud.client.RequestScheduler;
+import com.adaptiverecognition.cloud.client.RequestScheduler.Priority;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+import com.adaptiverecognition.cloud.vehicle.VehicleResult;
+import com.sun.net.httpserver.HttpServer;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+public class RequestSchedulerTest {
+
+    /**
+     */
+    @Test
+    public void testReservedSlotsAndPriorities() {
+        RequestScheduler scheduler = RequestScheduler.builder().maxConcurrency(2).reserved(1).build();
+        List<String> started = new ArrayList<>();
+        Sinks.One<String> first = Sinks.one();
+        scheduler.schedule(Priority.LOW, first.asMono().doOnSubscribe(s -> started.add("low1"))).subscribe();
+        scheduler.schedule(Priority.LOW, Mono.fromSupplier(() -> started.add("low2"))).subscribe();
+        // the second slot is reserved for high priority
+        assertEquals(List.of("low1"), started);
+        assertEquals(1, scheduler.queued(Priority.LOW));
+
+        Sinks.One<String> high = Sinks.one();
+        scheduler.schedule(Priority.HIGH, high.asMono().doOnSubscribe(s -> started.add("high1"))).subscribe();
+        scheduler.schedule(Priority.HIGH, Mono.fromSupplier(() -> started.add("high2"))).subscribe();
+        assertEquals(List.of("low1", "high1"), started);
+
+        // the waiting high priority attempt goes first
+        first.tryEmitValue("done");
+        assertEquals(List.of("low1", "high1", "high2"), started);
+        high.tryEmitValue("done");
+        assertEquals(List.of("low1", "high1", "high2", "low2"), started);
+        assertEquals(0, scheduler.inFlight());
+    }
+
+    /**
+     */
+    @Test
+    public void testCancelledAttemptLeavesTheQueue() {
+        RequestScheduler scheduler = RequestScheduler.builder().maxConcurrency(1).build();
+        Sinks.One<String> first = Sinks.one();
+        scheduler.schedule(Priority.NORMAL, first.asMono()).subscribe();
+        Disposable waiting = scheduler.schedule(Priority.NORMAL, Mono.just("second")).subscribe();
+        assertEquals(1, scheduler.queued(Priority.NORMAL));
+
+        waiting.dispose();
+        assertEquals(0, scheduler.queued(Priority.NORMAL));
+        first.tryEmitValue("done");
+        assertEquals(0, scheduler.inFlight());
+    }
+
+    /**
+     */
+    @Test
+    public void testThrottledCallsKeepTheirPriority() throws Exception {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            received.add(exchange.getRequestHeaders().getFirst("X-Call"));
+            exchange.getRequestBody().readAllBytes();
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            RequestScheduler scheduler = RequestScheduler.builder().maxConcurrency(1).build();
+            VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder()
+                    .endpoint("http://127.0.0.1:" + server.getAddress().getPort()).apiKey("throttled-priority-key")
+                    .rateLimit(5.0).requestScheduler(scheduler).build();
+            VehicleRequest request = new VehicleRequest().services(VehicleRequest.Service.ANPR).location("HUN");
+            // opens the connection, so the calls complete before the next permit is available
+            client.search(request);
+            received.clear();
+            while (scheduler.inFlight() > 0) {
+                Thread.sleep(1);
+            }
+            // uses up the burst, so every call waits for its permit
+            while (client.rateLimiter().getAvailablePermits() >= 1) {
+                client.rateLimiter().acquire().block();
+            }
+
+            List<CompletableFuture<VehicleResult>> calls = new ArrayList<>();
+            calls.add(search(client, request, Priority.LOW, "low1"));
+            while (scheduler.inFlight() == 0 && !calls.get(0).isDone()) {
+                Thread.sleep(1);
+            }
+            calls.add(search(client, request, Priority.LOW, "low2"));
+            calls.add(search(client, request, Priority.LOW, "low3"));
+            calls.add(search(client, request, Priority.HIGH, "high"));
+            for (CompletableFuture<VehicleResult> call : calls) {
+                call.get(10, TimeUnit.SECONDS);
+            }
+            // the permits are handed out in the order of the priorities, not of the calls
+            assertEquals(4, received.size());
+            assertEquals(List.of("low1", "high"), received.subList(0, 2));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static CompletableFuture<VehicleResult> search(VehicleClient client, VehicleRequest request,
+            Priority priority, String call) throws Exception {
+        return client.withOptions(RequestOptions.builder().priority(priority).header("X-Call", call).build())
+                .searchAsync(request);
+    }
+}
@@ -0,0 +1,126 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.HttpEngine;
+import com.adaptiverecognition.cloud.client.VehicleClient;
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+import com.sun.net.httpserver.HttpServer;
+
+public class ResponseBodyTest {
+
+    /**
+     * A server responding with a JSON object padded to the given size, gzip
+     * compressed if the client accepts it.
+     */
+    private static class Server implements AutoCloseable {
+
+        private final Queue<String> acceptEncodings = new ConcurrentLinkedQueue<>();
+        private final HttpServer server;
+
+        Server(int size) throws IOException {
+            byte[] body = ("{" + " ".repeat(size - 2) + "}").getBytes(StandardCharsets.UTF_8);
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                acceptEncodings.add(String.valueOf(acceptEncoding));
+                byte[] response = body;
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                        gzip.write(body);
+                    }
+                    response = compressed.toByteArray();
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            });
+            server.start();
+        }
+
+        VehicleClient.VehicleClientBuilder client(HttpEngine.Factory engines) {
+            return CarmenCloudClientBuilder.vehicleClientBuilder()
+                    .endpoint("http://127.0.0.1:" + server.getAddress().getPort()).apiKey("key").httpEngine(engines);
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+
+    private static final HttpEngine.Factory[] ENGINES = { null, HttpEngine.jdk() };
+
+    private static String name(HttpEngine.Factory engines) {
+        return engines == null ? "reactor" : "jdk";
+    }
+
+    private static void search(VehicleClient.VehicleClientBuilder builder) throws CarmenCloudException {
+        VehicleRequest request = new VehicleRequest().services(VehicleRequest.Service.ANPR).location("HUN");
+        assertNotNull(builder.build().search(request));
+    }
+
+    /**
+     */
+    @Test
+    public void testCompressedResponsesAreAccepted() throws Exception {
+        for (HttpEngine.Factory engines : ENGINES) {
+            try (Server server = new Server(10_000)) {
+                search(server.client(engines));
+                assertTrue(server.acceptEncodings.poll().contains("gzip"), name(engines));
+
+                search(server.client(engines).compression(false));
+                assertFalse(server.acceptEncodings.poll().contains("gzip"), name(engines));
+            }
+        }
+    }
+
+    /**
+     */
+    @Test
+    public void testResponseSizeIsLimited() throws Exception {
+        for (HttpEngine.Factory engines : ENGINES) {
+            try (Server server = new Server(2_000)) {
+                search(server.client(engines).maxInMemorySize(2_000));
+                for (Boolean compression : new Boolean[] { true, false }) {
+                    // the limit applies to the decompressed body
+                    CarmenCloudException e = assertThrows(CarmenCloudException.class,
+                            () -> search(server.client(engines).compression(compression).maxInMemorySize(1_000)),
+                            name(engines));
+                    assertTrue(causedBy(e, DataBufferLimitException.class), name(engines) + ": " + e);
+                }
+                assertEquals(3, server.acceptEncodings.size());
+            }
+        }
+    }
+
+    private static boolean causedBy(Throwable throwable, Class<? extends Throwable> type) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,108 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.HttpEngine;
+import com.adaptiverecognition.cloud.client.ImagePayload;
+import com.adaptiverecognition.cloud.client.ResultCache;
+import com.adaptiverecognition.cloud.client.TransportClient;
+import com.adaptiverecognition.cloud.transport.TransportRequest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class ResultCacheTest {
+
+    private static Mono<String> call(AtomicInteger calls, String result) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(100)).thenReturn(result);
+        });
+    }
+
+    /**
+     */
+    @Test
+    public void testConcurrentCallsAreCoalesced() {
+        AtomicInteger calls = new AtomicInteger();
+        ResultCache cache = ResultCache.builder().build();
+        Mono<String> call = call(calls, "result");
+        Long count = Flux.range(0, 10).flatMap(i -> cache.get("key", String.class, call)).count().block();
+        assertEquals(10, count);
+        assertEquals(1, calls.get());
+        assertEquals("result", cache.get("key", String.class, call).block());
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testErrorsAreNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        ResultCache cache = ResultCache.builder().build();
+        Mono<String> failing = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new CarmenCloudException(500, "error"));
+        });
+        assertThrows(Exception.class, () -> cache.get("key", String.class, failing).block());
+        assertEquals("result", cache.get("key", String.class, call(calls, "result")).block());
+        assertEquals(2, calls.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testDiskTierSurvivesRestart(@TempDir Path directory) {
+        AtomicInteger calls = new AtomicInteger();
+        ResultCache cache = ResultCache.builder().directory(directory).build();
+        assertEquals("result", cache.get("key", String.class, call(calls, "result")).block());
+        ResultCache restarted = ResultCache.builder().directory(directory).build();
+        assertEquals("result", restarted.get("key", String.class, call(calls, "other")).block());
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testClientsWithDifferentSettingsDoNotShareResults() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        HttpEngine.Factory engines = (config, headers, streamStatistics) -> request -> Mono.fromSupplier(() -> {
+            calls.incrementAndGet();
+            return new HttpEngine.Response(200, name -> null,
+                    "{\"data\":{\"codes\":[]}}".getBytes(StandardCharsets.UTF_8));
+        });
+        ResultCache cache = ResultCache.builder().build();
+        List<ImagePayload> images = List.of(ImagePayload.of(new byte[] { 1 }, "front.jpg", "jpeg"));
+
+        TransportClient client = CarmenCloudClientBuilder.transportClientBuilder()
+                .endpoint("https://api.carmencloud.com").apiKey("key").resultCache(cache).httpEngine(engines)
+                .build();
+        client.search(new TransportRequest(), images);
+        CarmenCloudClientBuilder.transportClientBuilder().endpoint("https://api.carmencloud.com").apiKey("key")
+                .resultCache(cache).httpEngine(engines).build().search(new TransportRequest(), images);
+        assertEquals(1, calls.get());
+
+        CarmenCloudClientBuilder.transportClientBuilder().endpoint("https://api.carmencloud.com").apiKey("key")
+                .disableChecksumCheck(true).resultCache(cache).httpEngine(engines).build()
+                .search(new TransportRequest(), images);
+        assertEquals(2, calls.get());
+        CarmenCloudClientBuilder.transportClientBuilder().endpoint("https://api.carmencloud.com").apiKey("other")
+                .resultCache(cache).httpEngine(engines).build().search(new TransportRequest(), images);
+        assertEquals(3, calls.get());
+        CarmenCloudClientBuilder.transportClientBuilder().endpoint("https://eu.api.carmencloud.com").apiKey("key")
+                .resultCache(cache).httpEngine(engines).build().search(new TransportRequest(), images);
+        assertEquals(4, calls.get());
+    }
+}
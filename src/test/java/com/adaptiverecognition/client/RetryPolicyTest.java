@@ -0,0 +1,69 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.CarmenCloudException;
+import com.adaptiverecognition.cloud.client.RetryBudget;
+import com.adaptiverecognition.cloud.client.RetryPolicy;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+public class RetryPolicyTest {
+
+    /**
+     */
+    @Test
+    public void testTransientErrorsAreRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryPolicy retryPolicy = RetryPolicy.builder().maxRetries(2).baseDelay(Duration.ofMillis(1))
+                .maxDelay(Duration.ofMillis(10)).budget(null).build();
+        Mono<String> call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new CarmenCloudException(503, "unavailable"));
+        });
+        // block() wraps the checked exception
+        Throwable error = Exceptions.unwrap(assertThrows(RuntimeException.class,
+                () -> call.retryWhen(retryPolicy).block()));
+        CarmenCloudException e = assertInstanceOf(CarmenCloudException.class, error);
+        // the last error is returned, not a retry exhausted exception
+        assertEquals(503, e.getStatusCode());
+        assertEquals(3, attempts.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testClientErrorsAreNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryPolicy retryPolicy = RetryPolicy.builder().baseDelay(Duration.ofMillis(1)).build();
+        Mono<String> call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new CarmenCloudException(400, "bad request"));
+        });
+        assertThrows(Exception.class, () -> call.retryWhen(retryPolicy).block());
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testBudgetLimitsRetries() {
+        RetryBudget budget = new RetryBudget(0.5, 0, Duration.ofSeconds(10));
+        for (int i = 0; i < 4; i++) {
+            budget.onRequest();
+        }
+        assertTrue(budget.tryRetry());
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+    }
+}
@@ -0,0 +1,127 @@
+package com.adaptiverecognition.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.client.CarmenCloudClientBuilder;
+import com.adaptiverecognition.cloud.client.HttpEngine;
+import com.adaptiverecognition.cloud.client.ImagePayload;
+import com.adaptiverecognition.cloud.client.MergedTransportResult;
+import com.adaptiverecognition.cloud.client.TransportClient;
+import com.adaptiverecognition.cloud.transport.TransportRequest;
+import com.adaptiverecognition.cloud.transport.TransportResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Mono;
+
+public class TransportFanOutTest {
+
+    private static final String RESULT = "{\"version\":\"1.6.0\",\"data\":{\"codes\":[%s]}}";
+
+    private static final String CODE = "{\"found\":true,\"code\":\"%s\",\"codeType\":\"ISO6346\",\"confidence\":%d}";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     */
+    @Test
+    public void testImagesAreSentInSlicesAndMerged() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        TransportClient client = client(calls, name -> String.format(CODE, name, 90));
+
+        byte[] image = new byte[] { 1 };
+        TransportResult result = client.search(new TransportRequest(), List.of(ImagePayload.of(image, "front.jpg",
+                "jpeg"), ImagePayload.of(image, "side.jpg", "jpeg"), ImagePayload.of(image, "rear.jpg", "jpeg")));
+
+        assertEquals(3, calls.get());
+        MergedTransportResult merged = assertInstanceOf(MergedTransportResult.class, result);
+        assertEquals(List.of("id-front.jpg", "id-side.jpg", "id-rear.jpg"), merged.getRequestIds());
+        assertEquals("id-front.jpg", merged.getRequestId());
+        assertEquals(3, merged.getResults().size());
+        assertEquals(List.of("front.jpg", "side.jpg", "rear.jpg"), codes(merged, "code"));
+    }
+
+    /**
+     */
+    @Test
+    public void testCodeReadFromSeveralSlicesIsKeptOnceWithHighestConfidence() throws Exception {
+        Map<String, String> codes = Map.of("front.jpg", String.format(CODE, "MSKU1234565", 80),
+                "side.jpg", String.format(CODE, "TGHU7654321", 70) + "," + String.format(CODE, "MSKU1234565", 95),
+                "rear.jpg", "{\"found\":false}");
+        TransportClient client = client(new AtomicInteger(), codes::get);
+
+        byte[] image = new byte[] { 1 };
+        TransportResult result = client.search(new TransportRequest(), List.of(ImagePayload.of(image, "front.jpg",
+                "jpeg"), ImagePayload.of(image, "side.jpg", "jpeg"), ImagePayload.of(image, "rear.jpg", "jpeg")));
+
+        MergedTransportResult merged = assertInstanceOf(MergedTransportResult.class, result);
+        assertEquals(List.of("MSKU1234565", "TGHU7654321"), codes(merged, "code"));
+        assertEquals(List.of("95", "70"), codes(merged, "confidence"));
+    }
+
+    /**
+     */
+    @Test
+    public void testCodesOfAnotherLayoutAreConcatenated() throws Exception {
+        // no code value or found flag to find the duplicates by, nothing is dropped
+        String code = "{\"text\":\"%s\",\"type\":\"ISO6346\"}";
+        Map<String, String> codes = Map.of("front.jpg", String.format(code, "MSKU1234565"),
+                "side.jpg", String.format(code, "MSKU1234565") + "," + String.format(code, "TGHU7654321"),
+                "rear.jpg", "");
+        TransportClient client = client(new AtomicInteger(), codes::get);
+
+        byte[] image = new byte[] { 1 };
+        TransportResult result = client.search(new TransportRequest(), List.of(ImagePayload.of(image, "front.jpg",
+                "jpeg"), ImagePayload.of(image, "side.jpg", "jpeg"), ImagePayload.of(image, "rear.jpg", "jpeg")));
+
+        assertEquals(List.of("MSKU1234565", "MSKU1234565", "TGHU7654321"), codes(result, "text"));
+    }
+
+    /**
+     */
+    @Test
+    public void testCodeWithoutValueDisablesDeduplication() throws Exception {
+        Map<String, String> codes = Map.of("front.jpg", String.format(CODE, "MSKU1234565", 80),
+                "side.jpg", String.format(CODE, "MSKU1234565", 95),
+                "rear.jpg", "{\"found\":true,\"text\":\"TGHU7654321\"}");
+        TransportClient client = client(new AtomicInteger(), codes::get);
+
+        byte[] image = new byte[] { 1 };
+        TransportResult result = client.search(new TransportRequest(), List.of(ImagePayload.of(image, "front.jpg",
+                "jpeg"), ImagePayload.of(image, "side.jpg", "jpeg"), ImagePayload.of(image, "rear.jpg", "jpeg")));
+
+        assertEquals(List.of("80", "95", ""), codes(result, "confidence"));
+        assertEquals(List.of("", "", "TGHU7654321"), codes(result, "text"));
+    }
+
+    private static TransportClient client(AtomicInteger calls, Function<String, String> codes) {
+        HttpEngine.Factory engines = (config, headers, streamStatistics) -> request -> Mono.fromSupplier(() -> {
+            calls.incrementAndGet();
+            assertEquals(1, request.multipart().size());
+            String name = request.multipart().get(0).image().getName();
+            String body = String.format(RESULT, codes.apply(name));
+            return new HttpEngine.Response(200, header -> header.equals("x-amzn-requestid") ? "id-" + name : null,
+                    body.getBytes(StandardCharsets.UTF_8));
+        });
+        return CarmenCloudClientBuilder.transportClientBuilder().endpoint("https://api.carmencloud.com")
+                .apiKey("key").imagesPerCall(1).httpEngine(engines).build();
+    }
+
+    private static List<String> codes(TransportResult result, String field) {
+        List<String> values = new ArrayList<>();
+        for (JsonNode code : OBJECT_MAPPER.valueToTree(result).path("data").path("codes")) {
+            values.add(code.path(field).asText());
+        }
+        return values;
+    }
+}
@@ -1,12 +1,26 @@
 package com.adaptiverecognition.client;
 
+import org.junit.platform.suite.api.SelectClasses;
 import org.junit.platform.suite.api.SelectMethod;
 import org.junit.platform.suite.api.Suite;
 import org.junit.platform.suite.api.SuiteDisplayName;
 
+import com.adaptiverecognition.cloud.client.EndpointRouterTest;
+import com.adaptiverecognition.cloud.client.ImagePayloadTest;
+import com.adaptiverecognition.cloud.client.ImagePreprocessorTest;
+import com.adaptiverecognition.cloud.client.LocationsCacheTest;
+
 @Suite
 @SuiteDisplayName("Vehicle Client Test Suite")
 @SelectMethod(type = VehicleClientTest.class, name = "testApp")
+@SelectClasses({ RateLimiterTest.class, RetryPolicyTest.class, CircuitBreakerTest.class,
+        HedgingPolicyTest.class, ResultCacheTest.class, OutboxTest.class, ClientConfigTest.class,
+        EndpointRouterTest.class, TransportFanOutTest.class, DeadlineTest.class,
+        RequestSchedulerTest.class, MultipartBodyTest.class, LocationIndexTest.class,
+        RequestOptionsTest.class, ImagePreprocessorTest.class, ImagePayloadTest.class,
+        ConnectionPoolTest.class, LocationsCacheTest.class, MetricsTest.class,
+        Http2Test.class, BlockingModeTest.class,
+        ResponseBodyTest.class })
 public class VehicleClientTestSuite {
 
 }
@@ -0,0 +1,76 @@
+package com.adaptiverecognition.cloud.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+
+import reactor.core.publisher.Mono;
+
+public class EndpointRouterTest {
+
+    /**
+     */
+    @Test
+    public void testCallsFailOverToHealthyEndpoint() throws Exception {
+        AtomicInteger down = new AtomicInteger();
+        AtomicInteger up = new AtomicInteger();
+        HttpEngine.Factory engines = (config, headers, streamStatistics) -> {
+            if (config.endpoint().equals("https://down.example.com")) {
+                return request -> Mono.defer(() -> {
+                    down.incrementAndGet();
+                    return Mono.error(new ConnectException("Connection refused"));
+                });
+            }
+            return request -> Mono.fromSupplier(() -> {
+                up.incrementAndGet();
+                return new HttpEngine.Response(200, name -> null, "{}".getBytes(StandardCharsets.UTF_8));
+            });
+        };
+        VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder()
+                .endpoints(List.of("https://down.example.com", "https://up.example.com")).apiKey("key")
+                .httpEngine(engines).build();
+
+        for (int i = 0; i < 50; i++) {
+            assertNotNull(client.search(new VehicleRequest()));
+        }
+        assertEquals(50, up.get());
+        // the failing endpoint is ejected after 5 failures in a row
+        assertTrue(down.get() <= 5, "calls to the failing endpoint: " + down.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testEndpointBackFromEjectionIsEjectedAtFirstFailure() throws Exception {
+        AtomicInteger down = new AtomicInteger();
+        EndpointRouter router = new EndpointRouter(List.of("https://down.example.com", "https://up.example.com"),
+                url -> url.equals("https://down.example.com") ? request -> Mono.defer(() -> {
+                    down.incrementAndGet();
+                    return Mono.error(new ConnectException("Connection refused"));
+                }) : request -> Mono.fromSupplier(
+                        () -> new HttpEngine.Response(200, name -> null, "{}".getBytes(StandardCharsets.UTF_8))),
+                200);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(200, router.exchange(HttpEngine.Request.get("/")).block().statusCode());
+        }
+        assertTrue(down.get() <= EndpointRouter.EJECTION_FAILURES, "calls to the failing endpoint: " + down.get());
+
+        Thread.sleep(300);
+        int beforeProbe = down.get();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(200, router.exchange(HttpEngine.Request.get("/")).block().statusCode());
+        }
+        // a single probe call is failed over, then the endpoint is ejected again
+        assertTrue(down.get() - beforeProbe <= 1, "calls to the failing endpoint: " + (down.get() - beforeProbe));
+    }
+}
@@ -0,0 +1,132 @@
+package com.adaptiverecognition.cloud.client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import reactor.core.Exceptions;
+
+public class ImagePayloadTest {
+
+    private static byte[] image(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] bytes(List<DataBuffer> buffers) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (DataBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            output.writeBytes(bytes);
+            DataBufferUtils.release(buffer);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] read(ImagePayload image, DataBufferFactory factory) {
+        return bytes(image.content(factory).collectList().block());
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        return ImagePayload.sha256().digest(bytes);
+    }
+
+    /**
+     */
+    @Test
+    public void testPathIsReadInChunks(@TempDir Path directory) throws Exception {
+        byte[] image = image(200 * 1024);
+        Path file = Files.write(directory.resolve("car.JPG"), image);
+        ImagePayload payload = ImagePayload.of(file);
+
+        assertEquals("car.JPG", payload.getName());
+        assertEquals("jpeg", payload.getMimeType());
+        assertTrue(payload.isRepeatable());
+        List<DataBuffer> chunks = payload.content(DefaultDataBufferFactory.sharedInstance).collectList().block();
+        assertTrue(chunks.size() > 1, "chunks: " + chunks.size());
+        assertArrayEquals(image, bytes(chunks));
+        // the file can be read again, e.g. by a retry
+        assertArrayEquals(image, read(payload, DefaultDataBufferFactory.sharedInstance));
+        assertArrayEquals(sha256(image), payload.digest().block());
+    }
+
+    /**
+     */
+    @Test
+    public void testInputStreamIsSingleUse() {
+        byte[] image = image(100 * 1024);
+        ImagePayload payload = ImagePayload.of(new ByteArrayInputStream(image), "car.jpg", "jpeg");
+
+        assertFalse(payload.isRepeatable());
+        assertArrayEquals(image, read(payload, DefaultDataBufferFactory.sharedInstance));
+        Throwable error = Exceptions.unwrap(assertThrows(RuntimeException.class,
+                () -> read(payload, DefaultDataBufferFactory.sharedInstance)));
+        assertInstanceOf(IllegalStateException.class, error);
+    }
+
+    /**
+     */
+    @Test
+    public void testByteBufferPositionIsPreserved() {
+        byte[] image = image(1024);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(image.length + 2);
+        buffer.put(new byte[] { 9, 9 }).put(image).flip().position(2);
+        ImagePayload payload = ImagePayload.of(buffer, "car.jpg", "jpeg");
+
+        assertTrue(payload.isRepeatable());
+        assertArrayEquals(image, read(payload, DefaultDataBufferFactory.sharedInstance));
+        assertArrayEquals(image, read(payload, DefaultDataBufferFactory.sharedInstance));
+        assertEquals(2, buffer.position());
+        assertEquals(image.length + 2, buffer.limit());
+        assertArrayEquals(sha256(image), payload.digest().block());
+    }
+
+    /**
+     */
+    @Test
+    public void testByteBufIsRetainedWhileWritten() {
+        byte[] image = image(1024);
+        ByteBuf buffer = Unpooled.directBuffer(image.length + 2).writeBytes(new byte[] { 9, 9 }).writeBytes(image);
+        buffer.readerIndex(2);
+        try {
+            ImagePayload payload = ImagePayload.of(buffer, "car.jpg", "jpeg");
+
+            List<DataBuffer> written = payload.content(new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT))
+                    .collectList().block();
+            assertEquals(2, buffer.refCnt());
+            assertArrayEquals(image, bytes(written));
+            assertEquals(1, buffer.refCnt());
+
+            assertArrayEquals(image, read(payload, DefaultDataBufferFactory.sharedInstance));
+            assertEquals(1, buffer.refCnt());
+            assertEquals(2, buffer.readerIndex());
+            assertArrayEquals(sha256(image), payload.digest().block());
+        } finally {
+            buffer.release();
+        }
+    }
+}
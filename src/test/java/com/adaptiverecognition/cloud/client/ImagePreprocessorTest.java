@@ -0,0 +1,126 @@
+package com.adaptiverecognition.cloud.client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+public class ImagePreprocessorTest {
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", output);
+        return output.toByteArray();
+    }
+
+    private static byte[] bytes(ImagePayload image) {
+        return DataBufferUtils.join(image.content(DefaultDataBufferFactory.sharedInstance)).map(buffer -> {
+            try {
+                byte[] bytes = new byte[buffer.readableByteCount()];
+                buffer.read(bytes);
+                return bytes;
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }).block();
+    }
+
+    private static BufferedImage decode(ImagePayload image) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(bytes(image)));
+    }
+
+    /**
+     */
+    @Test
+    public void testImageIsCroppedToRoi() throws Exception {
+        try (ImagePreprocessor preprocessor = ImagePreprocessor.builder().cropToRoi(true).build()) {
+            ImagePreprocessor.Processed processed = preprocessor
+                    .process(ImagePayload.of(png(200, 100), "car.png", "png"), "50,20,149,20,149,79,50,79").block();
+
+            BufferedImage image = decode(processed.image());
+            // the last row and column of the polygon are kept
+            assertEquals(100, image.getWidth());
+            assertEquals(60, image.getHeight());
+            assertEquals("jpeg", processed.image().getMimeType());
+            assertEquals("car.png", processed.image().getName());
+            assertEquals("0,0,99,0,99,59,0,59", processed.roi());
+        }
+    }
+
+    /**
+     */
+    @Test
+    public void testLargeImageIsDownscaled() throws Exception {
+        try (ImagePreprocessor preprocessor = ImagePreprocessor.builder().maxDimension(100).build()) {
+            ImagePreprocessor.Processed processed = preprocessor
+                    .process(ImagePayload.of(png(400, 200), "car.png", "png"), "40,20,200,100").block();
+
+            BufferedImage image = decode(processed.image());
+            assertEquals(100, image.getWidth());
+            assertEquals(50, image.getHeight());
+            assertEquals("jpeg", processed.image().getMimeType());
+            assertEquals("10,5,50,25", processed.roi());
+        }
+    }
+
+    /**
+     */
+    @Test
+    public void testSmallImageIsUntouched() throws Exception {
+        byte[] png = png(80, 40);
+        try (ImagePreprocessor preprocessor = ImagePreprocessor.builder().maxDimension(100).build()) {
+            ImagePreprocessor.Processed processed = preprocessor.process(ImagePayload.of(png, "car.png", "png"),
+                    "10,10,20,20").block();
+
+            assertArrayEquals(png, bytes(processed.image()));
+            assertEquals("png", processed.image().getMimeType());
+            assertEquals("10,10,20,20", processed.roi());
+        }
+    }
+
+    /**
+     */
+    @Test
+    public void testUndecodableImageIsUntouched() {
+        byte[] garbage = new byte[] { 1, 2, 3 };
+        try (ImagePreprocessor preprocessor = ImagePreprocessor.builder().maxDimension(100).cropToRoi(true)
+                .build()) {
+            ImagePreprocessor.Processed processed = preprocessor.process(ImagePayload.of(garbage, "car.jpg", "jpeg"),
+                    "10,10,20,20").block();
+
+            assertArrayEquals(garbage, bytes(processed.image()));
+            assertEquals("jpeg", processed.image().getMimeType());
+            assertEquals("10,10,20,20", processed.roi());
+        }
+    }
+
+    /**
+     */
+    @Test
+    public void testSchedulerOfApplicationIsNotDisposed() throws Exception {
+        Scheduler scheduler = Schedulers.newSingle("test-preprocessor");
+        try {
+            ImagePreprocessor preprocessor = ImagePreprocessor.builder().maxDimension(100).scheduler(scheduler)
+                    .build();
+            ImagePayload image = ImagePayload.of(png(10, 10), "car.png", "png");
+            assertEquals("car.png", preprocessor.process(image, null).block().image().getName());
+            preprocessor.close();
+            assertFalse(scheduler.isDisposed());
+        } finally {
+            scheduler.dispose();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.adaptiverecognition.cloud.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.adaptiverecognition.cloud.vehicle.VehicleRequest;
+
+import reactor.core.publisher.Mono;
+
+public class LocationsCacheTest {
+
+    /**
+     */
+    @Test
+    public void testFailedLoadIsNotRepeatedDuringBackoff() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        RuntimeException failure = new RuntimeException("unavailable");
+        LocationsCache cache = new LocationsCache(Duration.ofHours(1), previous -> Mono.defer(() -> {
+            loads.incrementAndGet();
+            return Mono.error(failure);
+        }));
+
+        assertSame(failure, assertThrows(RuntimeException.class, () -> cache.get().block()));
+        // the error of the last load is returned without loading again
+        assertSame(failure, assertThrows(RuntimeException.class, () -> cache.get().block()));
+        assertEquals(1, loads.get());
+
+        Thread.sleep(1_100);
+        assertThrows(RuntimeException.class, () -> cache.get().block());
+        assertEquals(2, loads.get());
+        // the backoff doubled
+        Thread.sleep(1_100);
+        assertThrows(RuntimeException.class, () -> cache.get().block());
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testStaleLocationsAreNotRevalidatedDuringBackoff() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        LocationsCache cache = new LocationsCache(Duration.ofMillis(10), previous -> Mono.defer(() -> {
+            return loads.incrementAndGet() == 1 ? Mono.just(new LocationsCache.Snapshot(List.of(), null))
+                    : Mono.error(new RuntimeException("unavailable"));
+        }));
+
+        LocationsCache.Snapshot snapshot = cache.get().block();
+        Thread.sleep(20);
+        // served while the revalidation fails in the background
+        assertSame(snapshot, cache.get().block());
+        assertEquals(2, loads.get());
+        assertSame(snapshot, cache.get().block());
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     */
+    @Test
+    public void testLocationsAreLoadedWithRequestOptions() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        AtomicInteger searches = new AtomicInteger();
+        Map<String, String> loadHeaders = new ConcurrentHashMap<>();
+        HttpEngine.Factory engines = (config, headers, streamStatistics) -> request -> Mono.fromSupplier(() -> {
+            if (request.path().endsWith("/countries")) {
+                loads.incrementAndGet();
+                loadHeaders.putAll(request.headers());
+                return new HttpEngine.Response(503, name -> null, "{}".getBytes(StandardCharsets.UTF_8));
+            }
+            searches.incrementAndGet();
+            return new HttpEngine.Response(200, name -> null, "{}".getBytes(StandardCharsets.UTF_8));
+        });
+        VehicleClient client = CarmenCloudClientBuilder.vehicleClientBuilder()
+                .endpoint("https://api.carmencloud.com").apiKey("key").locationsCacheTtl(3_600_000L)
+                .validateLocations(true).httpEngine(engines).build();
+        VehicleRequest request = new VehicleRequest().services(VehicleRequest.Service.ANPR).location("HUN");
+
+        client.withOptions(RequestOptions.builder().header("X-Custom", "custom").build()).search(request);
+        client.search(request);
+        // the searches are not validated, and the failed load is not repeated for each of them
+        assertEquals(2, searches.get());
+        assertEquals(1, loads.get());
+        assertEquals("custom", loadHeaders.get("X-Custom"));
+    }
+}